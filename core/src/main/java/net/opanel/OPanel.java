@@ -1,13 +1,23 @@
 package net.opanel;
 
+import net.opanel.backup.BackupScheduler;
+import net.opanel.backup.SnapshotStore;
 import net.opanel.config.ConfigManager;
 import net.opanel.config.OPanelConfiguration;
 import net.opanel.terminal.LogListenerManager;
 import net.opanel.common.OPanelServer;
+import net.opanel.logger.LogCatalog;
+import net.opanel.logger.LogRetention;
+import net.opanel.logger.LogSearcher;
 import net.opanel.logger.Loggable;
+import net.opanel.player.PlayerIndex;
+import net.opanel.player.PlayerSearch;
+import net.opanel.player.SessionLog;
+import net.opanel.player.StatsAggregator;
 import net.opanel.utils.TPS;
 import net.opanel.utils.Utils;
 import net.opanel.web.WebServer;
+import net.opanel.world.SaveSizeCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -44,6 +54,14 @@ public class OPanel {
     private WebServer webServer;
     private OPanelServer server;
     private LogListenerManager logListenerManager;
+    private final LogCatalog logCatalog;
+    private final LogRetention logRetention;
+    private final LogSearcher logSearcher;
+    private final BackupScheduler backupScheduler;
+    private final PlayerIndex playerIndex;
+    private final PlayerSearch playerSearch;
+    private final SessionLog sessionLog;
+    private final StatsAggregator statsAggregator;
 
     public OPanel(ConfigManager configManager, Loggable logger) {
         this.configManager = configManager;
@@ -58,6 +76,31 @@ public class OPanel {
             throw new RuntimeException("OPanel initialization failed", e);
         }
 
+        // Watch the logs folder
+        logCatalog = new LogCatalog(logger);
+        logSearcher = new LogSearcher(this);
+        logRetention = new LogRetention(logCatalog, logSearcher, logger);
+        try {
+            logCatalog.start();
+            logRetention.start();
+        } catch (IOException e) {
+            logger.error("Failed to start log catalog: " + e.getMessage());
+        }
+
+        // Sizes of the saves, kept current by watching them
+        SaveSizeCache.init(logger);
+
+        // Scheduled backups
+        SnapshotStore.init(logger);
+        backupScheduler = new BackupScheduler(this);
+        backupScheduler.start();
+
+        // Players known to the server, refreshed once the server is set
+        playerIndex = new PlayerIndex(this);
+        playerSearch = new PlayerSearch(playerIndex);
+        sessionLog = new SessionLog(logger);
+        statsAggregator = new StatsAggregator(this);
+
         // Setup web server
         webServer = new WebServer(this);
     }
@@ -80,6 +123,16 @@ public class OPanel {
         TPS.onTick();
     }
 
+    public void onPlayerJoin(String uuid, String name) {
+        playerIndex.onJoin(uuid, name);
+        sessionLog.onJoin(uuid);
+    }
+
+    public void onPlayerLeave(String uuid, String name) {
+        playerIndex.onLeave(uuid, name);
+        sessionLog.onLeave(uuid);
+    }
+
     public OPanelConfiguration getConfig() {
         return configManager.get();
     }
@@ -98,6 +151,7 @@ public class OPanel {
 
     public void setServer(OPanelServer server) {
         this.server = server;
+        playerIndex.refreshAsync();
     }
 
     public OPanelServer getServer() {
@@ -112,7 +166,46 @@ public class OPanel {
         return logListenerManager;
     }
 
+    public LogCatalog getLogCatalog() {
+        return logCatalog;
+    }
+
+    public LogRetention getLogRetention() {
+        return logRetention;
+    }
+
+    public LogSearcher getLogSearcher() {
+        return logSearcher;
+    }
+
+    public BackupScheduler getBackupScheduler() {
+        return backupScheduler;
+    }
+
+    public PlayerIndex getPlayerIndex() {
+        return playerIndex;
+    }
+
+    public PlayerSearch getPlayerSearch() {
+        return playerSearch;
+    }
+
+    public SessionLog getSessionLog() {
+        return sessionLog;
+    }
+
+    public StatsAggregator getStatsAggregator() {
+        return statsAggregator;
+    }
+
     public void stop() {
+        backupScheduler.stop();
+        playerIndex.stop();
+        sessionLog.stop();
+        statsAggregator.stop();
+        logRetention.stop();
+        logCatalog.stop();
+
         if(webServer == null) return;
         try {
             webServer.stop();
@@ -0,0 +1,197 @@
+package net.opanel.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.opanel.OPanel;
+import net.opanel.backup.BackupScheduler;
+import net.opanel.backup.BackupTask;
+import net.opanel.common.OPanelSave;
+import net.opanel.web.BaseServlet;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * GET    /api/backups                               policies with their next runs, and recent tasks
+ * GET    /api/backups/tasks/{id}                    progress of a task
+ * POST   /api/backups/policy                        set the policy of a save
+ * DELETE /api/backups/policy?save=                  remove the policy of a save
+ * GET    /api/backups/snapshots/{save}              list snapshots
+ * GET    /api/backups/snapshots/{save}/diff?from=&to=
+ * POST   /api/backups/snapshots/{save}              back up now
+ * DELETE /api/backups/snapshots/{save}/{id}         delete a snapshot
+ */
+public class BackupsServlet extends BaseServlet {
+    public static final String route = "/api/backups/*";
+    private static final String SNAPSHOTS_PREFIX = "/snapshots/";
+    private static final String TASKS_PREFIX = "/tasks/";
+
+    private final BackupScheduler scheduler;
+
+    public BackupsServlet(OPanel plugin) {
+        super(plugin);
+        scheduler = plugin.getBackupScheduler();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        if(reqPath == null || reqPath.equals("/")) {
+            HashMap<String, Object> obj = new HashMap<>();
+            final List<BackupScheduler.Policy> policies = scheduler.getPolicies();
+            HashMap<String, Long> nextRuns = new HashMap<>();
+            for(BackupScheduler.Policy policy : policies) {
+                nextRuns.put(policy.save, scheduler.getNextRun(policy));
+            }
+            obj.put("policies", policies);
+            obj.put("nextRuns", nextRuns);
+            obj.put("tasks", scheduler.getTasks());
+            sendResponse(res, obj);
+            return;
+        }
+
+        if(reqPath.startsWith(TASKS_PREFIX)) {
+            BackupTask task = scheduler.getTask(reqPath.substring(TASKS_PREFIX.length()));
+            if(task == null) {
+                sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("task", task);
+            sendResponse(res, obj);
+            return;
+        }
+
+        if(!reqPath.startsWith(SNAPSHOTS_PREFIX)) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        final String[] segments = reqPath.substring(SNAPSHOTS_PREFIX.length()).split("/");
+        final OPanelSave save = plugin.getServer().getSave(segments[0]);
+        if(save == null) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try {
+            HashMap<String, Object> obj = new HashMap<>();
+            if(segments.length == 1) {
+                obj.put("snapshots", save.getSnapshots());
+            } else if(segments.length == 2 && segments[1].equals("diff")) {
+                final String from = req.getParameter("from");
+                final String to = req.getParameter("to");
+                if(from == null || to == null) {
+                    sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+                obj.put("diff", save.diffSnapshots(from, to));
+            } else {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            sendResponse(res, obj);
+        } catch (FileNotFoundException e) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+            sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        if(reqPath == null) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        if(reqPath.equals("/policy")) {
+            try {
+                BackupScheduler.Policy policy = getRequestBody(req, BackupScheduler.Policy.class);
+                if(policy == null || policy.save == null || plugin.getServer().getSave(policy.save) == null) {
+                    sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+                scheduler.setPolicy(policy);
+                sendResponse(res, HttpServletResponse.SC_OK);
+            } catch (IllegalArgumentException e) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            } catch (IOException e) {
+                e.printStackTrace();
+                sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+            return;
+        }
+
+        if(reqPath.startsWith(SNAPSHOTS_PREFIX)) {
+            final String saveName = reqPath.substring(SNAPSHOTS_PREFIX.length());
+            if(plugin.getServer().getSave(saveName) == null) {
+                sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            // The backup runs in the background, its progress can be queried by the task id
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("task", scheduler.submit(saveName, BackupScheduler.LABEL_MANUAL));
+            sendResponse(res, obj);
+            return;
+        }
+
+        sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        if(reqPath == null) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        try {
+            if(reqPath.equals("/policy")) {
+                final String saveName = req.getParameter("save");
+                if(saveName == null || !scheduler.removePolicy(saveName)) {
+                    sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                sendResponse(res, HttpServletResponse.SC_OK);
+                return;
+            }
+
+            final String[] segments = reqPath.startsWith(SNAPSHOTS_PREFIX) ? reqPath.substring(SNAPSHOTS_PREFIX.length()).split("/") : new String[0];
+            if(segments.length != 2) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            final OPanelSave save = plugin.getServer().getSave(segments[0]);
+            if(save == null) {
+                sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("freedBytes", save.deleteSnapshots(List.of(segments[1])));
+            sendResponse(res, obj);
+        } catch (IOException e) {
+            e.printStackTrace();
+            sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+}
@@ -1,24 +1,72 @@
 package net.opanel.api;
 
+import com.google.gson.Gson;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import net.opanel.OPanel;
 import net.opanel.common.OPanelPlayer;
 import net.opanel.common.OPanelServer;
+import net.opanel.logger.LogCatalog;
+import net.opanel.logger.LogRetention;
+import net.opanel.logger.LogSearcher;
+import net.opanel.logger.LogTailer;
 import net.opanel.logger.Loggable;
 import net.opanel.web.BaseServlet;
 
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
 
 public class LogsServlet extends BaseServlet {
     public static final String route = "/api/logs/*";
+    private static final int DEFAULT_SEARCH_LIMIT = 500;
+    private static final int MAX_SEARCH_LIMIT = 10000;
+
+    private final LogSearcher searcher;
+    private final LogTailer tailer = new LogTailer();
+    private final LogCatalog catalog;
 
     public LogsServlet(OPanel plugin) {
         super(plugin);
+        searcher = plugin.getLogSearcher();
+        catalog = plugin.getLogCatalog();
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        if(reqPath == null || !reqPath.equals("/retention")) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        try {
+            LogRetention.Policy policy = getRequestBody(req, LogRetention.Policy.class);
+            if(policy == null) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            // The policy is applied in the background
+            plugin.getLogRetention().setPolicy(policy);
+            sendResponse(res, HttpServletResponse.SC_OK);
+        } catch (IOException e) {
+            e.printStackTrace();
+            sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
     }
 
     @Override
@@ -33,17 +81,34 @@ public class LogsServlet extends BaseServlet {
         if(reqPath == null || reqPath.equals("/")) {
             try {
                 HashMap<String, Object> obj = new HashMap<>();
-                obj.put("logs", logger.getLogFileList());
+                obj.put("logs", catalog.getFileNames());
+                obj.put("entries", catalog.getEntries());
                 sendResponse(res, obj);
-            } catch (IOException e) {
+            } catch (Exception e) {
                 sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
             }
+        } else if(reqPath.equals("/search")) {
+            search(req, res);
+        } else if(reqPath.equals("/retention")) {
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("policy", plugin.getLogRetention().getPolicy());
+            obj.put("lastReport", plugin.getLogRetention().getLastReport());
+            sendResponse(res, obj);
+        } else if(reqPath.endsWith("/tail")) {
+            tail(req, res, reqPath.substring(1, reqPath.length() - "/tail".length()));
         } else if(reqPath.startsWith("/")) {
             String fileName = reqPath.substring(1);
+            Path filePath;
             try {
-                sendContentResponse(res, logger.getLogContent(fileName).getBytes(StandardCharsets.UTF_8), "application/octet-stream");
+                filePath = logger.getLogFilePath(fileName);
             } catch (IOException e) {
                 sendResponse(res, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+                return;
+            }
+            try {
+                sendLogFile(req, res, filePath);
+            } catch (IOException e) {
+                if(!res.isCommitted()) sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
             }
         } else {
             sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
@@ -61,13 +126,9 @@ public class LogsServlet extends BaseServlet {
         final Loggable logger = plugin.logger;
         if(reqPath == null || reqPath.equals("/")) {
             try {
-                for(String fileName : logger.getLogFileList()) {
-                    if(fileName.endsWith(".log.gz")) {
-                        logger.deleteLog(fileName);
-                    }
-                }
+                plugin.getLogRetention().deleteAllArchives().get();
                 sendResponse(res, HttpServletResponse.SC_OK);
-            } catch (IOException e) {
+            } catch (InterruptedException | ExecutionException e) {
                 sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
             }
             return;
@@ -80,10 +141,113 @@ public class LogsServlet extends BaseServlet {
 
         try {
             logger.deleteLog(reqPath.substring(1));
+            searcher.removeIndex(reqPath.substring(1));
+            catalog.remove(reqPath.substring(1));
         } catch (IOException e) {
             sendResponse(res, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
             return;
         }
         sendResponse(res, HttpServletResponse.SC_OK);
     }
+
+    private void tail(HttpServletRequest req, HttpServletResponse res, String fileName) {
+        final String lines = req.getParameter("lines");
+        final String fromOffset = req.getParameter("fromOffset");
+        try {
+            final Path filePath = plugin.logger.getLogFilePath(fileName);
+            LogTailer.Result result;
+            if(fromOffset != null) {
+                result = tailer.readFrom(filePath, Long.parseLong(fromOffset));
+            } else {
+                result = tailer.tail(filePath, lines != null ? Integer.parseInt(lines) : 100);
+            }
+
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("content", result.content);
+            obj.put("start", result.start);
+            obj.put("offset", result.offset);
+            obj.put("size", result.size);
+            obj.put("rotated", result.rotated);
+            sendResponse(res, obj);
+        } catch (NumberFormatException e) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (IOException e) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+        }
+    }
+
+    private void sendLogFile(HttpServletRequest req, HttpServletResponse res, Path filePath) throws IOException {
+        final String fileName = filePath.getFileName().toString();
+        if(fileName.endsWith(".log") || fileName.endsWith(".txt")) {
+            sendFileResponse(req, res, filePath, "application/octet-stream", null);
+            return;
+        }
+        if(!fileName.endsWith(".gz")) {
+            throw new IOException("Unexpected file extension.");
+        }
+
+        // Let the client decompress the archived log if it is able to,
+        // the body depends on the header so caches must not share it between clients
+        res.setHeader("Vary", "Accept-Encoding");
+        final String acceptEncoding = req.getHeader("Accept-Encoding");
+        if(acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            sendFileResponse(req, res, filePath, "application/octet-stream", "gzip");
+            return;
+        }
+
+        res.addHeader("X-Powered-By", "OPanel");
+        res.setStatus(HttpServletResponse.SC_OK);
+        res.setContentType("application/octet-stream");
+        try(
+                InputStream is = new GZIPInputStream(new FileInputStream(filePath.toFile()), 65536);
+                OutputStream os = res.getOutputStream()
+        ) {
+            is.transferTo(os);
+        }
+    }
+
+    /**
+     * Matches are streamed as newline-delimited json while searching,
+     * and the last line is the summary of the search.
+     */
+    private void search(HttpServletRequest req, HttpServletResponse res) {
+        LogSearcher.Query query;
+        try {
+            final String from = req.getParameter("from");
+            final String to = req.getParameter("to");
+            final String limit = req.getParameter("limit");
+            query = new LogSearcher.Query(
+                    req.getParameter("q"),
+                    req.getParameter("level"),
+                    from != null ? Long.parseLong(from) : 0,
+                    to != null ? Long.parseLong(to) : 0,
+                    limit != null ? Math.min(Integer.parseInt(limit), MAX_SEARCH_LIMIT) : DEFAULT_SEARCH_LIMIT,
+                    !"false".equals(req.getParameter("live"))
+            );
+        } catch (NumberFormatException e) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        res.addHeader("X-Powered-By", "OPanel");
+        res.setStatus(HttpServletResponse.SC_OK);
+        res.setContentType("application/x-ndjson");
+        res.setCharacterEncoding("utf-8");
+
+        final Gson gson = new Gson();
+        try(OutputStream os = res.getOutputStream()) {
+            LogSearcher.Result result = searcher.search(query, match -> {
+                try {
+                    os.write((gson.toJson(match) +"\n").getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            os.write((gson.toJson(result) +"\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | UncheckedIOException e) {
+            // The response is already committed, so the client will just see a truncated stream
+            plugin.logger.warn("Log search is aborted: "+ e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package net.opanel.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.opanel.OPanel;
+import net.opanel.common.OPanelSave;
+import net.opanel.web.BaseServlet;
+import net.opanel.world.MapRenderer;
+import net.opanel.world.MapTileCache;
+import net.opanel.world.RegionAnalyzer;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.HashMap;
+
+/**
+ * GET    /api/map/{save}                            regions which have tiles, by dimension
+ * GET    /api/map/{save}/{x}/{z}?dimension=         PNG tile of a region, 202 if it is still being rendered
+ */
+public class MapServlet extends BaseServlet {
+    public static final String route = "/api/map/*";
+    // How long a request waits for the tile to be rendered
+    private static final long RENDER_WAIT_MS = 5_000;
+
+    public MapServlet(OPanel plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        if(reqPath == null || reqPath.equals("/")) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        final String[] segments = reqPath.substring(1).split("/");
+        final OPanelSave save = plugin.getServer().getSave(segments[0]);
+        if(save == null) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        try {
+            if(segments.length == 1) {
+                HashMap<String, Object> obj = new HashMap<>();
+                obj.put("tileSize", MapRenderer.TILE_SIZE);
+                obj.put("dimensions", save.getMapTiles());
+                sendResponse(res, obj);
+                return;
+            }
+            if(segments.length != 3) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            final int x;
+            final int z;
+            try {
+                x = Integer.parseInt(segments[1]);
+                z = Integer.parseInt(segments[2]);
+            } catch (NumberFormatException e) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            final String dimension = req.getParameter("dimension") != null ? req.getParameter("dimension") : RegionAnalyzer.OVERWORLD;
+
+            MapTileCache.Tile tile = save.getMapTile(dimension, x, z, RENDER_WAIT_MS);
+            if(tile == null) {
+                res.setHeader("Retry-After", "2");
+                sendResponse(res, HttpServletResponse.SC_ACCEPTED);
+                return;
+            }
+
+            // An outdated tile is not cached by the client, so it is fetched again after being rendered
+            res.setHeader("Cache-Control", tile.stale ? "no-store" : "private, no-cache");
+            if(!tile.stale) res.setHeader("ETag", tile.getETag());
+            if(!tile.stale && tile.getETag().equals(req.getHeader("If-None-Match"))) {
+                res.addHeader("X-Powered-By", "OPanel");
+                res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            sendContentResponse(res, tile.png, "image/png");
+        } catch (NoSuchFileException e) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+        } catch (IOException e) {
+            e.printStackTrace();
+            sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package net.opanel.api;
 
+import com.google.gson.JsonSyntaxException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import net.opanel.OPanel;
 import net.opanel.common.OPanelGameMode;
 import net.opanel.common.OPanelPlayer;
 import net.opanel.common.OPanelServer;
+import net.opanel.player.PlayerBatch;
+import net.opanel.player.PlayerIndex;
+import net.opanel.player.PlayerSearch;
 import net.opanel.web.BaseServlet;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
 
 public class PlayersServlet extends BaseServlet {
     public static final String route = "/api/players/*";
+    private static final String BULK_PATH = "/bulk";
+    private static final String SEARCH_PATH = "/search";
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    // How long a bulk request waits for the server thread
+    private static final long BULK_WAIT_MS = 10_000;
 
     public PlayersServlet(OPanel plugin) {
         super(plugin);
@@ -30,6 +37,24 @@ public class PlayersServlet extends BaseServlet {
         final String reqPath = req.getPathInfo();
         final OPanelServer server = plugin.getServer();
 
+        if(reqPath != null && reqPath.equals(SEARCH_PATH)) {
+            final String query = req.getParameter("q");
+            final int limit;
+            try {
+                limit = req.getParameter("limit") != null ? Integer.parseInt(req.getParameter("limit")) : DEFAULT_SEARCH_LIMIT;
+            } catch (NumberFormatException e) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            if(query == null || limit < 1 || limit > PlayerSearch.MAX_RESULTS) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("players", plugin.getPlayerSearch().search(query, limit));
+            sendResponse(res, obj);
+            return;
+        }
         if(reqPath != null && !reqPath.equals("/")) {
             sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
             return;
@@ -37,18 +62,23 @@ public class PlayersServlet extends BaseServlet {
 
         final boolean isWhitelistEnabled = server.isWhitelistEnabled();
         try {
-            final List<String> whitelistNames = server.getWhitelist().getNames();
+            final Set<String> whitelistNames = new HashSet<>(server.getWhitelist().getNames());
 
             HashMap<String, Object> obj = new HashMap<>();
             obj.put("maxPlayerCount", server.getMaxPlayerCount());
             obj.put("whitelist", isWhitelistEnabled);
 
+            // Online players are taken from the server, and the rest from the player index without reading their data
+            final Map<String, OPanelPlayer> onlinePlayers = new LinkedHashMap<>();
+            for(OPanelPlayer player : server.getOnlinePlayers()) {
+                onlinePlayers.put(player.getUUID(), player);
+            }
             List<HashMap<String, Object>> players = new ArrayList<>();
-            for(OPanelPlayer player : server.getPlayers()) {
+            for(OPanelPlayer player : onlinePlayers.values()) {
                 HashMap<String, Object> playerInfo = new HashMap<>();
                 playerInfo.put("name", player.getName());
                 playerInfo.put("uuid", player.getUUID());
-                playerInfo.put("isOnline", player.isOnline());
+                playerInfo.put("isOnline", true);
                 playerInfo.put("isOp", player.isOp());
                 playerInfo.put("isBanned", player.isBanned());
                 playerInfo.put("gamemode", player.getGameMode().getName());
@@ -56,6 +86,20 @@ public class PlayersServlet extends BaseServlet {
                 if(isWhitelistEnabled) playerInfo.put("isWhitelisted", whitelistNames.contains(player.getName()));
                 players.add(playerInfo);
             }
+            for(PlayerIndex.Entry entry : plugin.getPlayerIndex().getEntries()) {
+                if(onlinePlayers.containsKey(entry.uuid)) continue;
+                HashMap<String, Object> playerInfo = new HashMap<>();
+                playerInfo.put("name", entry.name);
+                playerInfo.put("uuid", entry.uuid);
+                playerInfo.put("isOnline", false);
+                playerInfo.put("isOp", entry.isOp);
+                playerInfo.put("isBanned", entry.isBanned);
+                playerInfo.put("gamemode", entry.gamemode);
+                playerInfo.put("banReason", entry.banReason);
+                playerInfo.put("lastSeen", entry.lastSeen);
+                if(isWhitelistEnabled) playerInfo.put("isWhitelisted", whitelistNames.contains(entry.name));
+                players.add(playerInfo);
+            }
             obj.put("players", players);
 
             sendResponse(res, obj);
@@ -80,6 +124,22 @@ public class PlayersServlet extends BaseServlet {
             return;
         }
 
+        if(reqPath.equals(BULK_PATH)) {
+            try {
+                BulkRequestBodyType reqBody = getRequestBody(req, BulkRequestBodyType.class);
+                if(reqBody == null || reqBody.operations == null || reqBody.operations.size() > PlayerBatch.MAX_OPERATIONS) {
+                    sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+                HashMap<String, Object> obj = new HashMap<>();
+                obj.put("results", PlayerBatch.run(plugin, reqBody.operations, BULK_WAIT_MS));
+                sendResponse(res, obj);
+            } catch (IOException | JsonSyntaxException e) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            }
+            return;
+        }
+
         String uuid = req.getParameter("uuid");
         String reason = req.getParameter("r"); // only for `kick` and `ban`
         String gamemode = req.getParameter("gm"); // only for `gamemode`
@@ -89,6 +149,10 @@ public class PlayersServlet extends BaseServlet {
         }
 
         final OPanelPlayer player = server.getPlayer(uuid);
+        if(player == null) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
         switch(reqPath.substring(1)) {
             case "op" -> player.giveOp();
             case "deop" -> player.depriveOp();
@@ -108,8 +172,17 @@ public class PlayersServlet extends BaseServlet {
                 }
                 player.setGameMode(OPanelGameMode.fromString(gamemode));
             }
+            default -> {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
         }
+        plugin.getPlayerIndex().update(player);
 
         sendResponse(res, HttpServletResponse.SC_OK);
     }
+
+    private static class BulkRequestBodyType {
+        List<PlayerBatch.Operation> operations;
+    }
 }
@@ -1,40 +1,41 @@
 package net.opanel.api;
 
-import jakarta.servlet.MultipartConfigElement;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.Part;
 import net.opanel.OPanel;
 import net.opanel.ServerType;
+import net.opanel.backup.HotSnapshot;
 import net.opanel.common.OPanelGameMode;
 import net.opanel.common.OPanelServer;
 import net.opanel.common.OPanelSave;
-import net.opanel.utils.Utils;
+import net.opanel.utils.ParallelArchiver;
+import net.opanel.utils.SaveExtractor;
 import net.opanel.utils.ZipUtility;
 import net.opanel.web.BaseServlet;
-import org.eclipse.jetty.server.Request;
+import net.opanel.web.MultipartStream;
+import net.opanel.world.LevelData;
+import net.opanel.world.RegionAnalysis;
+import net.opanel.world.SaveSizeCache;
+import net.opanel.world.ScanTask;
+import net.opanel.world.TrimReport;
+import net.opanel.world.WorldTrimmer;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Stream;
 import java.util.zip.ZipException;
 
 public class SavesServlet extends BaseServlet {
     public static final String route = "/api/saves/*";
-    private static final MultipartConfigElement multipartConfig = new MultipartConfigElement(
-            OPanel.TMP_DIR_PATH.toString(),
-            -1L,
-            -1L,
-            1024 * 1024 // fileSizeThreshold 1MB
-    );
+    private static final String ANALYSIS_SUFFIX = "/analysis";
+    private static final String TRIM_SUFFIX = "/trim";
+    private static final String SCAN_SUFFIX = "/scan";
 
     public SavesServlet(OPanel plugin) {
         super(plugin);
@@ -49,6 +50,42 @@ public class SavesServlet extends BaseServlet {
 
         final String reqPath = req.getPathInfo();
         final OPanelServer server = plugin.getServer();
+        if(reqPath != null && reqPath.endsWith(ANALYSIS_SUFFIX)) { // request for analyzing the regions of save
+            final String saveName = reqPath.substring(1, reqPath.length() - ANALYSIS_SUFFIX.length());
+            OPanelSave save = server.getSave(saveName);
+            if(save == null) {
+                sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            try {
+                RegionAnalysis analysis = save.analyzeRegions();
+                plugin.logger.info("Regions of save "+ saveName +" are analyzed in "+ analysis.elapsedMillis +" ms");
+                HashMap<String, Object> obj = new HashMap<>();
+                obj.put("analysis", analysis);
+                sendResponse(res, obj);
+            } catch (IOException e) {
+                e.printStackTrace();
+                sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+            return;
+        }
+
+        if(reqPath != null && reqPath.endsWith(SCAN_SUFFIX)) { // request for the latest region scan of save
+            final String saveName = reqPath.substring(1, reqPath.length() - SCAN_SUFFIX.length());
+            OPanelSave save = server.getSave(saveName);
+            ScanTask task = save != null ? save.getScanTask() : null;
+            if(task == null) {
+                sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("task", task);
+            sendResponse(res, obj);
+            return;
+        }
+
         if(reqPath != null && !reqPath.equals("/")) { // request for downloading save
             final String saveName = reqPath.substring(1);
             OPanelSave save = server.getSave(saveName);
@@ -57,34 +94,67 @@ public class SavesServlet extends BaseServlet {
                 return;
             }
 
-            // force saving world before making zip if the save is currently running on the server
-            if(save.isRunning()) server.saveAll();
-
-            Path savePath = save.getPath();
-            Path zipPath = OPanel.TMP_DIR_PATH.resolve(save.getName() +".zip");
+            // Compression level 0-9, 0 for fastest download of a big world on a fast network
+            int level = ParallelArchiver.DEFAULT_LEVEL;
+            if(req.getParameter("level") != null) {
+                try {
+                    level = Integer.parseInt(req.getParameter("level"));
+                } catch (NumberFormatException e) {
+                    sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                    return;
+                }
+            }
 
             /*
              * Bukkit separates nether and the end dimension from the save folder,
-             * so we need to put them together when processing the save files
+             * so we need to put them together under the save folder in the zip
              */
+            final Path savePath = save.getPath();
+            final String rootName = savePath.getFileName().toString();
+            List<ParallelArchiver.Source> sources = new ArrayList<>();
+            sources.add(new ParallelArchiver.Source(savePath, rootName));
             if(server.getServerType() == ServerType.BUKKIT) {
-                Utils.copyDirectoryRecursively(Paths.get("").resolve(saveName +"_nether/DIM-1"), savePath.resolve("DIM-1"));
-                Utils.copyDirectoryRecursively(Paths.get("").resolve(saveName +"_the_end/DIM1"), savePath.resolve("DIM1"));
+                final Path netherPath = Paths.get("").resolve(saveName +"_nether/DIM-1");
+                final Path endPath = Paths.get("").resolve(saveName +"_the_end/DIM1");
+                if(Files.isDirectory(netherPath)) sources.add(new ParallelArchiver.Source(netherPath, rootName +"/DIM-1"));
+                if(Files.isDirectory(endPath)) sources.add(new ParallelArchiver.Source(endPath, rootName +"/DIM1"));
+            }
+
+            /*
+             * A running world is copied to the staging folder with auto-save turned off for a moment,
+             * so that the zip is made from consistent files while the server keeps saving
+             */
+            HotSnapshot hotSnapshot = null;
+            if(save.isRunning()) {
+                try {
+                    hotSnapshot = HotSnapshot.take(server, sources);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    return;
+                }
+                sources = hotSnapshot.getSources();
             }
 
+            // Stream the zip to the client as it is being compressed,
+            // the length is unknown, so it is sent with chunked transfer encoding
+            res.addHeader("X-Powered-By", "OPanel");
+            res.setStatus(HttpServletResponse.SC_OK);
+            res.setContentType("application/octet-stream");
+            res.setHeader("Content-Disposition", "attachment; filename=\""+ save.getName() +".zip\"");
             try {
-                ZipUtility.zip(savePath, zipPath);
-                sendContentResponse(res, Utils.readFile(zipPath), "application/octet-stream");
+                final OutputStream os = res.getOutputStream();
+                ParallelArchiver.Stats stats = ZipUtility.zip(sources, os, level);
+                os.close();
+                plugin.logger.info("Save "+ saveName +" is downloaded: "+ stats);
             } catch (IOException e) {
                 e.printStackTrace();
+                // Abort the connection if the zip is partially sent, so that the client won't get a broken zip
+                if(res.isCommitted()) throw e;
+                res.reset();
                 sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            }
-            Files.delete(zipPath);
-
-            // Finally, don't forget to delete the DIM-1 and DIM1 folders manually copied by us
-            if(server.getServerType() == ServerType.BUKKIT) {
-                Utils.deleteDirectoryRecursively(savePath.resolve("DIM-1"));
-                Utils.deleteDirectoryRecursively(savePath.resolve("DIM1"));
+            } finally {
+                if(hotSnapshot != null) hotSnapshot.close();
             }
             return;
         }
@@ -97,10 +167,15 @@ public class SavesServlet extends BaseServlet {
             saveInfo.put("name", save.getName());
             saveInfo.put("displayName", save.getDisplayName());
             saveInfo.put("path", save.getPath().toString());
-            saveInfo.put("size", save.getSize());
+            SaveSizeCache.Entry size = save.getCachedSize();
+            saveInfo.put("size", size.size);
+            saveInfo.put("sizeUpdatedAt", size.updatedAt);
             saveInfo.put("isRunning", save.isRunning());
             saveInfo.put("isCurrent", save.isCurrent());
             saveInfo.put("defaultGameMode", save.getDefaultGameMode().getName());
+            LevelData levelData = save.getLevelData();
+            saveInfo.put("version", levelData.versionName);
+            saveInfo.put("lastPlayed", levelData.lastPlayed);
             saves.add(saveInfo);
         }
         obj.put("saves", saves);
@@ -122,82 +197,103 @@ public class SavesServlet extends BaseServlet {
         /** save uploading */
         if(reqPath == null || reqPath.equals("/") || !reqPath.startsWith("/")) {
             req.setCharacterEncoding("utf-8");
-            /** @see https://stackoverflow.com/questions/52514462/jetty-no-multipart-config-for-servlet-problem */
-            req.setAttribute(Request.__MULTIPART_CONFIG_ELEMENT, multipartConfig);
+            final String boundary = MultipartStream.getBoundary(req.getContentType());
+            if(boundary == null) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
             try {
-                Part filePart = req.getPart("file");
-                if(filePart == null || filePart.getSize() <= 0) {
+                // The zip is extracted while it is being received, without spooling it to the disk first
+                MultipartStream multipart = new MultipartStream(req.getInputStream(), boundary);
+                boolean found = false;
+                while(multipart.nextPart()) {
+                    if("file".equals(multipart.getName())) {
+                        found = true;
+                        break;
+                    }
+                }
+                if(!found) {
                     sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
                     return;
                 }
 
-                final String fileName = filePart.getSubmittedFileName();
-                if(!fileName.endsWith(".zip")) {
+                final String saveName = SaveExtractor.getSaveName(multipart.getFileName());
+                if(saveName == null) {
                     sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
                     return;
                 }
 
-                final Path targetPath = Paths.get("").resolve(fileName.replaceAll(".zip", ""));
+                final Path targetPath = Paths.get("").resolve(saveName);
                 if(Files.exists(targetPath)) {
                     sendResponse(res, HttpServletResponse.SC_CONFLICT);
                     return;
                 }
 
-                // Copy to tmp dir
-                final Path filePath = OPanel.TMP_DIR_PATH.resolve(fileName);
-                try(InputStream is = filePart.getInputStream()) {
-                    Files.copy(is, filePath, StandardCopyOption.REPLACE_EXISTING);
-                }
-                // Unzip
-                ZipUtility.unzip(filePath, targetPath);
-                // Delete zip file
-                Files.delete(filePath);
-
-                // Process the unzipped folder
-                /*
-                 * The provided save zip file may contain a save folder
-                 * or directly contain all the files of the save at the root of the zip file.
-                 * The logic here is to process the first case. (We'll test it with the `level.dat` file)
-                 *
-                 * However, if the fucking user upload something we didn't expect,
-                 * then just ignore it as if nothing wrong happened.
-                 */
-                if(!Files.exists(targetPath.resolve("level.dat"))) {
-                    Path folderInside = targetPath.resolve(targetPath.getFileName()).toAbsolutePath();
-                    if(!Files.exists(folderInside)) {
-                        Utils.deleteDirectoryRecursively(targetPath);
-                        sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
-                        return;
-                    }
-                    try(Stream<Path> stream = Files.list(folderInside)) {
-                        stream.forEach(path -> {
-                            try {
-                                Utils.copyDirectoryRecursively(path, targetPath.resolve(path.getFileName()));
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        });
-                    }
-                    Utils.deleteDirectoryRecursively(folderInside);
-                }
-
-                // Check if the uploaded folder is a valid save
-                // If not, delete the uploaded folder
-                if(!Files.exists(targetPath.resolve("level.dat"))) {
-                    Utils.deleteDirectoryRecursively(targetPath);
-                    sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
-                    return;
-                }
-
+                SaveExtractor.Result result = SaveExtractor.extract(multipart.getPartStream(), targetPath);
+                SaveSizeCache.get().invalidate(targetPath);
+                plugin.logger.info("Save "+ saveName +" is uploaded: "+ result.files +" files, "+ result.bytes +" bytes");
                 sendResponse(res, HttpServletResponse.SC_OK);
             } catch (ZipException e) {
-                plugin.logger.warn("An illegal save zip is detected! This may cause a zip slip, so it is blocked from unzipping to the server.");
+                plugin.logger.warn("An illegal save zip is detected and blocked from unzipping to the server: "+ e.getMessage());
                 sendResponse(res, HttpServletResponse.SC_FORBIDDEN);
-                Utils.clearDirectoryRecursively(OPanel.TMP_DIR_PATH);
+            } catch (SaveExtractor.InvalidSaveException e) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            } catch (FileAlreadyExistsException e) {
+                sendResponse(res, HttpServletResponse.SC_CONFLICT);
             } catch (Exception e) {
                 e.printStackTrace();
                 sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             }
+        /** save trimming */
+        } else if(reqPath.endsWith(TRIM_SUFFIX)) {
+            final String saveName = reqPath.substring(1, reqPath.length() - TRIM_SUFFIX.length());
+            OPanelSave save = server.getSave(saveName);
+            if(save == null) {
+                sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            WorldTrimmer.Options options = getRequestBody(req, WorldTrimmer.Options.class);
+            if(options == null || options.isEmpty()) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            try {
+                TrimReport report = save.trim(options);
+                if(!report.dryRun) {
+                    SaveSizeCache.get().invalidate(save.getPath());
+                    plugin.logger.info("Save "+ saveName +" is trimmed: "+ report.chunksDropped +" chunks dropped, "+ report.bytesBefore +" -> "+ report.bytesAfter +" bytes");
+                }
+                HashMap<String, Object> obj = new HashMap<>();
+                obj.put("report", report);
+                sendResponse(res, obj);
+            } catch (IllegalStateException e) {
+                // Trimming a running save would be overwritten by the server, or corrupt it
+                sendResponse(res, HttpServletResponse.SC_CONFLICT);
+            } catch (IOException e) {
+                e.printStackTrace();
+                sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        /** region scanning */
+        } else if(reqPath.endsWith(SCAN_SUFFIX)) {
+            final String saveName = reqPath.substring(1, reqPath.length() - SCAN_SUFFIX.length());
+            OPanelSave save = server.getSave(saveName);
+            if(save == null) {
+                sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            ScanRequestBodyType reqBody = getRequestBody(req, ScanRequestBodyType.class);
+
+            try {
+                ScanTask task = save.scanRegions(reqBody != null && reqBody.repair);
+                plugin.logger.info("Region scan of save "+ saveName +" is started"+ (task.repair ? " with repair" : ""));
+                HashMap<String, Object> obj = new HashMap<>();
+                obj.put("task", task);
+                sendResponse(res, obj);
+            } catch (IllegalStateException e) {
+                // The server keeps the region files open, repairing them underneath would be undone or corrupt them
+                sendResponse(res, HttpServletResponse.SC_CONFLICT);
+            }
         /** save editing */
         } else {
             String saveName = reqPath.substring(1);
@@ -238,7 +334,9 @@ public class SavesServlet extends BaseServlet {
         }
 
         try {
+            final Path savePath = save.getPath();
             save.delete();
+            SaveSizeCache.get().invalidate(savePath);
             sendResponse(res, HttpServletResponse.SC_OK);
         } catch (IOException e) {
             e.printStackTrace();
@@ -246,6 +344,10 @@ public class SavesServlet extends BaseServlet {
         }
     }
 
+    private static class ScanRequestBodyType {
+        boolean repair;
+    }
+
     private static class SaveEditRequestBodyType {
         String displayName;
         String defaultGameMode;
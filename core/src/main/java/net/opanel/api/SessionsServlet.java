@@ -0,0 +1,84 @@
+package net.opanel.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.opanel.OPanel;
+import net.opanel.player.PlayerIndex;
+import net.opanel.player.SessionLog;
+import net.opanel.web.BaseServlet;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * GET    /api/sessions?days=                  online count, peak concurrency, and daily uniques of the last days
+ * GET    /api/sessions/top?month=&limit=      players with the most playtime, month is `yyyy-MM`, all time if omitted
+ * GET    /api/sessions/heatmap                average concurrent players by day of week and hour
+ * GET    /api/sessions/{uuid}                 playtime and sessions of a player
+ */
+public class SessionsServlet extends BaseServlet {
+    public static final String route = "/api/sessions/*";
+    private static final int DEFAULT_DAYS = 30;
+    private static final int MAX_DAYS = 366;
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 100;
+
+    public SessionsServlet(OPanel plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        final SessionLog sessionLog = plugin.getSessionLog();
+
+        try {
+            if(reqPath == null || reqPath.equals("/")) {
+                final int days = Math.min(MAX_DAYS, Math.max(1, getIntParameter(req, "days", DEFAULT_DAYS)));
+                sendResponse(res, sessionLog.getSummary(days));
+                return;
+            }
+
+            HashMap<String, Object> obj = new HashMap<>();
+            switch(reqPath) {
+                case "/top" -> {
+                    final String month = req.getParameter("month");
+                    if(month != null && !month.matches("\\d{4}-\\d{2}")) {
+                        sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                        return;
+                    }
+                    final int limit = Math.min(MAX_LIMIT, Math.max(1, getIntParameter(req, "limit", DEFAULT_LIMIT)));
+                    final List<SessionLog.PlaytimeEntry> players = sessionLog.getTopPlaytime(month, limit);
+                    final PlayerIndex playerIndex = plugin.getPlayerIndex();
+                    for(SessionLog.PlaytimeEntry player : players) {
+                        final PlayerIndex.Entry entry = playerIndex.getEntry(player.uuid);
+                        if(entry != null) player.name = entry.name;
+                    }
+                    obj.put("players", players);
+                }
+                case "/heatmap" -> obj.put("heatmap", sessionLog.getHeatmap());
+                default -> {
+                    final SessionLog.PlayerStats stats = sessionLog.getPlayerStats(reqPath.substring(1));
+                    if(stats == null) {
+                        sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                        return;
+                    }
+                    obj.put("stats", stats);
+                }
+            }
+            sendResponse(res, obj);
+        } catch (NumberFormatException e) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+        }
+    }
+
+    private static int getIntParameter(HttpServletRequest req, String name, int defaultValue) {
+        final String value = req.getParameter(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+}
@@ -0,0 +1,77 @@
+package net.opanel.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.opanel.OPanel;
+import net.opanel.player.StatsAggregator;
+import net.opanel.web.BaseServlet;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * GET    /api/stats?limit=                     all leaderboards
+ * GET    /api/stats/leaderboard/{stat}?limit=  leaderboard of a statistic, play_time is in ticks
+ * GET    /api/stats/{uuid}                     all statistics and done advancements of a player
+ */
+public class StatsServlet extends BaseServlet {
+    public static final String route = "/api/stats/*";
+    private static final String LEADERBOARD_PREFIX = "/leaderboard/";
+    private static final int DEFAULT_LIMIT = 10;
+
+    public StatsServlet(OPanel plugin) {
+        super(plugin);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        final StatsAggregator statsAggregator = plugin.getStatsAggregator();
+
+        try {
+            final int limit = req.getParameter("limit") != null ? Integer.parseInt(req.getParameter("limit")) : DEFAULT_LIMIT;
+            if(limit < 1 || limit > StatsAggregator.MAX_LEADERBOARD_SIZE) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            HashMap<String, Object> obj = new HashMap<>();
+            if(reqPath == null || reqPath.equals("/")) {
+                final LinkedHashMap<String, List<StatsAggregator.Ranking>> leaderboards = new LinkedHashMap<>();
+                for(String stat : StatsAggregator.STATS) {
+                    leaderboards.put(stat, statsAggregator.getLeaderboard(stat, limit));
+                }
+                obj.put("leaderboards", leaderboards);
+            } else if(reqPath.startsWith(LEADERBOARD_PREFIX)) {
+                final String stat = reqPath.substring(LEADERBOARD_PREFIX.length());
+                final List<StatsAggregator.Ranking> leaderboard = statsAggregator.getLeaderboard(stat, limit);
+                if(leaderboard == null) {
+                    sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                obj.put("stat", stat);
+                obj.put("leaderboard", leaderboard);
+            } else {
+                final HashMap<String, Object> stats = statsAggregator.getPlayerStats(reqPath.substring(1));
+                if(stats == null) {
+                    sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                obj.putAll(stats);
+            }
+            sendResponse(res, obj);
+        } catch (NumberFormatException e) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (IOException | IllegalStateException e) {
+            e.printStackTrace();
+            sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+}
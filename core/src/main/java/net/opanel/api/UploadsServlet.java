@@ -0,0 +1,187 @@
+package net.opanel.api;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import net.opanel.OPanel;
+import net.opanel.utils.SaveExtractor;
+import net.opanel.utils.UploadSession;
+import net.opanel.web.BaseServlet;
+import net.opanel.world.SaveSizeCache;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.zip.ZipException;
+
+/**
+ * Resumable chunked upload of saves
+ *
+ * POST   /api/uploads                    create an upload with `{ fileName, size }`
+ * GET    /api/uploads/{id}               received ranges of the upload
+ * PUT    /api/uploads/{id}?offset=       send a chunk, with its CRC32 in hex in the `X-Chunk-Checksum` header
+ * POST   /api/uploads/{id}/complete      extract the uploaded zip as a save
+ * DELETE /api/uploads/{id}               cancel the upload
+ */
+public class UploadsServlet extends BaseServlet {
+    public static final String route = "/api/uploads/*";
+    private static final String COMPLETE_SUFFIX = "/complete";
+
+    public UploadsServlet(OPanel plugin) {
+        super(plugin);
+    }
+
+    private static class UploadRequestBodyType {
+        String fileName;
+        long size;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final UploadSession session = getSession(req.getPathInfo());
+        if(session == null) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        sendResponse(res, session.toJson());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final String reqPath = req.getPathInfo();
+        /** upload creating */
+        if(reqPath == null || reqPath.equals("/")) {
+            UploadRequestBodyType reqBody = getRequestBody(req, UploadRequestBodyType.class);
+            final String saveName = reqBody != null ? SaveExtractor.getSaveName(reqBody.fileName) : null;
+            if(saveName == null || reqBody.size < 0) {
+                sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            if(Files.exists(Paths.get("").resolve(saveName))) {
+                sendResponse(res, HttpServletResponse.SC_CONFLICT);
+                return;
+            }
+
+            try {
+                UploadSession session = UploadSession.create(reqBody.fileName, reqBody.size);
+                sendResponse(res, session.toJson());
+            } catch (IOException e) {
+                e.printStackTrace();
+                sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+            }
+            return;
+        }
+
+        /** upload completing */
+        if(!reqPath.endsWith(COMPLETE_SUFFIX)) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        final UploadSession session = getSession(reqPath.substring(0, reqPath.length() - COMPLETE_SUFFIX.length()));
+        if(session == null) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        final String saveName = SaveExtractor.getSaveName(session.getFileName());
+        final Path targetPath = Paths.get("").resolve(saveName);
+        try {
+            session.finish();
+        } catch (IllegalStateException e) {
+            sendResponse(res, HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+
+        try(InputStream is = new BufferedInputStream(Files.newInputStream(session.getPartPath()))) {
+            SaveExtractor.Result result = SaveExtractor.extract(is, targetPath);
+            SaveSizeCache.get().invalidate(targetPath);
+            plugin.logger.info("Save "+ saveName +" is uploaded: "+ result.files +" files, "+ result.bytes +" bytes");
+            sendResponse(res, HttpServletResponse.SC_OK);
+        } catch (ZipException e) {
+            plugin.logger.warn("An illegal save zip is detected and blocked from unzipping to the server: "+ e.getMessage());
+            sendResponse(res, HttpServletResponse.SC_FORBIDDEN);
+        } catch (SaveExtractor.InvalidSaveException e) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (FileAlreadyExistsException e) {
+            sendResponse(res, HttpServletResponse.SC_CONFLICT);
+        } catch (Exception e) {
+            e.printStackTrace();
+            sendResponse(res, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } finally {
+            UploadSession.remove(session.getId());
+        }
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final UploadSession session = getSession(req.getPathInfo());
+        if(session == null) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        final long offset;
+        try {
+            offset = Long.parseLong(req.getParameter("offset"));
+        } catch (NumberFormatException e) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        try {
+            session.writeChunk(req.getInputStream(), offset, req.getContentLengthLong(), req.getHeader("X-Chunk-Checksum"));
+            HashMap<String, Object> obj = new HashMap<>();
+            obj.put("receivedBytes", session.getReceivedBytes());
+            obj.put("complete", session.isComplete());
+            sendResponse(res, obj);
+        } catch (IllegalArgumentException | UploadSession.ChecksumException e) {
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendResponse(res, HttpServletResponse.SC_CONFLICT);
+        } catch (IOException e) {
+            // Mostly the connection is dropped, the chunk will be sent again
+            plugin.logger.warn("Failed to receive the chunk at "+ offset +" of upload "+ session.getId() +": "+ e.getMessage());
+            sendResponse(res, HttpServletResponse.SC_BAD_REQUEST);
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse res) {
+        if(!authCookie(req)) {
+            sendResponse(res, HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        final UploadSession session = getSession(req.getPathInfo());
+        if(session == null) {
+            sendResponse(res, HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        UploadSession.remove(session.getId());
+        sendResponse(res, HttpServletResponse.SC_OK);
+    }
+
+    private static UploadSession getSession(String reqPath) {
+        if(reqPath == null || reqPath.length() <= 1) return null;
+        return UploadSession.get(reqPath.substring(1));
+    }
+}
@@ -0,0 +1,253 @@
+package net.opanel.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import net.opanel.OPanel;
+import net.opanel.common.OPanelSave;
+import net.opanel.common.OPanelServer;
+import net.opanel.utils.CronExpression;
+import net.opanel.utils.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Takes snapshots of the saves by their cron schedules, and prunes the scheduled snapshots by the retention tiers.
+ * Backups run one by one on a background thread.
+ */
+public class BackupScheduler {
+    public static final Path POLICIES_PATH = OPanel.OPANEL_DIR_PATH.resolve("backup-policies.json");
+    public static final String LABEL_SCHEDULED = "scheduled";
+    public static final String LABEL_MANUAL = "manual";
+    private static final int MAX_TASK_HISTORY = 20;
+
+    private final OPanel plugin;
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+    private final Deque<BackupTask> tasks = new ArrayDeque<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Backup Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Backup");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private LocalDateTime lastCheck;
+
+    public static class Policy {
+        public String save;
+        public String schedule = "0 * * * *"; // cron expression, hourly by default
+        public boolean enabled = true;
+        // Retention tiers of the scheduled snapshots, all 0 to keep everything
+        public int keepHourly = 24;
+        public int keepDaily = 7;
+        public int keepWeekly = 4;
+        public long maxBytesPerSecond = 0; // 0 for unlimited
+        public double msptBudget = 60; // pause reading while the ticks are slower than this, 0 to disable
+
+        public void validate() {
+            if(save == null || save.isEmpty()) throw new IllegalArgumentException("Save name is required.");
+            new CronExpression(schedule);
+        }
+    }
+
+    public BackupScheduler(OPanel plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        load();
+        lastCheck = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        // Check at the beginning of every minute
+        final long delay = 60_000 - System.currentTimeMillis() % 60_000;
+        timer.scheduleAtFixedRate(this::check, delay, 60_000, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        timer.shutdownNow();
+        worker.shutdownNow();
+    }
+
+    public List<Policy> getPolicies() {
+        return new ArrayList<>(policies.values());
+    }
+
+    // Time of the next scheduled backup of the save, or -1 if the policy is disabled or never matches
+    public long getNextRun(Policy policy) {
+        if(!policy.enabled) return -1;
+        try {
+            final LocalDateTime next = new CronExpression(policy.schedule).next(LocalDateTime.now());
+            return next != null ? next.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    public void setPolicy(Policy policy) throws IOException {
+        policy.validate();
+        policies.put(policy.save, policy);
+        save();
+    }
+
+    public boolean removePolicy(String saveName) throws IOException {
+        if(policies.remove(saveName) == null) return false;
+        save();
+        return true;
+    }
+
+    public List<BackupTask> getTasks() {
+        synchronized(tasks) {
+            return new ArrayList<>(tasks);
+        }
+    }
+
+    public BackupTask getTask(String id) {
+        synchronized(tasks) {
+            for(BackupTask task : tasks) {
+                if(task.id.equals(id)) return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Queue a backup of the save.
+     * If the save is already being backed up, the existing task is returned.
+     */
+    public BackupTask submit(String saveName, String label) {
+        final Policy policy = policies.getOrDefault(saveName, new Policy());
+        final BackupTask task;
+        synchronized(tasks) {
+            for(BackupTask existing : tasks) {
+                if(existing.save.equals(saveName) && existing.isActive()) return existing;
+            }
+            task = new BackupTask(UUID.randomUUID().toString(), saveName, label, policy.maxBytesPerSecond, policy.msptBudget);
+            tasks.addFirst(task);
+            while(tasks.size() > MAX_TASK_HISTORY && !tasks.peekLast().isActive()) {
+                tasks.removeLast();
+            }
+        }
+        worker.execute(() -> run(task, policy));
+        return task;
+    }
+
+    private void check() {
+        final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        // Also cover the minutes skipped when the timer is late
+        for(LocalDateTime time = lastCheck.plusMinutes(1); !time.isAfter(now); time = time.plusMinutes(1)) {
+            for(Policy policy : policies.values()) {
+                if(!policy.enabled) continue;
+                try {
+                    if(new CronExpression(policy.schedule).matches(time)) {
+                        submit(policy.save, LABEL_SCHEDULED);
+                    }
+                } catch (IllegalArgumentException e) {
+                    plugin.logger.warn("Invalid backup schedule of save "+ policy.save +": "+ e.getMessage());
+                }
+            }
+        }
+        lastCheck = now;
+    }
+
+    private void run(BackupTask task, Policy policy) {
+        task.state = BackupTask.State.RUNNING;
+        task.startTime = System.currentTimeMillis();
+        try {
+            final OPanelServer server = plugin.getServer();
+            final OPanelSave save = server != null ? server.getSave(task.save) : null;
+            if(save == null) {
+                throw new IOException("Cannot find the save "+ task.save);
+            }
+
+            // A running world is only frozen while its changed files are staged,
+            // the throttled reading is done from the staged copies
+            task.phase = "copying";
+            final SnapshotStore.Freezer freezer = save.isRunning() ? () -> SaveFreeze.acquire(server) : null;
+            final Snapshot snapshot = SnapshotStore.get().create(save.getName(), save.getPath(), task.label, task, freezer);
+            task.snapshotId = snapshot.id;
+
+            if(LABEL_SCHEDULED.equals(task.label)) {
+                task.phase = "pruning";
+                final List<String> expired = selectExpired(save.getSnapshots(), policy);
+                if(!expired.isEmpty()) save.deleteSnapshots(expired);
+            }
+
+            task.state = BackupTask.State.DONE;
+            plugin.logger.info("Backup of save "+ task.save +" is done: "+ snapshot.files +" files, "+ snapshot.addedBytes +" bytes added.");
+        } catch (Exception e) {
+            task.error = e.getMessage();
+            task.state = BackupTask.State.FAILED;
+            plugin.logger.error("Failed to back up save "+ task.save +": "+ e.getMessage());
+        } finally {
+            task.phase = null;
+            task.endTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Keep the newest scheduled snapshot of each of the recent hours, days and weeks,
+     * and return the ids of the other scheduled snapshots. Manual snapshots are never expired.
+     */
+    public static List<String> selectExpired(List<Snapshot> snapshots, Policy policy) {
+        final List<String> expired = new ArrayList<>();
+        if(policy.keepHourly <= 0 && policy.keepDaily <= 0 && policy.keepWeekly <= 0) return expired;
+
+        final List<Snapshot> scheduled = new ArrayList<>(snapshots.stream()
+                .filter(snapshot -> LABEL_SCHEDULED.equals(snapshot.label))
+                .toList());
+        scheduled.sort(Comparator.comparingLong((Snapshot snapshot) -> snapshot.time).reversed());
+
+        final Set<LocalDateTime> hours = new HashSet<>();
+        final Set<LocalDate> days = new HashSet<>();
+        final Set<String> weeks = new HashSet<>();
+        for(int i = 0; i < scheduled.size(); i++) {
+            final Snapshot snapshot = scheduled.get(i);
+            final LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(snapshot.time), ZoneId.systemDefault());
+            final LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+            final LocalDate day = time.toLocalDate();
+            final String week = day.get(IsoFields.WEEK_BASED_YEAR) +"-"+ day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+
+            boolean keep = i == 0; // always keep the latest one
+            if(!hours.contains(hour) && hours.size() < policy.keepHourly) {
+                hours.add(hour);
+                keep = true;
+            }
+            if(!days.contains(day) && days.size() < policy.keepDaily) {
+                days.add(day);
+                keep = true;
+            }
+            if(!weeks.contains(week) && weeks.size() < policy.keepWeekly) {
+                weeks.add(week);
+                keep = true;
+            }
+            if(!keep) expired.add(snapshot.id);
+        }
+        return expired;
+    }
+
+    private void load() {
+        if(!Files.exists(POLICIES_PATH)) return;
+        try {
+            List<Policy> list = new Gson().fromJson(Utils.readTextFile(POLICIES_PATH), new TypeToken<List<Policy>>() {}.getType());
+            if(list == null) return;
+            for(Policy policy : list) {
+                if(policy.save != null) policies.put(policy.save, policy);
+            }
+        } catch (IOException | JsonSyntaxException e) {
+            plugin.logger.warn("Failed to load backup policies: "+ e.getMessage());
+        }
+    }
+
+    private void save() throws IOException {
+        Utils.writeTextFile(POLICIES_PATH, new Gson().toJson(getPolicies()));
+    }
+}
@@ -0,0 +1,98 @@
+package net.opanel.backup;
+
+import net.opanel.utils.TPS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Progress of a backup, which is also the monitor of the snapshot being taken.
+ * The reading is throttled by the bandwidth cap and the server load.
+ */
+public class BackupTask implements SnapshotStore.Monitor {
+    private static final long LAG_CHECK_INTERVAL_MS = 200;
+    // Don't wait forever if the server keeps lagging
+    private static final long MAX_LAG_WAIT_MS = 60_000;
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    public final String id;
+    public final String save;
+    public final String label;
+    public volatile State state = State.QUEUED;
+    public volatile String phase;
+    public volatile int totalFiles;
+    public volatile int doneFiles;
+    public volatile long totalBytes;
+    public volatile long doneBytes;
+    public volatile long readBytes;
+    public volatile long startTime;
+    public volatile long endTime;
+    public volatile boolean throttled;
+    public volatile String snapshotId;
+    public volatile String error;
+
+    private final transient long maxBytesPerSecond;
+    private final transient double msptBudget;
+    private transient long rateStart;
+
+    public BackupTask(String id, String save, String label, long maxBytesPerSecond, double msptBudget) {
+        this.id = id;
+        this.save = save;
+        this.label = label;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.msptBudget = msptBudget;
+    }
+
+    public boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    @Override
+    public void onStart(int files, long bytes) {
+        totalFiles = files;
+        totalBytes = bytes;
+    }
+
+    @Override
+    public synchronized void onFile(long bytes) {
+        doneFiles++;
+        doneBytes += bytes;
+    }
+
+    @Override
+    public void beforeRead(long bytes) throws IOException {
+        try {
+            waitForServer();
+            limitRate(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Backup is interrupted.");
+        }
+    }
+
+    // Pause while the ticks take longer than the budget
+    private void waitForServer() throws InterruptedException {
+        if(msptBudget <= 0) return;
+        long waited = 0;
+        while(TPS.getRecentMSPT() > msptBudget && !TPS.isPaused() && waited < MAX_LAG_WAIT_MS) {
+            throttled = true;
+            Thread.sleep(LAG_CHECK_INTERVAL_MS);
+            waited += LAG_CHECK_INTERVAL_MS;
+        }
+    }
+
+    // Shared by all reading threads, so the cap applies to the whole backup
+    private synchronized void limitRate(long bytes) throws InterruptedException {
+        // From the first read, which can be before the start while the changed files are copied
+        if(readBytes == 0) rateStart = System.nanoTime();
+        readBytes += bytes;
+        if(maxBytesPerSecond <= 0) return;
+        final long expectedNanos = (long) (readBytes * 1_000_000_000.0 / maxBytesPerSecond);
+        final long aheadNanos = expectedNanos - (System.nanoTime() - rateStart);
+        if(aheadNanos > 0) {
+            throttled = true;
+            Thread.sleep(aheadNanos / 1_000_000, (int) (aheadNanos % 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package net.opanel.backup;
+
+import net.opanel.OPanel;
+import net.opanel.common.OPanelServer;
+import net.opanel.utils.ParallelArchiver;
+import net.opanel.utils.Utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * A frozen copy of a running world in the staging folder, so that it can be archived while the server keeps saving.
+ * Auto-save is only turned off while the copy is being made, see {@link SaveFreeze}.
+ *
+ * Only level.dat and the player data, which the game always replaces by renaming a new file, are hard-linked.
+ * Everything else can be written in place (regions, stats, advancements, data/*.dat on some versions), so it is copied.
+ * `Files.copy` makes reflinks on the filesystems supporting it (btrfs, XFS) with recent JDKs,
+ * otherwise it is a real copy done in parallel.
+ */
+public class HotSnapshot implements Closeable {
+    private static final Path STAGING_DIR_PATH = OPanel.TMP_DIR_PATH.resolve("staging");
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+
+    private final Path rootPath;
+    private final List<ParallelArchiver.Source> sources = new ArrayList<>();
+    private long frozenMillis;
+
+    private HotSnapshot(Path rootPath) {
+        this.rootPath = rootPath;
+    }
+
+    /**
+     * Freeze the world, copy its folders into the staging folder, and restore auto-save as it was.
+     * Fails if the server cannot flush the world in time.
+     * The archive paths of the sources are kept, so the staged sources can be archived in the same way.
+     */
+    public static HotSnapshot take(OPanelServer server, List<ParallelArchiver.Source> sources) throws IOException {
+        final Path rootPath = STAGING_DIR_PATH.resolve(UUID.randomUUID().toString());
+        final HotSnapshot snapshot = new HotSnapshot(rootPath);
+        Files.createDirectories(rootPath);
+
+        final long start = System.currentTimeMillis();
+        try(SaveFreeze freeze = SaveFreeze.acquire(server)) {
+            for(int i = 0; i < sources.size(); i++) {
+                final ParallelArchiver.Source source = sources.get(i);
+                final Path stagedPath = rootPath.resolve(String.valueOf(i));
+                stage(source.dirPath(), stagedPath);
+                snapshot.sources.add(new ParallelArchiver.Source(stagedPath, source.archivePath()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            snapshot.close();
+            throw new IOException("Taking hot snapshot is interrupted.");
+        } catch (IOException e) {
+            snapshot.close();
+            throw e;
+        }
+        snapshot.frozenMillis = System.currentTimeMillis() - start;
+        return snapshot;
+    }
+
+    public List<ParallelArchiver.Source> getSources() {
+        return sources;
+    }
+
+    // How long auto-save was turned off
+    public long getFrozenMillis() {
+        return frozenMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(Files.exists(rootPath)) Utils.deleteDirectoryRecursively(rootPath);
+    }
+
+    private static void stage(Path sourcePath, Path targetPath) throws IOException, InterruptedException {
+        final List<Path> files;
+        try(Stream<Path> stream = Files.walk(sourcePath)) {
+            files = stream.filter(path -> !path.getFileName().toString().endsWith("session.lock")).toList();
+        }
+        // Create the directories first, walking order puts every directory before its content
+        for(Path path : files) {
+            if(Files.isDirectory(path)) Files.createDirectories(targetPath.resolve(sourcePath.relativize(path).toString()));
+        }
+
+        try {
+            pool.submit(() -> files.parallelStream().filter(Files::isRegularFile).forEach(file -> {
+                final String relative = sourcePath.relativize(file).toString();
+                try {
+                    stageFile(file, targetPath.resolve(relative), relative.replace(File.separatorChar, '/'));
+                } catch (NoSuchFileException e) {
+                    // deleted by the server while staging
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException ioe) throw ioe.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void stageFile(Path file, Path target, String relative) throws IOException {
+        if(isReplacedByRename(relative)) {
+            try {
+                Files.createLink(target, file);
+                return;
+            } catch (UnsupportedOperationException | IOException e) {
+                // e.g. the staging folder is on another filesystem, fall back to copying
+            }
+        }
+        Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    // Writing to the original file after linking would change the staged one too, so only these are safe
+    private static boolean isReplacedByRename(String relative) {
+        return relative.equals("level.dat") || (relative.startsWith("playerdata/") && relative.endsWith(".dat") && relative.indexOf('/', "playerdata/".length()) < 0);
+    }
+}
@@ -0,0 +1,67 @@
+package net.opanel.backup;
+
+import net.opanel.common.OPanelServer;
+import net.opanel.utils.TPS;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Auto-save turned off while the files of a running world are being copied.
+ *
+ * The freeze is shared by the backups and the hot snapshots running at the same time. The first one turns auto-save off,
+ * and the last one to be closed turns it on again, only if it was on before, so that a save-off of the admin is kept.
+ */
+public class SaveFreeze implements Closeable {
+    private static final long SAVE_TIMEOUT_MS = 10_000;
+    private static final Object lock = new Object();
+    private static int holders = 0;
+    private static boolean wasEnabled;
+
+    private final OPanelServer server;
+    private boolean closed = false;
+
+    private SaveFreeze(OPanelServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Turn off auto-save if it is not frozen yet, then flush the world and wait for the server to write it.
+     * @throws IOException if the server doesn't finish saving in time, the freeze is released then
+     */
+    public static SaveFreeze acquire(OPanelServer server) throws IOException {
+        synchronized(lock) {
+            if(holders == 0) {
+                wasEnabled = server.isAutoSaveEnabled();
+                if(wasEnabled) server.setAutoSaveEnabled(false);
+            }
+            holders++;
+        }
+
+        final SaveFreeze freeze = new SaveFreeze(server);
+        try {
+            server.saveAll();
+            // A paused server runs no ticks, but it doesn't change the world either
+            if(!TPS.isPaused() && !TPS.awaitTicks(2, SAVE_TIMEOUT_MS)) {
+                throw new IOException("The server didn't finish saving the world in "+ SAVE_TIMEOUT_MS / 1000 +" seconds.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            freeze.close();
+            throw new IOException("Saving the world is interrupted.");
+        } catch (IOException | RuntimeException e) {
+            freeze.close();
+            throw e;
+        }
+        return freeze;
+    }
+
+    @Override
+    public void close() {
+        synchronized(lock) {
+            if(closed) return;
+            closed = true;
+            if(--holders == 0 && wasEnabled) server.setAutoSaveEnabled(true);
+        }
+    }
+}
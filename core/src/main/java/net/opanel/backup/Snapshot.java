@@ -0,0 +1,44 @@
+package net.opanel.backup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Manifest of a snapshot, saved as `.opanel/backups/snapshots/<save>/<id>.json`.
+ */
+public class Snapshot {
+    public String id;
+    public String save;
+    public long time;
+    public int files;
+    public long size;       // total size of the files in the snapshot
+    public long addedBytes; // size of the objects newly stored by this snapshot
+    public String label;    // e.g. "manual", "scheduled"
+    public Map<String, FileEntry> entries = new HashMap<>(); // relative path -> entry
+
+    public static class FileEntry {
+        public long size;
+        public long lastModified;
+        public String hash;
+        // If true, the hash refers to a region index object which lists the hashes of the chunks
+        public boolean region;
+
+        public boolean isSameFile(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+
+    // A copy without the file entries, for listing
+    public Snapshot toSummary() {
+        Snapshot summary = new Snapshot();
+        summary.id = id;
+        summary.save = save;
+        summary.time = time;
+        summary.files = files;
+        summary.size = size;
+        summary.addedBytes = addedBytes;
+        summary.label = label;
+        summary.entries = null;
+        return summary;
+    }
+}
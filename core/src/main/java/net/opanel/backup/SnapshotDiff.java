@@ -0,0 +1,14 @@
+package net.opanel.backup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SnapshotDiff {
+    public String from;
+    public String to;
+    public List<String> added = new ArrayList<>();
+    public List<String> removed = new ArrayList<>();
+    public List<String> modified = new ArrayList<>();
+    public int changedChunks; // added, removed or modified chunks in the modified region files
+    public long changedBytes; // size of the added and modified files
+}
@@ -0,0 +1,624 @@
+package net.opanel.backup;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import net.opanel.OPanel;
+import net.opanel.logger.Loggable;
+import net.opanel.utils.Utils;
+import net.opanel.world.RegionFile;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed storage of world snapshots.
+ * Every file is stored as an object named by its SHA-256 hash, so an unchanged file costs nothing in a new snapshot.
+ * Region files are split into chunks, so only the chunks changed since the previous snapshot are stored.
+ *
+ * <pre>
+ * .opanel/backups/
+ *   objects/ab/abcdef...        file contents, chunks and region indexes
+ *   snapshots/&lt;save&gt;/&lt;id&gt;.json  manifests
+ * </pre>
+ */
+public class SnapshotStore {
+    public static final Path BACKUPS_DIR_PATH = OPanel.OPANEL_DIR_PATH.resolve("backups");
+    private static final Path STAGING_DIR_PATH = OPanel.TMP_DIR_PATH.resolve("backup-staging");
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    private static final long IN_MEMORY_LIMIT = 4L * 1024 * 1024; // 4 MB
+    private static final int REGION_INDEX_MAGIC = 0x4F505249; // "OPRI"
+    private static final DateTimeFormatter ID_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static SnapshotStore instance;
+
+    private final Path objectsPath;
+    private final Path snapshotsPath;
+    private final Loggable logger;
+
+    public SnapshotStore(Path rootPath, Loggable logger) {
+        objectsPath = rootPath.resolve("objects");
+        snapshotsPath = rootPath.resolve("snapshots");
+        this.logger = logger;
+    }
+
+    // Called by OPanel on startup, before any save can take a snapshot
+    public static synchronized void init(Loggable logger) {
+        instance = new SnapshotStore(BACKUPS_DIR_PATH, logger);
+    }
+
+    public static synchronized SnapshotStore get() {
+        if(instance == null) {
+            throw new IllegalStateException("The snapshot store has not been initialized.");
+        }
+        return instance;
+    }
+
+    public interface Monitor {
+        Monitor NONE = new Monitor() { };
+
+        default void onStart(int files, long bytes) { }
+        // Called after a file is processed, whether it is read or not
+        default void onFile(long bytes) { }
+        // Called before reading from the save, it can block to limit the I/O
+        default void beforeRead(long bytes) throws IOException { }
+    }
+
+    // Keeps the files of a running save unchanged until it is closed
+    public interface Freezer {
+        Closeable freeze() throws IOException;
+    }
+
+    // A file which is changed since the previous snapshot, and where to read it from
+    private record ChangedFile(String relative, Path readPath, BasicFileAttributes attr) { }
+
+    public Snapshot create(String saveName, Path savePath, String label) throws IOException {
+        return create(saveName, savePath, label, Monitor.NONE);
+    }
+
+    public Snapshot create(String saveName, Path savePath, String label, Monitor monitor) throws IOException {
+        return create(saveName, savePath, label, monitor, null);
+    }
+
+    /**
+     * Take a snapshot of the save folder.
+     * Files whose size and modified time are the same as in the previous snapshot are not read again.
+     *
+     * With a freezer, the save is kept frozen while its changed files are read, and the monitor slows that reading down,
+     * so the freeze lasts as long as the throttled copy. The changed files are copied into the staging folder
+     * and stored from there after the freeze, except for the first snapshot of the save, which reads the whole save
+     * and is stored straight from it rather than taking its size again on the disk.
+     */
+    public synchronized Snapshot create(String saveName, Path savePath, String label, Monitor monitor, Freezer freezer) throws IOException {
+        if(!Files.isDirectory(savePath)) {
+            throw new IOException("Cannot find the save directory.");
+        }
+        Files.createDirectories(objectsPath);
+        final Path saveSnapshotsPath = getSaveSnapshotsPath(saveName);
+        Files.createDirectories(saveSnapshotsPath);
+
+        final Snapshot previous = getLatest(saveName);
+        final Snapshot snapshot = new Snapshot();
+        snapshot.save = saveName;
+        snapshot.time = System.currentTimeMillis();
+        snapshot.id = createId(saveSnapshotsPath, snapshot.time);
+        snapshot.label = label;
+
+        final Map<String, Snapshot.FileEntry> entries = new ConcurrentHashMap<>();
+        final List<ChangedFile> changedFiles = Collections.synchronizedList(new ArrayList<>());
+        final AtomicLong addedBytes = new AtomicLong();
+        final boolean staged = freezer != null && previous != null;
+        final Path stagingPath = staged ? STAGING_DIR_PATH.resolve(UUID.randomUUID().toString()) : null;
+        try {
+            try(Closeable freeze = freezer != null ? freezer.freeze() : null) {
+                scan(savePath, previous, entries, changedFiles, stagingPath, monitor);
+                if(!staged) storeChangedFiles(entries, changedFiles, addedBytes, monitor);
+            }
+            // The staged copies are already paid for by the throttled copy, and are mostly still in the page cache
+            if(staged) storeChangedFiles(entries, changedFiles, addedBytes, new Monitor() {
+                @Override
+                public void onStart(int files, long bytes) {
+                    monitor.onStart(files, bytes);
+                }
+
+                @Override
+                public void onFile(long bytes) {
+                    monitor.onFile(bytes);
+                }
+            });
+        } finally {
+            if(stagingPath != null && Files.exists(stagingPath)) Utils.deleteDirectoryRecursively(stagingPath);
+        }
+
+        snapshot.entries = new TreeMap<>(entries);
+        snapshot.files = entries.size();
+        snapshot.size = entries.values().stream().mapToLong(entry -> entry.size).sum();
+        snapshot.addedBytes = addedBytes.get();
+        writeAtomically(saveSnapshotsPath.resolve(snapshot.id +".json"), new Gson().toJson(snapshot).getBytes(StandardCharsets.UTF_8));
+        return snapshot;
+    }
+
+    public List<Snapshot> list(String saveName) throws IOException {
+        final Path saveSnapshotsPath = getSaveSnapshotsPath(saveName);
+        if(!Files.isDirectory(saveSnapshotsPath)) return new ArrayList<>();
+
+        final List<Snapshot> snapshots = new ArrayList<>();
+        try(Stream<Path> stream = Files.list(saveSnapshotsPath)) {
+            for(Path path : stream.filter(path -> path.toString().endsWith(".json")).toList()) {
+                final Snapshot snapshot = readManifest(path);
+                if(snapshot != null) snapshots.add(snapshot.toSummary());
+            }
+        }
+        snapshots.sort(Comparator.comparingLong(snapshot -> snapshot.time));
+        return snapshots;
+    }
+
+    public Snapshot get(String saveName, String id) throws IOException {
+        if(!isValidName(id)) return null;
+        final Path path = getSaveSnapshotsPath(saveName).resolve(id +".json");
+        if(!Files.exists(path)) return null;
+        return readManifest(path);
+    }
+
+    public SnapshotDiff diff(String saveName, String fromId, String toId) throws IOException {
+        final Snapshot from = get(saveName, fromId);
+        final Snapshot to = get(saveName, toId);
+        if(from == null || to == null) {
+            throw new FileNotFoundException("Cannot find the snapshot.");
+        }
+
+        final SnapshotDiff diff = new SnapshotDiff();
+        diff.from = from.id;
+        diff.to = to.id;
+        for(Map.Entry<String, Snapshot.FileEntry> entry : to.entries.entrySet()) {
+            final Snapshot.FileEntry fromEntry = from.entries.get(entry.getKey());
+            final Snapshot.FileEntry toEntry = entry.getValue();
+            if(fromEntry == null) {
+                diff.added.add(entry.getKey());
+                diff.changedBytes += toEntry.size;
+            } else if(!fromEntry.hash.equals(toEntry.hash)) {
+                diff.modified.add(entry.getKey());
+                diff.changedBytes += toEntry.size;
+                if(fromEntry.region && toEntry.region) {
+                    diff.changedChunks += countChangedChunks(readRegionIndex(fromEntry.hash), readRegionIndex(toEntry.hash));
+                }
+            }
+        }
+        for(String path : from.entries.keySet()) {
+            if(!to.entries.containsKey(path)) diff.removed.add(path);
+        }
+        Collections.sort(diff.added);
+        Collections.sort(diff.removed);
+        Collections.sort(diff.modified);
+        return diff;
+    }
+
+    /**
+     * Delete the snapshots and the objects no longer used by any snapshot.
+     * @return bytes freed
+     */
+    public synchronized long delete(String saveName, Collection<String> ids) throws IOException {
+        final Path saveSnapshotsPath = getSaveSnapshotsPath(saveName);
+        for(String id : ids) {
+            if(!isValidName(id)) continue;
+            Files.deleteIfExists(saveSnapshotsPath.resolve(id +".json"));
+        }
+        return collectGarbage();
+    }
+
+    // Keep the latest snapshots of the save only
+    public long prune(String saveName, int keepLast) throws IOException {
+        final List<Snapshot> snapshots = list(saveName);
+        if(snapshots.size() <= keepLast) return 0;
+        final List<String> ids = snapshots.subList(0, snapshots.size() - Math.max(0, keepLast)).stream()
+                .map(snapshot -> snapshot.id)
+                .toList();
+        return delete(saveName, ids);
+    }
+
+    // Rebuild the save folder of the snapshot at the target path, which must not exist
+    public synchronized void restore(String saveName, String id, Path targetPath) throws IOException {
+        final Snapshot snapshot = get(saveName, id);
+        if(snapshot == null) {
+            throw new FileNotFoundException("Cannot find the snapshot.");
+        }
+        if(Files.exists(targetPath)) {
+            throw new FileAlreadyExistsException(targetPath.toString());
+        }
+
+        for(Map.Entry<String, Snapshot.FileEntry> entry : snapshot.entries.entrySet()) {
+            final Path filePath = targetPath.resolve(entry.getKey()).normalize();
+            if(!filePath.startsWith(targetPath.normalize())) {
+                throw new IOException("Illegal path in snapshot: "+ entry.getKey());
+            }
+            Files.createDirectories(filePath.getParent());
+            final Snapshot.FileEntry fileEntry = entry.getValue();
+            if(fileEntry.region) {
+                restoreRegion(readRegionIndex(fileEntry.hash), filePath);
+            } else {
+                Files.copy(getObjectPath(fileEntry.hash), filePath);
+            }
+            Files.setLastModifiedTime(filePath, FileTime.fromMillis(fileEntry.lastModified));
+        }
+    }
+
+    private void storeChangedFiles(Map<String, Snapshot.FileEntry> entries, List<ChangedFile> changedFiles, AtomicLong addedBytes, Monitor monitor) throws IOException {
+        final long unchangedBytes = entries.values().stream().mapToLong(entry -> entry.size).sum();
+        monitor.onStart(entries.size() + changedFiles.size(), unchangedBytes + changedFiles.stream().mapToLong(file -> file.attr.size()).sum());
+        for(Snapshot.FileEntry entry : entries.values()) monitor.onFile(entry.size);
+
+        runParallel(changedFiles, file -> {
+            try {
+                entries.put(file.relative, storeFile(file.readPath, file.attr, addedBytes, monitor));
+                monitor.onFile(file.attr.size());
+            } catch (NoSuchFileException e) {
+                // deleted by the server while taking the snapshot
+            }
+        });
+    }
+
+    /**
+     * Reuse the entries of the files unchanged since the previous snapshot, and collect the changed ones.
+     * If the staging folder is given, the changed files are copied into it under the monitor, and read from there later.
+     */
+    private void scan(Path savePath, Snapshot previous, Map<String, Snapshot.FileEntry> entries, List<ChangedFile> changedFiles, Path stagingPath, Monitor monitor) throws IOException {
+        final List<Path> files;
+        try(Stream<Path> stream = Files.walk(savePath)) {
+            files = stream.filter(path -> !path.getFileName().toString().endsWith("session.lock"))
+                    .filter(Files::isRegularFile)
+                    .toList();
+        }
+
+        runParallel(files, path -> {
+            final String relative = savePath.relativize(path).toString().replace(File.separatorChar, '/');
+            try {
+                final BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+                final Snapshot.FileEntry previousEntry = previous != null ? previous.entries.get(relative) : null;
+                if(previousEntry != null && previousEntry.isSameFile(attr.size(), attr.lastModifiedTime().toMillis())) {
+                    entries.put(relative, previousEntry);
+                    return;
+                }
+                Path readPath = path;
+                if(stagingPath != null) {
+                    readPath = stagingPath.resolve(relative);
+                    Files.createDirectories(readPath.getParent());
+                    copyFile(path, readPath, monitor);
+                }
+                changedFiles.add(new ChangedFile(relative, readPath, attr));
+            } catch (NoSuchFileException e) {
+                // deleted by the server while taking the snapshot
+            }
+        });
+    }
+
+    // Copy in blocks, so that the monitor can slow each of them down
+    private static void copyFile(Path source, Path target, Monitor monitor) throws IOException {
+        try(
+                FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+        ) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            final long size = in.size();
+            long position = 0;
+            while(position < size) {
+                monitor.beforeRead(Math.min(BUFFER_SIZE, size - position));
+                buffer.clear();
+                final int read = in.read(buffer, position);
+                if(read < 0) break;
+                buffer.flip();
+                writeFully(out, buffer, position);
+                position += read;
+            }
+        }
+    }
+
+    private interface FileTask<T> {
+        void run(T item) throws IOException;
+    }
+
+    private static <T> void runParallel(List<T> items, FileTask<T> task) throws IOException {
+        try {
+            pool.submit(() -> items.parallelStream().forEach(item -> {
+                try {
+                    task.run(item);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Taking snapshot is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException ioe) throw ioe.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Snapshot getLatest(String saveName) throws IOException {
+        final List<Snapshot> snapshots = list(saveName);
+        if(snapshots.isEmpty()) return null;
+        return get(saveName, snapshots.get(snapshots.size() - 1).id);
+    }
+
+    private Snapshot.FileEntry storeFile(Path path, BasicFileAttributes attr, AtomicLong addedBytes, Monitor monitor) throws IOException {
+        final Snapshot.FileEntry entry = new Snapshot.FileEntry();
+        entry.size = attr.size();
+        entry.lastModified = attr.lastModifiedTime().toMillis();
+
+        if(RegionFile.isRegionFile(path.getFileName().toString()) && attr.size() >= RegionFile.HEADER_SIZE && attr.size() <= Integer.MAX_VALUE) {
+            monitor.beforeRead(attr.size());
+            final ByteBuffer data = readFully(path, (int) attr.size());
+            final List<RegionFile.ChunkLocation> locations = RegionFile.readLocations(data);
+            // A broken region file is stored as a whole, so it can still be restored as is
+            if(RegionFile.readLengths(data, locations)) {
+                entry.hash = storeRegion(data, locations, addedBytes);
+                entry.region = true;
+                return entry;
+            }
+            entry.hash = storeObject(data.array(), 0, data.limit(), addedBytes);
+            return entry;
+        }
+
+        if(attr.size() <= IN_MEMORY_LIMIT) {
+            monitor.beforeRead(attr.size());
+            final ByteBuffer data = readFully(path, (int) attr.size());
+            entry.hash = storeObject(data.array(), 0, data.limit(), addedBytes);
+        } else {
+            entry.hash = storeLargeObject(path, addedBytes, monitor);
+        }
+        return entry;
+    }
+
+    private String storeRegion(ByteBuffer data, List<RegionFile.ChunkLocation> locations, AtomicLong addedBytes) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeInt(REGION_INDEX_MAGIC);
+        dos.writeLong(data.limit());
+        dos.write(data.array(), RegionFile.SECTOR_SIZE, RegionFile.SECTOR_SIZE); // timestamps
+        dos.writeInt(locations.size());
+        for(RegionFile.ChunkLocation location : locations) {
+            final String hash = storeObject(data.array(), (int) location.getPosition(), location.length, addedBytes);
+            dos.writeShort(location.index);
+            dos.writeInt(location.sectorOffset);
+            dos.writeByte(location.sectorCount);
+            dos.write(HexFormat.of().parseHex(hash));
+        }
+        dos.flush();
+        final byte[] index = bos.toByteArray();
+        return storeObject(index, 0, index.length, addedBytes);
+    }
+
+    private RegionIndex readRegionIndex(String hash) throws IOException {
+        try(DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(getObjectPath(hash).toFile())))) {
+            if(dis.readInt() != REGION_INDEX_MAGIC) {
+                throw new IOException("Invalid region index: "+ hash);
+            }
+            final RegionIndex index = new RegionIndex();
+            index.fileSize = dis.readLong();
+            dis.readFully(index.timestamps);
+            final int count = dis.readInt();
+            final byte[] hashBytes = new byte[32];
+            for(int i = 0; i < count; i++) {
+                final RegionIndex.Chunk chunk = new RegionIndex.Chunk();
+                chunk.index = dis.readShort();
+                chunk.sectorOffset = dis.readInt();
+                chunk.sectorCount = dis.readUnsignedByte();
+                dis.readFully(hashBytes);
+                chunk.hash = HexFormat.of().formatHex(hashBytes);
+                index.chunks.add(chunk);
+            }
+            return index;
+        }
+    }
+
+    private void restoreRegion(RegionIndex index, Path filePath) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(RegionFile.HEADER_SIZE);
+        for(RegionIndex.Chunk chunk : index.chunks) {
+            header.putInt(chunk.index * 4, (chunk.sectorOffset << 8) | chunk.sectorCount);
+        }
+        header.put(RegionFile.SECTOR_SIZE, index.timestamps);
+
+        try(FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, header, 0);
+            for(RegionIndex.Chunk chunk : index.chunks) {
+                final byte[] bytes = Files.readAllBytes(getObjectPath(chunk.hash));
+                writeFully(channel, ByteBuffer.wrap(bytes), (long) chunk.sectorOffset * RegionFile.SECTOR_SIZE);
+            }
+            // Keep the padding of the last sector
+            if(channel.size() < index.fileSize) {
+                writeFully(channel, ByteBuffer.allocate(1), index.fileSize - 1);
+            }
+        }
+    }
+
+    private static int countChangedChunks(RegionIndex from, RegionIndex to) {
+        final Map<Integer, String> fromHashes = new HashMap<>();
+        for(RegionIndex.Chunk chunk : from.chunks) fromHashes.put(chunk.index, chunk.hash);
+        int changed = 0;
+        for(RegionIndex.Chunk chunk : to.chunks) {
+            final String hash = fromHashes.remove(chunk.index);
+            if(hash == null || !hash.equals(chunk.hash)) changed++;
+        }
+        return changed + fromHashes.size();
+    }
+
+    // Mark the objects referenced by the remaining snapshots, then sweep the others
+    private long collectGarbage() throws IOException {
+        if(!Files.isDirectory(objectsPath)) return 0;
+
+        final Set<String> referenced = new HashSet<>();
+        if(Files.isDirectory(snapshotsPath)) {
+            try(Stream<Path> stream = Files.walk(snapshotsPath)) {
+                for(Path path : stream.filter(path -> path.toString().endsWith(".json")).toList()) {
+                    final Snapshot snapshot = readManifest(path);
+                    if(snapshot == null) continue;
+                    for(Snapshot.FileEntry entry : snapshot.entries.values()) {
+                        if(!referenced.add(entry.hash) || !entry.region) continue;
+                        for(RegionIndex.Chunk chunk : readRegionIndex(entry.hash).chunks) {
+                            referenced.add(chunk.hash);
+                        }
+                    }
+                }
+            }
+        }
+
+        long freed = 0;
+        try(Stream<Path> stream = Files.walk(objectsPath)) {
+            for(Path path : stream.filter(Files::isRegularFile).toList()) {
+                if(referenced.contains(path.getFileName().toString())) continue;
+                freed += Files.size(path);
+                Files.delete(path);
+            }
+        }
+        return freed;
+    }
+
+    private String storeObject(byte[] bytes, int offset, int length, AtomicLong addedBytes) throws IOException {
+        final MessageDigest digest = createDigest();
+        digest.update(bytes, offset, length);
+        final String hash = HexFormat.of().formatHex(digest.digest());
+        final Path objectPath = getObjectPath(hash);
+        if(Files.exists(objectPath)) return hash;
+
+        Files.createDirectories(objectPath.getParent());
+        final Path tmpPath = Files.createTempFile(objectPath.getParent(), hash, ".tmp");
+        try(OutputStream os = Files.newOutputStream(tmpPath)) {
+            os.write(bytes, offset, length);
+        }
+        moveObject(tmpPath, objectPath);
+        addedBytes.addAndGet(length);
+        return hash;
+    }
+
+    // Hash the file while copying it, so that it is only read once
+    private String storeLargeObject(Path path, AtomicLong addedBytes, Monitor monitor) throws IOException {
+        final MessageDigest digest = createDigest();
+        final Path tmpPath = Files.createTempFile(objectsPath, "large", ".tmp");
+        long size = 0;
+        try(InputStream is = new FileInputStream(path.toFile()); OutputStream os = Files.newOutputStream(tmpPath)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while((read = is.read(buffer)) != -1) {
+                monitor.beforeRead(read);
+                digest.update(buffer, 0, read);
+                os.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+
+        final String hash = HexFormat.of().formatHex(digest.digest());
+        final Path objectPath = getObjectPath(hash);
+        if(Files.exists(objectPath)) {
+            Files.delete(tmpPath);
+            return hash;
+        }
+        Files.createDirectories(objectPath.getParent());
+        moveObject(tmpPath, objectPath);
+        addedBytes.addAndGet(size);
+        return hash;
+    }
+
+    private static void moveObject(Path tmpPath, Path objectPath) throws IOException {
+        try {
+            Files.move(tmpPath, objectPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // stored by another thread at the same time
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+
+    private Path getObjectPath(String hash) {
+        return objectsPath.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path getSaveSnapshotsPath(String saveName) throws IOException {
+        if(!isValidName(saveName)) {
+            throw new IOException("Illegal save name.");
+        }
+        return snapshotsPath.resolve(saveName);
+    }
+
+    private static String createId(Path saveSnapshotsPath, long time) {
+        final String base = ID_FORMATTER.format(Instant.ofEpochMilli(time));
+        String id = base;
+        for(int i = 1; Files.exists(saveSnapshotsPath.resolve(id +".json")); i++) {
+            id = base +"-"+ i;
+        }
+        return id;
+    }
+
+    private static boolean isValidName(String name) {
+        return name != null && !name.isEmpty() && !name.contains("/") && !name.contains("\\") && !name.equals(".") && !name.equals("..");
+    }
+
+    private Snapshot readManifest(Path path) throws IOException {
+        try {
+            return new Gson().fromJson(Utils.readTextFile(path), Snapshot.class);
+        } catch (JsonSyntaxException e) {
+            logger.warn("Broken snapshot manifest: "+ path);
+            return null;
+        }
+    }
+
+    private static void writeAtomically(Path path, byte[] bytes) throws IOException {
+        final Path tmpPath = path.resolveSibling(path.getFileName() +".tmp");
+        Files.write(tmpPath, bytes);
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer readFully(Path path, int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer) < 0) break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static class RegionIndex {
+        long fileSize;
+        final byte[] timestamps = new byte[RegionFile.SECTOR_SIZE];
+        final List<Chunk> chunks = new ArrayList<>();
+
+        static class Chunk {
+            int index;
+            int sectorOffset;
+            int sectorCount;
+            String hash;
+        }
+    }
+}
@@ -1,7 +1,23 @@
 package net.opanel.common;
 
+import net.opanel.backup.Snapshot;
+import net.opanel.backup.SnapshotDiff;
+import net.opanel.backup.SnapshotStore;
+import net.opanel.world.LevelData;
+import net.opanel.world.MapTileCache;
+import net.opanel.world.RegionAnalysis;
+import net.opanel.world.RegionAnalyzer;
+import net.opanel.world.RegionScanner;
+import net.opanel.world.SaveSizeCache;
+import net.opanel.world.ScanTask;
+import net.opanel.world.TrimReport;
+import net.opanel.world.WorldTrimmer;
+
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface OPanelSave {
     String getName();
@@ -15,4 +31,87 @@ public interface OPanelSave {
     OPanelGameMode getDefaultGameMode();
     void setDefaultGameMode(OPanelGameMode gamemode) throws IOException;
     void delete() throws IOException;
+
+    // Metadata from level.dat, cached until the file is changed
+    default LevelData getLevelData() {
+        try {
+            return LevelData.get(getPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new LevelData();
+        }
+    }
+
+    // Last known size of the save, without walking the whole folder each time
+    default SaveSizeCache.Entry getCachedSize() throws IOException {
+        return SaveSizeCache.get().getEntry(getPath());
+    }
+
+    // Chunk counts, sizes and activity of every dimension
+    default RegionAnalysis analyzeRegions() throws IOException {
+        return RegionAnalyzer.analyze(getName(), RegionAnalyzer.findDimensions(getPath()));
+    }
+
+    /**
+     * Drop the chunks matching the options, or only report them in a dry run
+     * @throws IllegalStateException if the save is running
+     */
+    default TrimReport trim(WorldTrimmer.Options options) throws IOException {
+        if(isRunning()) throw new IllegalStateException("Cannot trim a running save.");
+        return WorldTrimmer.trim(getName(), RegionAnalyzer.findDimensions(getPath()), options);
+    }
+
+    /**
+     * Check the region files in the background, and optionally repair them
+     * @throws IllegalStateException if a repair is requested while the save is running
+     */
+    default ScanTask scanRegions(boolean repair) {
+        if(repair && isRunning()) throw new IllegalStateException("Cannot repair a running save.");
+        return RegionScanner.submit(getName(), getPath(), repair, isRunning());
+    }
+
+    default ScanTask getScanTask() {
+        return RegionScanner.getTask(getName());
+    }
+
+    // Dimension name -> the regions which can be rendered on the map
+    default Map<String, List<MapTileCache.TileInfo>> getMapTiles() throws IOException {
+        return MapTileCache.get().listTiles(getPath());
+    }
+
+    /**
+     * Get the map tile of a region, waiting at most `waitMillis` for it to be rendered
+     * @return null if the tile is not rendered yet
+     */
+    default MapTileCache.Tile getMapTile(String dimension, int x, int z, long waitMillis) throws IOException {
+        return MapTileCache.get().getTile(getName(), getPath(), dimension, x, z, waitMillis);
+    }
+
+    default Snapshot createSnapshot(String label) throws IOException {
+        return createSnapshot(label, SnapshotStore.Monitor.NONE);
+    }
+
+    default Snapshot createSnapshot(String label, SnapshotStore.Monitor monitor) throws IOException {
+        return SnapshotStore.get().create(getName(), getPath(), label, monitor);
+    }
+
+    default List<Snapshot> getSnapshots() throws IOException {
+        return SnapshotStore.get().list(getName());
+    }
+
+    default SnapshotDiff diffSnapshots(String fromId, String toId) throws IOException {
+        return SnapshotStore.get().diff(getName(), fromId, toId);
+    }
+
+    default long deleteSnapshots(Collection<String> ids) throws IOException {
+        return SnapshotStore.get().delete(getName(), ids);
+    }
+
+    default long pruneSnapshots(int keepLast) throws IOException {
+        return SnapshotStore.get().prune(getName(), keepLast);
+    }
+
+    default void restoreSnapshot(String id, Path targetPath) throws IOException {
+        SnapshotStore.get().restore(getName(), id, targetPath);
+    }
 }
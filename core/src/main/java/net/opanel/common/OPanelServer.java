@@ -36,6 +36,27 @@ public interface OPanelServer {
     void stop();
     long getIngameTime();
 
+    // The player data folder of the running save, null if there is none
+    default Path getPlayerDataPath() {
+        for(OPanelSave save : getSaves()) {
+            final Path playerDataPath = save.getPath().resolve("playerdata");
+            if(save.isRunning() && Files.isDirectory(playerDataPath)) return playerDataPath;
+        }
+        return null;
+    }
+
+    // Run the task on the server thread
+    default void runTask(Runnable task) {
+        task.run();
+    }
+
+    boolean isAutoSaveEnabled();
+
+    // Turn off to keep the world files unchanged while they are being copied
+    default void setAutoSaveEnabled(boolean enabled) {
+        sendServerCommand(enabled ? "save-on" : "save-off");
+    }
+
     static String getPropertiesContent() throws IOException {
         if(!Files.exists(serverPropertiesPath)) {
             throw new IOException("Cannot find server.properties");
@@ -0,0 +1,335 @@
+package net.opanel.logger;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import net.opanel.OPanel;
+import net.opanel.utils.Utils;
+
+import java.io.*;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Cached metadata of the files in the logs folder.
+ * The metadata is kept current by a WatchService and computed in the background,
+ * so that listing logs never needs to touch the filesystem.
+ */
+public class LogCatalog {
+    public static final Path CATALOG_PATH = OPanel.OPANEL_DIR_PATH.resolve("log-catalog.json");
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    private static final int MAX_HEADER_SIZE = 1024;
+    private static final long REFRESH_DELAY_MS = 2000;
+    // Unlike the default one, includes the transient fields
+    private static final Gson catalogGson = new GsonBuilder().excludeFieldsWithModifiers(Modifier.STATIC).create();
+
+    private final Path folderPath;
+    private final Loggable logger;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Log Catalog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean persistScheduled = new AtomicBoolean(false);
+    private WatchService watchService;
+
+    public static class Entry {
+        public String name;
+        public long size;
+        public long lastModified;
+        public boolean compressed;
+        public long uncompressedSize = -1; // -1 if not computed yet
+        public long firstTime = -1;
+        public long lastTime = -1;
+        public long lineCount = -1;
+
+        // For plain logs, the scanned part is skipped when the same file grows.
+        // Transient so that they are left out of the api responses, only the catalog file keeps them
+        transient String identity;
+        transient long scannedOffset = 0;
+        transient long scannedLines = 0;
+    }
+
+    public LogCatalog(Loggable logger) {
+        this(Loggable.logFolderPath, logger);
+    }
+
+    public LogCatalog(Path folderPath, Loggable logger) {
+        this.folderPath = folderPath;
+        this.logger = logger;
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(folderPath);
+        load();
+        rescan();
+
+        watchService = folderPath.getFileSystem().newWatchService();
+        folderPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread watchThread = new Thread(this::watch, "OPanel Log Watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public void stop() {
+        try {
+            if(watchService != null) watchService.close();
+        } catch (IOException e) {
+            //
+        }
+        executor.shutdownNow();
+    }
+
+    public Path getFolderPath() {
+        return folderPath;
+    }
+
+    public List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        list.sort(Comparator.comparing(entry -> entry.name));
+        return list;
+    }
+
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    public List<String> getFileNames() {
+        return getEntries().stream().map(entry -> entry.name).toList();
+    }
+
+    // Called after a file is deleted by OPanel itself, without waiting for the watcher
+    public void remove(String name) {
+        entries.remove(name);
+        schedulePersist();
+    }
+
+    private void watch() {
+        try {
+            while(true) {
+                final WatchKey key = watchService.take();
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        executor.execute(this::rescanSafely);
+                        continue;
+                    }
+                    final String name = ((Path) event.context()).getFileName().toString();
+                    if(pending.add(name)) {
+                        // Coalesce the frequent modifications of latest.log
+                        executor.schedule(() -> refresh(name), REFRESH_DELAY_MS, TimeUnit.MILLISECONDS);
+                    }
+                }
+                if(!key.reset()) break;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void rescanSafely() {
+        try {
+            rescan();
+        } catch (IOException e) {
+            logger.warn("Failed to scan the logs folder: "+ e.getMessage());
+        }
+    }
+
+    private void rescan() throws IOException {
+        final Set<String> names = new HashSet<>();
+        try(Stream<Path> stream = Files.list(folderPath)) {
+            stream.filter(Files::isRegularFile).forEach(path -> {
+                final String name = path.getFileName().toString();
+                names.add(name);
+                // List the file immediately, the rest of metadata is computed later
+                if(!entries.containsKey(name)) {
+                    Entry entry = new Entry();
+                    entry.name = name;
+                    entry.compressed = name.endsWith(".gz");
+                    try {
+                        entry.size = Files.size(path);
+                    } catch (IOException e) {
+                        //
+                    }
+                    entries.put(name, entry);
+                }
+            });
+        }
+        entries.keySet().removeIf(name -> !names.contains(name));
+        for(String name : names) {
+            if(pending.add(name)) executor.execute(() -> refresh(name));
+        }
+    }
+
+    private void refresh(String name) {
+        pending.remove(name);
+        final Path path = folderPath.resolve(name);
+        try {
+            if(!Files.isRegularFile(path)) {
+                if(entries.remove(name) != null) schedulePersist();
+                return;
+            }
+
+            final BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+            Entry entry = entries.get(name);
+            if(entry != null && entry.size == attr.size() && entry.lastModified == attr.lastModifiedTime().toMillis() && entry.lineCount >= 0) {
+                return;
+            }
+            if(entry == null) {
+                entry = new Entry();
+                entry.name = name;
+                entry.compressed = name.endsWith(".gz");
+            }
+            // latest.log is replaced by a new file when it is rotated
+            final String identity = attr.fileKey() != null ? attr.fileKey().toString() : attr.creationTime().toString();
+            if(entry.identity != null && !entry.identity.equals(identity)) {
+                entry.scannedOffset = Long.MAX_VALUE;
+            }
+            entry.identity = identity;
+            entry.size = attr.size();
+            entry.lastModified = attr.lastModifiedTime().toMillis();
+            entries.put(name, entry);
+
+            computeStats(path, entry);
+            schedulePersist();
+        } catch (IOException e) {
+            logger.warn("Failed to read metadata of log "+ name +": "+ e.getMessage());
+        }
+    }
+
+    private void computeStats(Path path, Entry entry) throws IOException {
+        final LocalDate date = LogLineParser.getFileDate(path);
+        if(entry.compressed) {
+            long size = 0;
+            long lines = 0;
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(path.toFile()), BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    lines++;
+                    size += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    updateTimeRange(entry, line, date);
+                }
+            }
+            entry.uncompressedSize = size;
+            entry.lineCount = lines;
+            return;
+        }
+
+        // Plain logs are append-only, so continue from the scanned offset unless the file is truncated
+        if(entry.scannedOffset > entry.size) {
+            entry.scannedOffset = 0;
+            entry.scannedLines = 0;
+            entry.firstTime = -1;
+            entry.lastTime = -1;
+        }
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long start = entry.scannedOffset;
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            final byte[] bytes = buffer.array();
+            long position = start;
+            long lineStart = start;
+            int read;
+            while((read = channel.read(buffer.clear(), position)) > 0) {
+                for(int i = 0; i < read; i++) {
+                    if(bytes[i] != '\n') continue;
+                    // Only the first line with a header is parsed, the last one is found backward afterwards
+                    if(entry.firstTime < 0) updateTimeRange(entry, readHeader(channel, lineStart, position + i), date);
+                    lineStart = position + i + 1;
+                    entry.scannedLines++;
+                }
+                position += read;
+            }
+            // The line still being written is scanned next time
+            entry.scannedOffset = lineStart;
+            findLastTime(channel, start, lineStart, entry, date);
+        }
+        entry.uncompressedSize = entry.size;
+        entry.lineCount = entry.scannedLines;
+    }
+
+    // Parse the complete lines between the offsets from the last one, until one has a header
+    private static void findLastTime(FileChannel channel, long from, long to, Entry entry, LocalDate date) throws IOException {
+        if(to <= from) return;
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long lineEnd = to - 1; // the newline of the last line
+        long position = lineEnd;
+        while(position > from) {
+            final int length = (int) Math.min(BUFFER_SIZE, position - from);
+            position -= length;
+            buffer.clear().limit(length);
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer, position + buffer.position()) < 0) break;
+            }
+            for(int i = length - 1; i >= 0; i--) {
+                if(buffer.get(i) != '\n') continue;
+                if(updateLastTime(entry, readHeader(channel, position + i + 1, lineEnd), date)) return;
+                lineEnd = position + i;
+            }
+        }
+        updateLastTime(entry, readHeader(channel, from, lineEnd), date);
+    }
+
+    // The beginning of the line, which is enough for the header
+    private static String readHeader(FileChannel channel, long start, long end) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(end - start, MAX_HEADER_SIZE));
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, start + buffer.position()) < 0) break;
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    private static boolean updateLastTime(Entry entry, String line, LocalDate date) {
+        final LogLineParser.Header header = LogLineParser.parse(line, date);
+        if(header == null) return false;
+        entry.lastTime = header.time;
+        return true;
+    }
+
+    private static void updateTimeRange(Entry entry, String line, LocalDate date) {
+        final LogLineParser.Header header = LogLineParser.parse(line, date);
+        if(header == null) return;
+        if(entry.firstTime < 0) entry.firstTime = header.time;
+        entry.lastTime = header.time;
+    }
+
+    private void schedulePersist() {
+        if(!persistScheduled.compareAndSet(false, true)) return;
+        executor.schedule(() -> {
+            persistScheduled.set(false);
+            try {
+                save();
+            } catch (IOException e) {
+                logger.warn("Failed to save log catalog: "+ e.getMessage());
+            }
+        }, REFRESH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void load() {
+        if(!Files.exists(CATALOG_PATH)) return;
+        try {
+            List<Entry> list = catalogGson.fromJson(Utils.readTextFile(CATALOG_PATH), new TypeToken<List<Entry>>() {}.getType());
+            if(list == null) return;
+            for(Entry entry : list) {
+                entries.put(entry.name, entry);
+            }
+        } catch (IOException | JsonSyntaxException e) {
+            // The catalog will be rebuilt
+        }
+    }
+
+    private void save() throws IOException {
+        Utils.writeTextFile(CATALOG_PATH, catalogGson.toJson(getEntries()));
+    }
+}
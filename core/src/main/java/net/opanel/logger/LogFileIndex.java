@@ -0,0 +1,38 @@
+package net.opanel.logger;
+
+import net.opanel.utils.BloomFilter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LogFileIndex {
+    public String fileName;
+    public long size;
+    public long lastModified;
+    public long firstTime = -1;
+    public long lastTime = -1;
+    public long lineCount;
+    public Map<String, Long> levelCounts = new HashMap<>();
+    public String tokens; // base64 encoded bloom filter
+
+    private transient BloomFilter bloomFilter;
+
+    public boolean isUpToDate(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+
+    // Return false only if it is certain that the file contains no matched line
+    public boolean mayMatch(List<String> queryTokens, String level, long from, long to) {
+        if(level != null && levelCounts.getOrDefault(level, 0L) == 0) return false;
+        if(from > 0 && lastTime >= 0 && lastTime < from) return false;
+        if(to > 0 && firstTime >= 0 && firstTime > to) return false;
+        if(tokens == null) return true;
+
+        if(bloomFilter == null) bloomFilter = BloomFilter.fromBase64(tokens);
+        for(String token : queryTokens) {
+            if(!bloomFilter.mightContain(token)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package net.opanel.logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class LogLineParser {
+    /*
+     * Supported line headers:
+     *   [12:34:56] [Server thread/INFO]: ...                      (Vanilla, Fabric, Bukkit)
+     *   [12:34:56 INFO]: ...                                      (Paper console)
+     *   [19Oct2026 12:34:56.789] [Server thread/INFO] [...]: ...  (Forge, NeoForge)
+     */
+    private static final Pattern headerPattern = Pattern.compile("^\\[(?:(\\d{2}[A-Za-z]{3}\\d{4}) )?(\\d{2}:\\d{2}:\\d{2})(?:\\.\\d+)?(?: ([A-Z]+))?] (?:\\[[^\\]]*?/([A-Z]+)])?");
+    private static final Pattern fileDatePattern = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2})-\\d+\\.log(\\.gz)?$");
+    private static final DateTimeFormatter forgeDateFormatter = DateTimeFormatter.ofPattern("ddMMMyyyy", Locale.ENGLISH);
+
+    public static class Header {
+        public final long time;
+        public final String level;
+        public final String thread;
+
+        Header(long time, String level, String thread) {
+            this.time = time;
+            this.level = level;
+            this.thread = thread;
+        }
+    }
+
+    // Return null if the line is not a log header (e.g. a line of stack trace)
+    public static Header parse(String line, LocalDate date) {
+        if(line.isEmpty() || line.charAt(0) != '[') return null;
+        Matcher matcher = headerPattern.matcher(line);
+        if(!matcher.find()) return null;
+
+        LocalDate lineDate = date;
+        if(matcher.group(1) != null) {
+            try {
+                lineDate = LocalDate.parse(matcher.group(1), forgeDateFormatter);
+            } catch (DateTimeParseException e) {
+                //
+            }
+        }
+        final LocalTime time = LocalTime.parse(matcher.group(2));
+        final long millis = LocalDateTime.of(lineDate, time).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        final String level = matcher.group(3) != null ? matcher.group(3) : matcher.group(4);
+
+        String thread = null;
+        if(matcher.group(4) != null) {
+            final int start = line.indexOf('[', matcher.end(2)) + 1;
+            final int end = line.lastIndexOf('/', matcher.end(4));
+            if(start > 0 && end > start) thread = line.substring(start, end);
+        }
+        return new Header(millis, level, thread);
+    }
+
+    // Archived logs are named like `2025-10-19-1.log.gz`,
+    // otherwise fall back to the last modified date of the file
+    public static LocalDate getFileDate(Path filePath) throws IOException {
+        Matcher matcher = fileDatePattern.matcher(filePath.getFileName().toString());
+        if(matcher.matches()) {
+            return LocalDate.parse(matcher.group(1));
+        }
+        return LocalDate.ofInstant(Files.getLastModifiedTime(filePath).toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,160 @@
+package net.opanel.logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import net.opanel.OPanel;
+import net.opanel.utils.Utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Deletes archived logs (`*.log.gz`) in the background according to the retention policy.
+ * Plain logs such as latest.log are never touched.
+ */
+public class LogRetention {
+    public static final Path POLICY_PATH = OPanel.OPANEL_DIR_PATH.resolve("log-retention.json");
+    private static final long RUN_INTERVAL_MINUTES = 60;
+
+    private final LogCatalog catalog;
+    private final LogSearcher searcher;
+    private final Loggable logger;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Log Retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Policy policy = new Policy();
+    private volatile Report lastReport;
+
+    // 0 means the policy is disabled
+    public static class Policy {
+        public int maxAgeDays = 0;
+        public long maxTotalBytes = 0;
+        public int keepLast = 0;
+    }
+
+    public static class Report {
+        public long time;
+        public List<String> deleted = new ArrayList<>();
+        public long freedBytes;
+    }
+
+    public LogRetention(LogCatalog catalog, LogSearcher searcher, Loggable logger) {
+        this.catalog = catalog;
+        this.searcher = searcher;
+        this.logger = logger;
+    }
+
+    public void start() {
+        load();
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                apply(policy);
+            } catch (Exception e) {
+                logger.error("Failed to apply log retention policy: "+ e.getMessage());
+            }
+        }, 1, RUN_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    public Future<Report> setPolicy(Policy policy) throws IOException {
+        this.policy = policy;
+        Utils.writeTextFile(POLICY_PATH, new Gson().toJson(policy));
+        return executor.submit(() -> apply(policy));
+    }
+
+    // Deletions are queued on the same thread as the policy runs, so they never race
+    public Future<Report> deleteAllArchives() {
+        final Policy deleteAll = new Policy();
+        deleteAll.keepLast = -1;
+        return executor.submit(() -> apply(deleteAll));
+    }
+
+    private Report apply(Policy policy) throws IOException {
+        final Report report = new Report();
+        report.time = System.currentTimeMillis();
+
+        // Newest first
+        List<LogCatalog.Entry> archives = policy.keepLast < 0 ? listArchives() : new ArrayList<>(catalog.getEntries().stream()
+                .filter(entry -> entry.name.endsWith(".log.gz"))
+                .toList());
+        archives.sort(Comparator.comparingLong((LogCatalog.Entry entry) -> entry.lastModified).reversed());
+
+        final long minTime = policy.maxAgeDays > 0 ? report.time - TimeUnit.DAYS.toMillis(policy.maxAgeDays) : 0;
+        long totalBytes = 0;
+        for(int i = 0; i < archives.size(); i++) {
+            final LogCatalog.Entry entry = archives.get(i);
+            totalBytes += entry.size;
+
+            final boolean exceedsCount = policy.keepLast < 0 || (policy.keepLast > 0 && i >= policy.keepLast);
+            final boolean exceedsAge = entry.lastModified < minTime;
+            final boolean exceedsSize = policy.maxTotalBytes > 0 && totalBytes > policy.maxTotalBytes;
+            if(!exceedsCount && !exceedsAge && !exceedsSize) continue;
+
+            try {
+                logger.deleteLog(entry.name);
+                searcher.removeIndex(entry.name);
+                catalog.remove(entry.name);
+                report.deleted.add(entry.name);
+                report.freedBytes += entry.size;
+                totalBytes -= entry.size;
+            } catch (IOException e) {
+                logger.warn("Failed to delete log "+ entry.name +": "+ e.getMessage());
+            }
+        }
+
+        lastReport = report;
+        if(!report.deleted.isEmpty()) {
+            logger.info("Log retention deleted "+ report.deleted.size() +" archived log(s), freed "+ report.freedBytes +" bytes.");
+        }
+        return report;
+    }
+
+    // The catalog can lag behind the folder, so deleting all archives lists the folder itself
+    private List<LogCatalog.Entry> listArchives() throws IOException {
+        final List<LogCatalog.Entry> archives = new ArrayList<>();
+        try(Stream<Path> stream = Files.list(catalog.getFolderPath())) {
+            for(Path path : stream.toList()) {
+                final String name = path.getFileName().toString();
+                if(!name.endsWith(".log.gz") || !Files.isRegularFile(path)) continue;
+                final BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+                final LogCatalog.Entry entry = new LogCatalog.Entry();
+                entry.name = name;
+                entry.compressed = true;
+                entry.size = attr.size();
+                entry.lastModified = attr.lastModifiedTime().toMillis();
+                archives.add(entry);
+            }
+        }
+        return archives;
+    }
+
+    private void load() {
+        if(!Files.exists(POLICY_PATH)) return;
+        try {
+            Policy loaded = new Gson().fromJson(Utils.readTextFile(POLICY_PATH), Policy.class);
+            if(loaded != null) policy = loaded;
+        } catch (IOException | JsonSyntaxException e) {
+            logger.warn("Failed to load log retention policy: "+ e.getMessage());
+        }
+    }
+}
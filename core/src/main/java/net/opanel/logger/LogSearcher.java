@@ -0,0 +1,290 @@
+package net.opanel.logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import net.opanel.OPanel;
+import net.opanel.terminal.ConsoleLog;
+import net.opanel.terminal.LogListenerManager;
+import net.opanel.utils.BloomFilter;
+import net.opanel.utils.Utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+public class LogSearcher {
+    public static final Path INDEX_DIR_PATH = OPanel.OPANEL_DIR_PATH.resolve("log-index");
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    private final OPanel plugin;
+    private final Map<String, LogFileIndex> indexes = new ConcurrentHashMap<>();
+
+    public LogSearcher(OPanel plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Search the live logs and all archived log files in parallel.
+     * Every matched line is passed to the consumer as soon as it is found,
+     * the consumer is never called concurrently.
+     */
+    public Result search(Query query, Consumer<Match> consumer) throws IOException {
+        final Result result = new Result();
+        final AtomicInteger matched = new AtomicInteger();
+        final Consumer<Match> syncConsumer = match -> {
+            synchronized(result) {
+                if(matched.get() >= query.limit) {
+                    result.truncated = true;
+                    return;
+                }
+                matched.incrementAndGet();
+                consumer.accept(match);
+            }
+        };
+
+        // Live logs first, they are the most recent ones
+        final LogListenerManager logListenerManager = plugin.getLogListenerManager();
+        if(query.live && logListenerManager != null) {
+            searchLiveLogs(logListenerManager, query, syncConsumer);
+        }
+
+        List<Path> files;
+        try(Stream<Path> stream = Files.list(Loggable.logFolderPath)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(path -> {
+                        final String name = path.getFileName().toString();
+                        // latest.log is covered by the live logs
+                        return name.endsWith(".log.gz") || (name.endsWith(".log") && !(query.live && name.equals("latest.log")));
+                    })
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .toList();
+        }
+
+        try {
+            pool.submit(() -> files.parallelStream().forEach(path -> {
+                if(matched.get() >= query.limit) return;
+                try {
+                    if(searchFile(path, query, syncConsumer, matched)) {
+                        synchronized(result) { result.scanned++; }
+                    } else {
+                        synchronized(result) { result.skipped++; }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Log search is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException ioe) throw ioe.getCause();
+            throw new IOException(e.getCause());
+        }
+
+        result.matched = matched.get();
+        return result;
+    }
+
+    private void searchLiveLogs(LogListenerManager logListenerManager, Query query, Consumer<Match> consumer) {
+        // Copy to avoid being modified by the appender while iterating
+        final List<ConsoleLog> logs = new ArrayList<>(logListenerManager.getRecentLogs());
+        for(int i = logs.size() - 1; i >= 0; i--) {
+            final ConsoleLog log = logs.get(i);
+            if(query.level != null && !query.level.equals(log.level)) continue;
+            if(!query.inRange(log.time)) continue;
+            if(!query.matches(log.line)) continue;
+            consumer.accept(new Match(null, i + 1, log.time, log.level, log.line));
+        }
+    }
+
+    // Return false if the file is skipped by its index
+    private boolean searchFile(Path path, Query query, Consumer<Match> consumer, AtomicInteger matched) throws IOException {
+        final String fileName = path.getFileName().toString();
+        final BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+        final long lastModified = attr.lastModifiedTime().toMillis();
+
+        LogFileIndex index = getIndex(fileName);
+        if(index != null && index.isUpToDate(attr.size(), lastModified)) {
+            if(!index.mayMatch(query.tokens, query.level, query.from, query.to)) return false;
+            index = null; // already indexed, don't rebuild
+        } else {
+            index = new LogFileIndex();
+            index.fileName = fileName;
+            index.size = attr.size();
+            index.lastModified = lastModified;
+        }
+
+        final LocalDate date = LogLineParser.getFileDate(path);
+        final Set<String> tokens = index != null ? new HashSet<>() : null;
+        try(BufferedReader reader = openReader(path)) {
+            String line;
+            int lineNumber = 0;
+            long time = -1;
+            String level = null;
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                final LogLineParser.Header header = LogLineParser.parse(line, date);
+                if(header != null) {
+                    time = header.time;
+                    level = header.level;
+                }
+
+                if(index != null) {
+                    index.lineCount++;
+                    if(header != null) {
+                        if(index.firstTime < 0) index.firstTime = time;
+                        index.lastTime = time;
+                        if(level != null) index.levelCounts.merge(level, 1L, Long::sum);
+                    }
+                    tokenize(line, tokens::add);
+                } else if(matched.get() >= query.limit) {
+                    // Nothing to do with the rest of the file
+                    break;
+                }
+
+                if(matched.get() >= query.limit) continue;
+                if(query.level != null && !query.level.equals(level)) continue;
+                if(!query.inRange(time)) continue;
+                if(!query.matches(line)) continue;
+                consumer.accept(new Match(fileName, lineNumber, time, level, line));
+            }
+        }
+
+        if(index != null) {
+            index.tokens = BloomFilter.of(tokens).toBase64();
+            saveIndex(index);
+        }
+        return true;
+    }
+
+    private static BufferedReader openReader(Path path) throws IOException {
+        InputStream is = new FileInputStream(path.toFile());
+        if(path.toString().endsWith(".gz")) {
+            is = new GZIPInputStream(is, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private LogFileIndex getIndex(String fileName) {
+        LogFileIndex index = indexes.get(fileName);
+        if(index != null) return index;
+
+        final Path indexPath = getIndexPath(fileName);
+        if(!Files.exists(indexPath)) return null;
+        try {
+            index = new Gson().fromJson(Utils.readTextFile(indexPath), LogFileIndex.class);
+            if(index != null) indexes.put(fileName, index);
+            return index;
+        } catch (IOException | JsonSyntaxException e) {
+            return null;
+        }
+    }
+
+    private void saveIndex(LogFileIndex index) {
+        indexes.put(index.fileName, index);
+        try {
+            Files.createDirectories(INDEX_DIR_PATH);
+            Utils.writeTextFile(getIndexPath(index.fileName), new Gson().toJson(index));
+        } catch (IOException e) {
+            // The index is only an optimization, so just ignore it
+            plugin.logger.warn("Failed to save log index of "+ index.fileName +": "+ e.getMessage());
+        }
+    }
+
+    public void removeIndex(String fileName) throws IOException {
+        indexes.remove(fileName);
+        Files.deleteIfExists(getIndexPath(fileName));
+    }
+
+    public static Path getIndexPath(String fileName) {
+        return INDEX_DIR_PATH.resolve(fileName +".json");
+    }
+
+    // Split text into lower-cased words, player names with `_` are kept as one word
+    public static void tokenize(String text, Consumer<String> consumer) {
+        final int length = text.length();
+        int start = -1;
+        for(int i = 0; i <= length; i++) {
+            final boolean isWordChar = i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_');
+            if(isWordChar) {
+                if(start < 0) start = i;
+            } else if(start >= 0) {
+                consumer.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    public static class Query {
+        final List<String> tokens = new ArrayList<>();
+        final String level;
+        final long from;
+        final long to;
+        final int limit;
+        final boolean live;
+
+        public Query(String text, String level, long from, long to, int limit, boolean live) {
+            if(text != null) tokenize(text, token -> {
+                if(!tokens.contains(token)) tokens.add(token);
+            });
+            this.level = level != null ? level.toUpperCase(Locale.ROOT) : null;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+            this.live = live;
+        }
+
+        boolean inRange(long time) {
+            if(from <= 0 && to <= 0) return true;
+            if(time < 0) return false;
+            return (from <= 0 || time >= from) && (to <= 0 || time <= to);
+        }
+
+        // A line matches only if it contains all of the query words
+        boolean matches(String line) {
+            if(tokens.isEmpty()) return true;
+            final String lowerLine = line.toLowerCase(Locale.ROOT);
+            for(String token : tokens) {
+                if(!lowerLine.contains(token)) return false;
+            }
+            final Set<String> lineTokens = new HashSet<>();
+            tokenize(line, lineTokens::add);
+            return lineTokens.containsAll(tokens);
+        }
+    }
+
+    public static class Match {
+        public final String file; // null for live logs
+        public final int line;
+        public final long time;
+        public final String level;
+        public final String content;
+
+        Match(String file, int line, long time, String level, String content) {
+            this.file = file;
+            this.line = line;
+            this.time = time;
+            this.level = level;
+            this.content = content;
+        }
+    }
+
+    public static class Result {
+        public int scanned;
+        public int skipped;
+        public int matched;
+        public boolean truncated;
+    }
+}
@@ -0,0 +1,274 @@
+package net.opanel.logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+public class LogTailer {
+    public static final int MAX_LINES = 10000;
+    public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024; // 4 MB
+    private static final int BLOCK_SIZE = 65536; // 64 KB
+    private static final int GZIP_TAIL_BLOCK_SIZE = 1024 * 1024; // 1 MB
+    private static final int GZIP_INDEX_CACHE_SIZE = 32;
+
+    // Archived logs never change, so the indexes only need to be built once per file
+    private final Map<Path, GzipIndex> gzipIndexes = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, GzipIndex> eldest) {
+            return size() > GZIP_INDEX_CACHE_SIZE;
+        }
+    });
+
+    public static class Result {
+        public String content;
+        public long start;  // offset of the first returned byte
+        public long offset; // offset to continue reading from
+        public long size;
+        public boolean rotated; // the file is truncated since the given offset
+
+        Result(byte[] bytes, int from, int to, long start, long size) {
+            content = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+            this.start = start;
+            this.offset = start + (to - from);
+            this.size = size;
+        }
+    }
+
+    /**
+     * Read the last lines of a log file.
+     * The offsets of gzip files are offsets in the decompressed content.
+     */
+    public Result tail(Path filePath, int lines) throws IOException {
+        lines = Math.max(1, Math.min(lines, MAX_LINES));
+        if(filePath.toString().endsWith(".gz")) {
+            return tailGzip(filePath, lines);
+        }
+
+        try(FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long start = findLinesStart(channel, size, lines);
+            final int length = (int) (size - start);
+            return new Result(readFully(channel, start, length), 0, length, start, size);
+        }
+    }
+
+    /**
+     * Read complete lines after the given offset,
+     * which is usually the `offset` of the previous result.
+     */
+    public Result readFrom(Path filePath, long fromOffset) throws IOException {
+        if(filePath.toString().endsWith(".gz")) {
+            return readFromGzip(filePath, fromOffset);
+        }
+
+        try(FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            boolean rotated = false;
+            if(fromOffset < 0 || fromOffset > size) {
+                fromOffset = 0;
+                rotated = true;
+            }
+            final int length = (int) Math.min(MAX_CHUNK_SIZE, size - fromOffset);
+            final byte[] bytes = readFully(channel, fromOffset, length);
+            Result result = new Result(bytes, 0, completeLinesEnd(bytes, length), fromOffset, size);
+            result.rotated = rotated;
+            return result;
+        }
+    }
+
+    // Scan backward from the end of file block by block for newlines
+    private static long findLinesStart(FileChannel channel, long size, int lines) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        final long minStart = Math.max(0, size - MAX_CHUNK_SIZE);
+        long position = size;
+        int count = 0;
+        while(position > minStart) {
+            final int length = (int) Math.min(BLOCK_SIZE, position - minStart);
+            position -= length;
+            buffer.clear().limit(length);
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer, position + buffer.position()) < 0) break;
+            }
+            for(int i = length - 1; i >= 0; i--) {
+                if(buffer.get(i) != '\n' || position + i == size - 1) continue; // ignore the trailing newline
+                if(++count == lines) return position + i + 1;
+            }
+        }
+        return minStart == 0 ? 0 : alignToLine(channel, minStart, size);
+    }
+
+    // Move the start to the beginning of next line to avoid returning a broken line
+    private static long alignToLine(FileChannel channel, long start, long size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        long position = start;
+        while(position < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, position);
+            if(read <= 0) break;
+            for(int i = 0; i < read; i++) {
+                if(buffer.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return start;
+    }
+
+    private static byte[] readFully(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        return buffer.array();
+    }
+
+    // Exclude the last line if it is still being written
+    private static int completeLinesEnd(byte[] bytes, int length) {
+        for(int i = length - 1; i >= 0; i--) {
+            if(bytes[i] == '\n') return i + 1;
+        }
+        // A single line longer than the chunk size has to be split
+        return length == MAX_CHUNK_SIZE ? length : 0;
+    }
+
+    private Result tailGzip(Path filePath, int lines) throws IOException {
+        final GzipIndex index = getGzipIndex(filePath);
+        final byte[] tail = index.tailBlock;
+        int count = 0;
+        for(int i = tail.length - 1; i >= 0; i--) {
+            if(tail[i] != '\n' || i == tail.length - 1) continue;
+            if(++count == lines) return new Result(tail, i + 1, tail.length, index.tailStart + i + 1, index.size);
+        }
+        if(index.tailStart == 0) {
+            return new Result(tail, 0, tail.length, 0, index.size);
+        }
+
+        // The requested lines exceed the cached tail block, decompress the file again
+        final ArrayDeque<byte[]> ring = new ArrayDeque<>(lines);
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long start = 0;
+        try(InputStream is = openGzip(filePath)) {
+            final byte[] buffer = new byte[BLOCK_SIZE];
+            int read;
+            while((read = is.read(buffer)) != -1) {
+                int lineStart = 0;
+                for(int i = 0; i < read; i++) {
+                    if(buffer[i] != '\n') continue;
+                    line.write(buffer, lineStart, i + 1 - lineStart);
+                    lineStart = i + 1;
+                    if(ring.size() == lines) start += ring.removeFirst().length;
+                    ring.addLast(line.toByteArray());
+                    line.reset();
+                }
+                line.write(buffer, lineStart, read - lineStart);
+            }
+        }
+        if(line.size() > 0) {
+            if(ring.size() == lines) start += ring.removeFirst().length;
+            ring.addLast(line.toByteArray());
+        }
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for(byte[] bytes : ring) {
+            bos.write(bytes);
+        }
+        return new Result(bos.toByteArray(), 0, bos.size(), start, index.size);
+    }
+
+    private Result readFromGzip(Path filePath, long fromOffset) throws IOException {
+        final GzipIndex index = getGzipIndex(filePath);
+        boolean rotated = false;
+        if(fromOffset < 0 || fromOffset > index.size) {
+            fromOffset = 0;
+            rotated = true;
+        }
+
+        Result result;
+        if(fromOffset >= index.tailStart) {
+            final int from = (int) (fromOffset - index.tailStart);
+            result = new Result(index.tailBlock, from, index.tailBlock.length, fromOffset, index.size);
+        } else {
+            try(InputStream is = openGzip(filePath)) {
+                is.skipNBytes(fromOffset);
+                final byte[] bytes = is.readNBytes(MAX_CHUNK_SIZE);
+                result = new Result(bytes, 0, completeLinesEnd(bytes, bytes.length), fromOffset, index.size);
+            }
+        }
+        result.rotated = rotated;
+        return result;
+    }
+
+    private GzipIndex getGzipIndex(Path filePath) throws IOException {
+        final BasicFileAttributes attr = Files.readAttributes(filePath, BasicFileAttributes.class);
+        final long lastModified = attr.lastModifiedTime().toMillis();
+        final Path key = filePath.toAbsolutePath().normalize();
+
+        GzipIndex index = gzipIndexes.get(key);
+        if(index != null && index.lastModified == lastModified && index.compressedSize == attr.size()) {
+            return index;
+        }
+        index = buildGzipIndex(filePath, lastModified, attr.size());
+        gzipIndexes.put(key, index);
+        return index;
+    }
+
+    // Decompress the whole file once, only keeping the last block of it
+    private static GzipIndex buildGzipIndex(Path filePath, long lastModified, long compressedSize) throws IOException {
+        final byte[] ring = new byte[GZIP_TAIL_BLOCK_SIZE];
+        long total = 0;
+        try(InputStream is = openGzip(filePath)) {
+            final byte[] buffer = new byte[BLOCK_SIZE];
+            int read;
+            while((read = is.read(buffer)) != -1) {
+                for(int i = 0; i < read; ) {
+                    final int pos = (int) ((total + i) % GZIP_TAIL_BLOCK_SIZE);
+                    final int length = Math.min(read - i, GZIP_TAIL_BLOCK_SIZE - pos);
+                    System.arraycopy(buffer, i, ring, pos, length);
+                    i += length;
+                }
+                total += read;
+            }
+        }
+
+        final GzipIndex index = new GzipIndex();
+        index.lastModified = lastModified;
+        index.compressedSize = compressedSize;
+        index.size = total;
+        if(total <= GZIP_TAIL_BLOCK_SIZE) {
+            index.tailStart = 0;
+            index.tailBlock = new byte[(int) total];
+            System.arraycopy(ring, 0, index.tailBlock, 0, (int) total);
+        } else {
+            final int pos = (int) (total % GZIP_TAIL_BLOCK_SIZE);
+            index.tailStart = total - GZIP_TAIL_BLOCK_SIZE;
+            index.tailBlock = new byte[GZIP_TAIL_BLOCK_SIZE];
+            System.arraycopy(ring, pos, index.tailBlock, 0, GZIP_TAIL_BLOCK_SIZE - pos);
+            System.arraycopy(ring, 0, index.tailBlock, GZIP_TAIL_BLOCK_SIZE - pos, pos);
+        }
+        return index;
+    }
+
+    private static InputStream openGzip(Path filePath) throws IOException {
+        return new GZIPInputStream(new FileInputStream(filePath.toFile()), BLOCK_SIZE);
+    }
+
+    private static class GzipIndex {
+        long lastModified;
+        long compressedSize;
+        long size; // decompressed size
+        long tailStart;
+        byte[] tailBlock;
+    }
+}
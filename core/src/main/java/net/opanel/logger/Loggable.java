@@ -11,7 +11,7 @@ import java.util.List;
 import java.util.stream.Stream;
 
 public abstract class Loggable {
-    private static final Path logFolderPath = Paths.get("").resolve("logs");
+    static final Path logFolderPath = Paths.get("").resolve("logs");
 
     public abstract void info(String msg);
     public abstract void warn(String msg);
@@ -34,11 +34,16 @@ public abstract class Loggable {
         return fileList;
     }
 
-    public String getLogContent(String fileName) throws IOException {
+    public Path getLogFilePath(String fileName) throws IOException {
         final Path filePath = Paths.get(logFolderPath.toString(), fileName);
-        if(!Files.exists(filePath)) {
+        if(!filePath.normalize().startsWith(logFolderPath.normalize()) || !Files.isRegularFile(filePath)) {
             throw new IOException("Cannot find the specified log file.");
         }
+        return filePath;
+    }
+
+    public String getLogContent(String fileName) throws IOException {
+        final Path filePath = getLogFilePath(fileName);
         if(filePath.toString().endsWith(".log") || filePath.toString().endsWith("txt")) {
             return Utils.readTextFile(filePath);
         }
@@ -0,0 +1,129 @@
+package net.opanel.player;
+
+import net.opanel.OPanel;
+import net.opanel.common.OPanelGameMode;
+import net.opanel.common.OPanelPlayer;
+import net.opanel.common.OPanelServer;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Run player actions on many players at once.
+ * All actions are run in one task on the server thread, where each player is resolved once,
+ * so that a player joining or leaving in the meantime is seen as it is when the actions run.
+ */
+public class PlayerBatch {
+    public static final int MAX_OPERATIONS = 1000;
+    private static final Set<String> ACTIONS = Set.of("op", "deop", "kick", "ban", "pardon", "gamemode");
+
+    public static class Operation {
+        public String uuid;
+        public String action;
+        public String reason; // only for `kick` and `ban`
+        public String gamemode; // only for `gamemode`
+    }
+
+    public static class Result {
+        public String uuid;
+        public String action;
+        public boolean success;
+        public boolean pending; // not run yet when the request returned, it will still be run later
+        public String error;
+
+        Result(Operation operation) {
+            uuid = operation.uuid;
+            action = operation.action;
+        }
+    }
+
+    /**
+     * @param waitMillis how long to wait for the server thread, the operations which are not run by then are reported as pending
+     * @return the result of each operation, in the same order
+     */
+    public static List<Result> run(OPanel plugin, List<Operation> operations, long waitMillis) {
+        final OPanelServer server = plugin.getServer();
+        final PlayerIndex index = plugin.getPlayerIndex();
+        final List<Result> results = new ArrayList<>();
+        final List<Integer> runnable = new ArrayList<>();
+
+        for(int i = 0; i < operations.size(); i++) {
+            final Operation operation = operations.get(i);
+            final Result result = new Result(operation);
+            results.add(result);
+            if(operation.uuid == null || operation.action == null || !ACTIONS.contains(operation.action)) {
+                result.error = "Invalid operation";
+                continue;
+            }
+            if(operation.action.equals("gamemode") && (operation.gamemode == null || OPanelGameMode.fromString(operation.gamemode) == null)) {
+                result.error = "Invalid gamemode";
+                continue;
+            }
+            runnable.add(i);
+        }
+        if(runnable.isEmpty()) return results;
+
+        final CompletableFuture<List<Result>> future = new CompletableFuture<>();
+        // Each player is looked up only once however many actions it has
+        final Map<String, OPanelPlayer> players = new HashMap<>();
+        server.runTask(() -> {
+            // Fill copies, so that a timed out request doesn't see them changing
+            final List<Result> done = new ArrayList<>();
+            for(int i : runnable) {
+                final Operation operation = operations.get(i);
+                final Result result = new Result(operation);
+                done.add(result);
+                if(!players.containsKey(operation.uuid)) players.put(operation.uuid, server.getPlayer(operation.uuid));
+                final OPanelPlayer player = players.get(operation.uuid);
+                if(player == null) {
+                    result.error = "Player not found";
+                    continue;
+                }
+                try {
+                    apply(player, operation);
+                    result.success = true;
+                } catch (Exception e) {
+                    result.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                }
+            }
+
+            // Some platforms run the actions in tasks of their own, so complete only after them
+            server.runTask(() -> future.complete(done));
+        });
+
+        try {
+            final List<Result> done = future.get(waitMillis, TimeUnit.MILLISECONDS);
+            for(int j = 0; j < runnable.size(); j++) {
+                results.set(runnable.get(j), done.get(j));
+            }
+            // Reading the offline players' data is kept off the server thread
+            for(OPanelPlayer player : players.values()) {
+                if(player != null) index.update(player);
+            }
+        } catch (TimeoutException e) {
+            for(int i : runnable) results.get(i).pending = true;
+            // The index reparses the changed player data on its own thread once the actions are run
+            future.thenRun(index::refreshAsync);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for(int i : runnable) results.get(i).error = "Interrupted";
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return results;
+    }
+
+    private static void apply(OPanelPlayer player, Operation operation) {
+        switch(operation.action) {
+            case "op" -> player.giveOp();
+            case "deop" -> player.depriveOp();
+            case "kick" -> {
+                if(!player.isOnline()) throw new IllegalStateException("The player is offline.");
+                player.kick(operation.reason);
+            }
+            case "ban" -> player.ban(operation.reason);
+            case "pardon" -> player.pardon();
+            case "gamemode" -> player.setGameMode(OPanelGameMode.fromString(operation.gamemode));
+        }
+    }
+}
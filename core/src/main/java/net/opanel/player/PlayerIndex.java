@@ -0,0 +1,403 @@
+package net.opanel.player;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import net.opanel.OPanel;
+import net.opanel.common.OPanelGameMode;
+import net.opanel.common.OPanelPlayer;
+import net.opanel.common.OPanelServer;
+import net.opanel.world.NbtReader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * All the players who have joined the server, kept in memory and persisted to `.opanel/players.json`,
+ * so that listing the players doesn't read every player data file.
+ *
+ * The index is refreshed in the background: only the player data files modified since the last refresh are parsed,
+ * and the op, ban and whitelist flags and the names are taken from the server's json lists when they are modified.
+ * The online state and the last seen time come from the join and leave events.
+ */
+public class PlayerIndex {
+    public static final Path INDEX_PATH = OPanel.OPANEL_DIR_PATH.resolve("players.json");
+    private static final Path USER_CACHE_PATH = Paths.get("").resolve("usercache.json");
+    private static final Path OPS_PATH = Paths.get("").resolve("ops.json");
+    private static final Path BANNED_PLAYERS_PATH = Paths.get("").resolve("banned-players.json");
+    private static final Path WHITELIST_PATH = Paths.get("").resolve("whitelist.json");
+    private static final long REFRESH_INTERVAL_MS = 5_000;
+    private static final long SAVE_DELAY_MS = 10_000;
+    private static final Set<String> PLAYER_DATA_PATHS = Set.of("playerGameType", "bukkit.lastKnownName");
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+
+    public static class Entry {
+        public String uuid;
+        public String name;
+        public String gamemode;
+        public boolean isOnline;
+        public boolean isOp;
+        public boolean isBanned;
+        public String banReason;
+        public boolean isWhitelisted;
+        public long lastSeen; // 0 if unknown
+        public long dataModified; // modified time of the player data file when it was parsed
+
+        Entry copy() {
+            final Entry entry = new Entry();
+            entry.uuid = uuid;
+            entry.name = name;
+            entry.gamemode = gamemode;
+            entry.isOnline = isOnline;
+            entry.isOp = isOp;
+            entry.isBanned = isBanned;
+            entry.banReason = banReason;
+            entry.isWhitelisted = isWhitelisted;
+            entry.lastSeen = lastSeen;
+            entry.dataModified = dataModified;
+            return entry;
+        }
+    }
+
+    // uuid -> name, and uuid -> ban reason
+    private record ListFiles(Map<String, String> names, Set<String> ops, Map<String, String> bans, Set<String> whitelist) { }
+
+    private final OPanel plugin;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Path, Long> listModified = new HashMap<>();
+    private ListFiles lists = new ListFiles(new HashMap<>(), new HashSet<>(), new HashMap<>(), new HashSet<>());
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Player Index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile long lastRefresh = 0;
+    private volatile boolean refreshQueued = false;
+    private volatile boolean saveQueued = false;
+    private final AtomicLong namesVersion = new AtomicLong();
+
+    public PlayerIndex(OPanel plugin) {
+        this.plugin = plugin;
+        load();
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+        save();
+    }
+
+    /**
+     * Get all the indexed players with a known name.
+     * The index is refreshed in the background if it is older than a few seconds,
+     * only the first call waits for it to be built.
+     */
+    public List<Entry> getEntries() {
+        refreshIfNeeded();
+
+        final List<Entry> result = new ArrayList<>(entries.size());
+        for(Entry entry : entries.values()) {
+            if(entry.name != null) result.add(entry.copy());
+        }
+        return result;
+    }
+
+    public void refreshIfNeeded() {
+        if(lastRefresh == 0 && entries.isEmpty()) {
+            refresh();
+        } else if(System.currentTimeMillis() - lastRefresh > REFRESH_INTERVAL_MS) {
+            refreshAsync();
+        }
+    }
+
+    // Changed whenever a player is added or removed, or a name is changed
+    public long getNamesVersion() {
+        return namesVersion.get();
+    }
+
+    public Entry getEntry(String uuid) {
+        final Entry entry = entries.get(uuid);
+        return entry != null ? entry.copy() : null;
+    }
+
+    public void onJoin(String uuid, String name) {
+        final Entry entry = entries.computeIfAbsent(uuid, key -> createEntry(uuid));
+        synchronized(entry) {
+            if(name != null && !name.equals(entry.name)) {
+                entry.name = name;
+                namesVersion.incrementAndGet();
+            }
+            entry.isOnline = true;
+            entry.lastSeen = System.currentTimeMillis();
+        }
+        saveAsync();
+    }
+
+    public void onLeave(String uuid, String name) {
+        final Entry entry = entries.computeIfAbsent(uuid, key -> createEntry(uuid));
+        synchronized(entry) {
+            if(name != null && !name.equals(entry.name)) {
+                entry.name = name;
+                namesVersion.incrementAndGet();
+            }
+            entry.isOnline = false;
+            entry.lastSeen = System.currentTimeMillis();
+        }
+        saveAsync();
+    }
+
+    // Take the current state of a player right after it is changed by OPanel, without waiting for the next refresh
+    public void update(OPanelPlayer player) {
+        final Entry entry = entries.computeIfAbsent(player.getUUID(), key -> createEntry(player.getUUID()));
+        synchronized(entry) {
+            if(player.getName() != null && !player.getName().equals(entry.name)) {
+                entry.name = player.getName();
+                namesVersion.incrementAndGet();
+            }
+            entry.isOnline = player.isOnline();
+            entry.isOp = player.isOp();
+            entry.isBanned = player.isBanned();
+            entry.banReason = player.getBanReason();
+            final OPanelGameMode gamemode = player.getGameMode();
+            if(gamemode != null) entry.gamemode = gamemode.getName();
+        }
+        saveAsync();
+    }
+
+    public void refreshAsync() {
+        if(refreshQueued) return;
+        refreshQueued = true;
+        executor.execute(() -> {
+            refreshQueued = false;
+            refresh();
+        });
+    }
+
+    private synchronized void refresh() {
+        try {
+            final OPanelServer server = plugin.getServer();
+            final Map<String, String> previousNames = getNames();
+            refreshLists();
+            final Path playerDataPath = server != null ? server.getPlayerDataPath() : null;
+            if(playerDataPath != null && Files.isDirectory(playerDataPath)) refreshPlayerData(playerDataPath);
+
+            final Set<String> onlineUUIDs = new HashSet<>();
+            if(server != null) {
+                for(OPanelPlayer player : server.getOnlinePlayers()) {
+                    onlineUUIDs.add(player.getUUID());
+                    entries.computeIfAbsent(player.getUUID(), key -> createEntry(player.getUUID()));
+                }
+            }
+            for(Entry entry : entries.values()) {
+                synchronized(entry) {
+                    applyLists(entry);
+                    // Missed leave events, e.g. when the server crashed
+                    if(server != null && entry.isOnline != onlineUUIDs.contains(entry.uuid)) {
+                        entry.isOnline = !entry.isOnline;
+                        entry.lastSeen = System.currentTimeMillis();
+                    }
+                }
+            }
+            if(!getNames().equals(previousNames)) namesVersion.incrementAndGet();
+            lastRefresh = System.currentTimeMillis();
+            saveAsync();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void refreshLists() throws IOException {
+        final Map<String, String> names = isListModified(USER_CACHE_PATH) ? readNames(USER_CACHE_PATH) : lists.names;
+        final Set<String> ops = isListModified(OPS_PATH) ? readNames(OPS_PATH).keySet() : lists.ops;
+        final Map<String, String> bans = isListModified(BANNED_PLAYERS_PATH) ? readBanReasons(BANNED_PLAYERS_PATH) : lists.bans;
+        final Set<String> whitelist = isListModified(WHITELIST_PATH) ? readNames(WHITELIST_PATH).keySet() : lists.whitelist;
+        lists = new ListFiles(names, ops, bans, whitelist);
+    }
+
+    private boolean isListModified(Path path) throws IOException {
+        final long lastModified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+        final Long previous = listModified.put(path, lastModified);
+        return previous == null || previous != lastModified;
+    }
+
+    private void refreshPlayerData(Path playerDataPath) throws IOException {
+        final Map<String, Long> files = new HashMap<>();
+        try(Stream<Path> stream = Files.list(playerDataPath)) {
+            for(Path path : stream.toList()) {
+                final String fileName = path.getFileName().toString();
+                if(!fileName.endsWith(".dat")) continue;
+                final String uuid = fileName.substring(0, fileName.length() - ".dat".length());
+                try {
+                    UUID.fromString(uuid);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                try {
+                    files.put(uuid, Files.getLastModifiedTime(path).toMillis());
+                } catch (NoSuchFileException e) {
+                    // deleted while listing
+                }
+            }
+        }
+
+        final List<String> changed = new ArrayList<>();
+        for(Map.Entry<String, Long> file : files.entrySet()) {
+            final Entry entry = entries.get(file.getKey());
+            if(entry == null || entry.dataModified != file.getValue()) changed.add(file.getKey());
+        }
+        // Players whose data is deleted are no longer known to the server
+        entries.values().removeIf(entry -> !entry.isOnline && !files.containsKey(entry.uuid));
+        if(changed.isEmpty()) return;
+
+        try {
+            pool.submit(() -> changed.parallelStream().forEach(uuid -> {
+                final Entry entry = entries.computeIfAbsent(uuid, key -> createEntry(uuid));
+                final long dataModified = files.get(uuid);
+                Map<String, Object> values;
+                try(NbtReader reader = NbtReader.openCompressed(playerDataPath.resolve(uuid +".dat"))) {
+                    values = reader.read(PLAYER_DATA_PATHS);
+                } catch (IOException e) {
+                    values = Map.of(); // being written, or broken
+                }
+                synchronized(entry) {
+                    if(values.get("playerGameType") instanceof Number type) entry.gamemode = getGameModeName(type.intValue());
+                    if(entry.name == null && values.get("bukkit.lastKnownName") instanceof String name) entry.name = name;
+                    // The data is saved when the player leaves
+                    if(!entry.isOnline) entry.lastSeen = Math.max(entry.lastSeen, dataModified);
+                    entry.dataModified = dataModified;
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Player index refresh is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException ioe) throw ioe.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Map<String, String> getNames() {
+        final Map<String, String> names = new HashMap<>(entries.size());
+        for(Entry entry : entries.values()) {
+            synchronized(entry) {
+                names.put(entry.uuid, entry.name);
+            }
+        }
+        return names;
+    }
+
+    private void applyLists(Entry entry) {
+        final String name = lists.names.get(entry.uuid);
+        if(name != null && !entry.isOnline) entry.name = name;
+        entry.isOp = lists.ops.contains(entry.uuid);
+        entry.isBanned = lists.bans.containsKey(entry.uuid);
+        entry.banReason = lists.bans.get(entry.uuid);
+        entry.isWhitelisted = lists.whitelist.contains(entry.uuid);
+    }
+
+    private Entry createEntry(String uuid) {
+        final Entry entry = new Entry();
+        entry.uuid = uuid;
+        entry.name = lists.names.get(uuid);
+        entry.gamemode = OPanelGameMode.SURVIVAL.getName();
+        return entry;
+    }
+
+    private static String getGameModeName(int type) {
+        return switch(type) {
+            case 1 -> OPanelGameMode.CREATIVE.getName();
+            case 2 -> OPanelGameMode.ADVENTURE.getName();
+            case 3 -> OPanelGameMode.SPECTATOR.getName();
+            default -> OPanelGameMode.SURVIVAL.getName();
+        };
+    }
+
+    // uuid -> name of the entries in a json list of the server, such as ops.json
+    private Map<String, String> readNames(Path path) throws IOException {
+        final Map<String, String> names = new HashMap<>();
+        for(JsonObject obj : readList(path)) {
+            if(obj.has("uuid") && obj.has("name")) names.put(obj.get("uuid").getAsString(), obj.get("name").getAsString());
+        }
+        return names;
+    }
+
+    private Map<String, String> readBanReasons(Path path) throws IOException {
+        final Map<String, String> reasons = new HashMap<>();
+        for(JsonObject obj : readList(path)) {
+            if(!obj.has("uuid")) continue;
+            final JsonElement reason = obj.get("reason");
+            reasons.put(obj.get("uuid").getAsString(), reason != null && !reason.isJsonNull() ? reason.getAsString() : null);
+        }
+        return reasons;
+    }
+
+    private List<JsonObject> readList(Path path) throws IOException {
+        final List<JsonObject> list = new ArrayList<>();
+        if(!Files.exists(path)) return list;
+        try {
+            final JsonElement root = JsonParser.parseString(Files.readString(path, StandardCharsets.UTF_8));
+            if(!root.isJsonArray()) return list;
+            final JsonArray array = root.getAsJsonArray();
+            for(JsonElement element : array) {
+                if(element.isJsonObject()) list.add(element.getAsJsonObject());
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            // being written by the server, it will be read again after it is modified
+            plugin.logger.warn("Cannot read "+ path.getFileName() +": "+ e.getMessage());
+        }
+        return list;
+    }
+
+    private void load() {
+        if(!Files.exists(INDEX_PATH)) return;
+        try {
+            final List<Entry> loaded = new Gson().fromJson(Files.readString(INDEX_PATH, StandardCharsets.UTF_8), new TypeToken<List<Entry>>() { }.getType());
+            if(loaded == null) return;
+            for(Entry entry : loaded) {
+                if(entry.uuid == null) continue;
+                entry.isOnline = false; // the server was stopped since
+                entries.put(entry.uuid, entry);
+            }
+        } catch (IOException | JsonParseException e) {
+            plugin.logger.warn("Cannot load the player index, it will be rebuilt: "+ e.getMessage());
+        }
+    }
+
+    private void saveAsync() {
+        if(saveQueued) return;
+        saveQueued = true;
+        try {
+            executor.schedule(() -> {
+                saveQueued = false;
+                save();
+            }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            saveQueued = false; // stopped
+        }
+    }
+
+    private synchronized void save() {
+        final List<Entry> list = new ArrayList<>();
+        for(Entry entry : entries.values()) {
+            synchronized(entry) {
+                list.add(entry.copy());
+            }
+        }
+        try {
+            final Path tmpPath = INDEX_PATH.resolveSibling(INDEX_PATH.getFileName() +".tmp");
+            Files.writeString(tmpPath, new Gson().toJson(list), StandardCharsets.UTF_8);
+            Files.move(tmpPath, INDEX_PATH, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.logger.warn("Cannot save the player index: "+ e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package net.opanel.player;
+
+import java.util.*;
+
+/**
+ * Search the known players by name prefix, uuid prefix, or a similar name.
+ *
+ * The names are kept in a sorted array for prefix search with binary search,
+ * and their trigrams are indexed for the fuzzy matching. The index is an immutable snapshot of the player index,
+ * built again only after a player is added or renamed, so a query doesn't touch the other players.
+ */
+public class PlayerSearch {
+    public static final int MAX_RESULTS = 50;
+    // Share of the trigrams that the query and the name have in common
+    private static final double MIN_SIMILARITY = 0.2;
+    private static final int MIN_UUID_PREFIX = 4;
+    private static final int MAX_CHAR_CODE = 1023; // 10 bits
+
+    public static class Result {
+        public String uuid;
+        public String name;
+        public boolean isOnline;
+        public String match; // "prefix", "uuid" or "fuzzy"
+        public double score;
+    }
+
+    private static class Snapshot {
+        final long version;
+        final String[] keys; // lower case names, sorted
+        final String[] names;
+        final String[] nameUUIDs;
+        final String[] uuids; // sorted
+        final String[] uuidNames;
+        // The characters are numbered, so that a trigram fits in an int
+        final Map<Character, Integer> charCodes = new HashMap<>();
+        // Distinct trigrams, sorted, and the indices of the names which contain them,
+        // from postingStarts[i] to postingStarts[i + 1]
+        final int[] trigramKeys;
+        final int[] postingStarts;
+        final int[] postings;
+        final int[] trigramCounts;
+
+        Snapshot(long version, List<PlayerIndex.Entry> entries) {
+            this.version = version;
+            final int size = entries.size();
+            final String[] lowerCase = new String[size];
+            for(int i = 0; i < size; i++) lowerCase[i] = entries.get(i).name.toLowerCase(Locale.ROOT);
+
+            final Integer[] byName = new Integer[size];
+            for(int i = 0; i < size; i++) byName[i] = i;
+            Arrays.sort(byName, Comparator.comparing((Integer i) -> lowerCase[i]));
+            keys = new String[size];
+            names = new String[size];
+            nameUUIDs = new String[size];
+            trigramCounts = new int[size];
+            final int[][] nameTrigrams = new int[size][];
+            int total = 0;
+            for(int i = 0; i < size; i++) {
+                final PlayerIndex.Entry entry = entries.get(byName[i]);
+                keys[i] = lowerCase[byName[i]];
+                names[i] = entry.name;
+                nameUUIDs[i] = entry.uuid;
+                nameTrigrams[i] = getTrigrams(keys[i], this, true);
+                trigramCounts[i] = nameTrigrams[i].length;
+                total += nameTrigrams[i].length;
+            }
+
+            // Sort the (trigram, name) pairs, the runs of the same trigram are its postings
+            final long[] pairs = new long[total];
+            int count = 0;
+            for(int i = 0; i < size; i++) {
+                for(int trigram : nameTrigrams[i]) pairs[count++] = ((long) trigram << 32) | i;
+            }
+            Arrays.sort(pairs);
+            postings = new int[total];
+            final int[] distinct = new int[total];
+            final int[] starts = new int[total + 1];
+            int distinctCount = 0;
+            for(int i = 0; i < total; i++) {
+                final int trigram = (int) (pairs[i] >>> 32);
+                if(i == 0 || trigram != distinct[distinctCount - 1]) {
+                    distinct[distinctCount] = trigram;
+                    starts[distinctCount++] = i;
+                }
+                postings[i] = (int) pairs[i];
+            }
+            starts[distinctCount] = total;
+            trigramKeys = Arrays.copyOf(distinct, distinctCount);
+            postingStarts = Arrays.copyOf(starts, distinctCount + 1);
+
+            final String[] lowerCaseUUIDs = new String[size];
+            for(int i = 0; i < size; i++) lowerCaseUUIDs[i] = entries.get(i).uuid.toLowerCase(Locale.ROOT);
+            final Integer[] byUUID = new Integer[size];
+            for(int i = 0; i < size; i++) byUUID[i] = i;
+            Arrays.sort(byUUID, Comparator.comparing((Integer i) -> lowerCaseUUIDs[i]));
+            uuids = new String[size];
+            uuidNames = new String[size];
+            for(int i = 0; i < size; i++) {
+                uuids[i] = lowerCaseUUIDs[byUUID[i]];
+                uuidNames[i] = entries.get(byUUID[i]).name;
+            }
+        }
+
+        // @return -1 if the character is in none of the names
+        int getCharCode(char c, boolean add) {
+            final Integer code = charCodes.get(c);
+            if(code != null) return code;
+            if(!add) return -1;
+            // Rare characters share the last code, which only makes the matching less precise
+            final int newCode = Math.min(charCodes.size() + 1, MAX_CHAR_CODE);
+            charCodes.put(c, newCode);
+            return newCode;
+        }
+    }
+
+    private final PlayerIndex playerIndex;
+    private volatile Snapshot snapshot;
+
+    public PlayerSearch(PlayerIndex playerIndex) {
+        this.playerIndex = playerIndex;
+    }
+
+    /**
+     * Players whose name starts with the query first, then those whose uuid starts with it, then the similar names.
+     */
+    public List<Result> search(String query, int limit) {
+        final Snapshot current = getSnapshot();
+        final String key = query.trim().toLowerCase(Locale.ROOT);
+        final List<Result> results = new ArrayList<>();
+        if(key.isEmpty()) return results;
+        final Set<String> found = new HashSet<>();
+
+        for(int i = lowerBound(current.keys, key); i < current.keys.length && results.size() < limit; i++) {
+            if(!current.keys[i].startsWith(key)) break;
+            found.add(current.nameUUIDs[i]);
+            results.add(createResult(current.nameUUIDs[i], current.names[i], "prefix", 1));
+        }
+
+        if(key.length() >= MIN_UUID_PREFIX && key.matches("[0-9a-f-]+")) {
+            for(int i = lowerBound(current.uuids, key); i < current.uuids.length && results.size() < limit; i++) {
+                if(!current.uuids[i].startsWith(key)) break;
+                if(found.add(current.uuids[i])) results.add(createResult(current.uuids[i], current.uuidNames[i], "uuid", 1));
+            }
+        }
+
+        if(results.size() < limit) {
+            for(Result result : fuzzy(current, key, limit)) {
+                if(results.size() >= limit) break;
+                if(found.add(result.uuid)) results.add(result);
+            }
+        }
+        return results;
+    }
+
+    // Names which start with the prefix, ignoring case, for the terminal autocomplete
+    public List<String> complete(String prefix, int limit) {
+        final Snapshot current = getSnapshot();
+        final String key = prefix.toLowerCase(Locale.ROOT);
+        final List<String> names = new ArrayList<>();
+        for(int i = lowerBound(current.keys, key); i < current.keys.length && names.size() < limit; i++) {
+            if(!current.keys[i].startsWith(key)) break;
+            names.add(current.names[i]);
+        }
+        return names;
+    }
+
+    private List<Result> fuzzy(Snapshot current, String key, int limit) {
+        final int[] queryTrigrams = getTrigrams(key, current, false);
+        // index of the name -> number of the trigrams in common
+        final int[] hits = new int[current.keys.length];
+        final List<Integer> candidates = new ArrayList<>();
+        for(int trigram : queryTrigrams) {
+            final int position = Arrays.binarySearch(current.trigramKeys, trigram);
+            if(position < 0) continue;
+            for(int i = current.postingStarts[position]; i < current.postingStarts[position + 1]; i++) {
+                final int index = current.postings[i];
+                if(hits[index]++ == 0) candidates.add(index);
+            }
+        }
+
+        // Keep the best ones in a bounded heap, the least similar is on the top
+        final PriorityQueue<double[]> heap = new PriorityQueue<>(Comparator.comparingDouble((double[] item) -> item[1]));
+        final int queryCount = getTrigramCount(key);
+        for(int index : candidates) {
+            final int common = hits[index];
+            final double similarity = (double) common / (queryCount + current.trigramCounts[index] - common);
+            if(similarity < MIN_SIMILARITY) continue;
+            heap.offer(new double[] {index, similarity});
+            if(heap.size() > limit) heap.poll();
+        }
+        final List<Result> results = new ArrayList<>();
+        while(!heap.isEmpty()) {
+            final double[] item = heap.poll();
+            final int index = (int) item[0];
+            results.add(createResult(current.nameUUIDs[index], current.names[index], "fuzzy", item[1]));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private Result createResult(String uuid, String name, String match, double score) {
+        final Result result = new Result();
+        result.uuid = uuid;
+        result.name = name;
+        result.match = match;
+        result.score = score;
+        final PlayerIndex.Entry entry = playerIndex.getEntry(uuid);
+        result.isOnline = entry != null && entry.isOnline;
+        return result;
+    }
+
+    private Snapshot getSnapshot() {
+        playerIndex.refreshIfNeeded();
+        final long version = playerIndex.getNamesVersion();
+        Snapshot current = snapshot;
+        if(current != null && current.version == version) return current;
+        synchronized(this) {
+            current = snapshot;
+            if(current == null || current.version != version) {
+                current = new Snapshot(version, playerIndex.getEntries());
+                snapshot = current;
+            }
+        }
+        return current;
+    }
+
+    // Index of the first element which is not less than the key
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while(low < high) {
+            final int mid = (low + high) >>> 1;
+            if(sorted[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String pad(String str) {
+        return "  "+ str +" ";
+    }
+
+    /**
+     * Distinct trigrams of the string, which is padded so that the beginning and the end of the names weigh more.
+     * @param add whether to number the new characters, otherwise the trigrams with them are left out
+     */
+    private static int[] getTrigrams(String str, Snapshot snapshot, boolean add) {
+        final String padded = pad(str);
+        final int[] trigrams = new int[padded.length() - 2];
+        int count = 0;
+        for(int i = 0; i < trigrams.length; i++) {
+            final int first = snapshot.getCharCode(padded.charAt(i), add);
+            final int second = snapshot.getCharCode(padded.charAt(i + 1), add);
+            final int third = snapshot.getCharCode(padded.charAt(i + 2), add);
+            if(first < 0 || second < 0 || third < 0) continue;
+            trigrams[count++] = (first << 20) | (second << 10) | third;
+        }
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for(int i = 0; i < count; i++) {
+            if(i == 0 || trigrams[i] != trigrams[i - 1]) trigrams[distinct++] = trigrams[i];
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    // Number of the distinct trigrams, including those which no name has
+    private static int getTrigramCount(String str) {
+        final String padded = pad(str);
+        final Set<String> trigrams = new HashSet<>();
+        for(int i = 0; i + 3 <= padded.length(); i++) trigrams.add(padded.substring(i, i + 3));
+        return trigrams.size();
+    }
+}
@@ -0,0 +1,393 @@
+package net.opanel.player;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import net.opanel.OPanel;
+import net.opanel.logger.Loggable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Join and leave events of the players, appended to a compact binary log at `.opanel/sessions.bin`.
+ *
+ * The playtime, session counts, concurrency and daily unique players are aggregated as the events come in,
+ * and the aggregates are checkpointed to `.opanel/sessions.json` with the length of the log they cover.
+ * On startup only the events after the checkpoint are replayed.
+ *
+ * Each record is 25 bytes: the type, the time in epoch millis, and the uuid as two longs.
+ */
+public class SessionLog {
+    public static final Path LOG_PATH = OPanel.OPANEL_DIR_PATH.resolve("sessions.bin");
+    public static final Path CHECKPOINT_PATH = OPanel.OPANEL_DIR_PATH.resolve("sessions.json");
+    private static final int RECORD_SIZE = 25;
+    private static final byte JOIN = 1;
+    private static final byte LEAVE = 2;
+    private static final byte STOP = 3; // all sessions are ended
+    private static final long CHECKPOINT_INTERVAL_MS = 5 * 60_000;
+    private static final int DAILY_RETENTION_DAYS = 400;
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    public static class PlayerStats {
+        public long playtime;
+        public int sessions;
+        public long firstJoin;
+        public long lastJoin;
+        public long longestSession;
+    }
+
+    public static class PlaytimeEntry {
+        public String uuid;
+        public String name;
+        public long playtime;
+        public int sessions;
+    }
+
+    // Everything that is checkpointed
+    private static class Aggregates {
+        long logOffset;
+        long lastTime; // the latest time the server is known to be running
+        long firstTime;
+        int peak;
+        long peakTime;
+        Map<String, Long> open = new HashMap<>(); // uuid -> start of the session
+        Map<String, PlayerStats> players = new HashMap<>();
+        Map<String, Map<String, Long>> monthly = new HashMap<>(); // yyyy-MM -> uuid -> playtime
+        Map<String, Set<String>> daily = new HashMap<>(); // yyyy-MM-dd -> uuids
+        Map<String, Integer> dailyPeak = new HashMap<>();
+        long[] heatmap = new long[7 * 24]; // playtime by day of week (from Monday) and hour
+    }
+
+    private interface HourConsumer {
+        void accept(ZonedDateTime hour, long millis);
+    }
+
+    private final Loggable logger;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Session Log");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Aggregates data = new Aggregates();
+    private FileChannel channel;
+    private boolean dirty = false;
+
+    public SessionLog(Loggable logger) {
+        this.logger = logger;
+        executor.execute(this::load);
+        executor.scheduleWithFixedDelay(this::checkpoint, CHECKPOINT_INTERVAL_MS, CHECKPOINT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void onJoin(String uuid) {
+        submit(JOIN, uuid);
+    }
+
+    public void onLeave(String uuid) {
+        submit(LEAVE, uuid);
+    }
+
+    public void stop() {
+        submit(STOP, null);
+        executor.execute(() -> {
+            checkpoint();
+            closeChannel();
+        });
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(5, TimeUnit.SECONDS)) executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(byte type, String uuid) {
+        final long time = System.currentTimeMillis();
+        final UUID id;
+        try {
+            id = uuid != null ? UUID.fromString(uuid) : new UUID(0, 0);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                append(type, time, id);
+                synchronized(this) {
+                    apply(type, time, uuid);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Players with the most playtime, including the sessions in progress.
+     * @param month `yyyy-MM`, or null for all time
+     */
+    public synchronized List<PlaytimeEntry> getTopPlaytime(String month, int limit) {
+        final long now = System.currentTimeMillis();
+        final Map<String, Long> playtimes = new HashMap<>();
+        if(month == null) {
+            data.players.forEach((uuid, stats) -> playtimes.put(uuid, stats.playtime));
+            data.open.forEach((uuid, start) -> playtimes.merge(uuid, Math.max(0, now - start), Long::sum));
+        } else {
+            playtimes.putAll(data.monthly.getOrDefault(month, Map.of()));
+            data.open.forEach((uuid, start) -> forEachHour(start, now, (hour, millis) -> {
+                if(hour.format(MONTH_FORMAT).equals(month)) playtimes.merge(uuid, millis, Long::sum);
+            }));
+        }
+
+        // Keep the top ones in a bounded heap, the least is on the top
+        final PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for(Map.Entry<String, Long> entry : playtimes.entrySet()) {
+            heap.offer(entry);
+            if(heap.size() > limit) heap.poll();
+        }
+        final List<PlaytimeEntry> result = new ArrayList<>();
+        while(!heap.isEmpty()) {
+            final Map.Entry<String, Long> entry = heap.poll();
+            final PlaytimeEntry item = new PlaytimeEntry();
+            item.uuid = entry.getKey();
+            item.playtime = entry.getValue();
+            final PlayerStats stats = data.players.get(entry.getKey());
+            item.sessions = stats != null ? stats.sessions : 0;
+            result.add(item);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // Average concurrent players by day of week (from Monday) and hour
+    public synchronized double[][] getHeatmap() {
+        final long span = System.currentTimeMillis() - data.firstTime;
+        final double weeks = data.firstTime == 0 ? 1 : Math.max(1, span / (double) Duration.ofDays(7).toMillis());
+        final double[][] result = new double[7][24];
+        for(int i = 0; i < data.heatmap.length; i++) {
+            result[i / 24][i % 24] = data.heatmap[i] / (weeks * Duration.ofHours(1).toMillis());
+        }
+        return result;
+    }
+
+    public synchronized HashMap<String, Object> getSummary(int days) {
+        int totalSessions = 0;
+        for(PlayerStats stats : data.players.values()) totalSessions += stats.sessions;
+
+        final LinkedHashMap<String, Integer> dailyUniques = new LinkedHashMap<>();
+        final LinkedHashMap<String, Integer> dailyPeak = new LinkedHashMap<>();
+        final LocalDate today = LocalDate.now(zone);
+        for(int i = days - 1; i >= 0; i--) {
+            final String day = today.minusDays(i).format(DAY_FORMAT);
+            final Set<String> uniques = new HashSet<>(data.daily.getOrDefault(day, Set.of()));
+            if(i == 0) uniques.addAll(data.open.keySet()); // the sessions in progress are added to the days when they end
+            dailyUniques.put(day, uniques.size());
+            dailyPeak.put(day, data.dailyPeak.getOrDefault(day, 0));
+        }
+
+        HashMap<String, Object> obj = new HashMap<>();
+        obj.put("online", data.open.size());
+        obj.put("peak", data.peak);
+        obj.put("peakTime", data.peakTime);
+        obj.put("players", data.players.size());
+        obj.put("sessions", totalSessions);
+        obj.put("since", data.firstTime);
+        obj.put("dailyUniques", dailyUniques);
+        obj.put("dailyPeak", dailyPeak);
+        return obj;
+    }
+
+    public synchronized PlayerStats getPlayerStats(String uuid) {
+        final PlayerStats stats = data.players.get(uuid);
+        if(stats == null) return null;
+        final PlayerStats copy = new PlayerStats();
+        copy.playtime = stats.playtime;
+        copy.sessions = stats.sessions;
+        copy.firstJoin = stats.firstJoin;
+        copy.lastJoin = stats.lastJoin;
+        copy.longestSession = stats.longestSession;
+        final Long start = data.open.get(uuid);
+        if(start != null) copy.playtime += Math.max(0, System.currentTimeMillis() - start);
+        return copy;
+    }
+
+    private void apply(byte type, long time, String uuid) {
+        if(data.firstTime == 0) data.firstTime = time;
+        data.lastTime = Math.max(data.lastTime, time);
+        dirty = true;
+        switch(type) {
+            case JOIN -> {
+                if(data.open.containsKey(uuid)) endSession(uuid, time); // the leave event is lost
+                data.open.put(uuid, time);
+                final PlayerStats stats = data.players.computeIfAbsent(uuid, key -> new PlayerStats());
+                if(stats.firstJoin == 0) stats.firstJoin = time;
+                stats.lastJoin = time;
+                stats.sessions++;
+
+                final String day = Instant.ofEpochMilli(time).atZone(zone).format(DAY_FORMAT);
+                data.daily.computeIfAbsent(day, key -> new HashSet<>()).add(uuid);
+                final int online = data.open.size();
+                data.dailyPeak.merge(day, online, Math::max);
+                if(online > data.peak) {
+                    data.peak = online;
+                    data.peakTime = time;
+                }
+            }
+            case LEAVE -> endSession(uuid, time);
+            case STOP -> {
+                for(String openUUID : new ArrayList<>(data.open.keySet())) endSession(openUUID, time);
+            }
+        }
+    }
+
+    private void endSession(String uuid, long time) {
+        final Long start = data.open.remove(uuid);
+        if(start == null || time <= start) return;
+        final PlayerStats stats = data.players.computeIfAbsent(uuid, key -> new PlayerStats());
+        stats.playtime += time - start;
+        stats.longestSession = Math.max(stats.longestSession, time - start);
+        forEachHour(start, time, (hour, millis) -> {
+            data.heatmap[(hour.getDayOfWeek().getValue() - 1) * 24 + hour.getHour()] += millis;
+            data.monthly.computeIfAbsent(hour.format(MONTH_FORMAT), key -> new HashMap<>()).merge(uuid, millis, Long::sum);
+            data.daily.computeIfAbsent(hour.format(DAY_FORMAT), key -> new HashSet<>()).add(uuid);
+        });
+    }
+
+    // Split the time range at the hour boundaries
+    private void forEachHour(long start, long end, HourConsumer consumer) {
+        while(start < end) {
+            final ZonedDateTime hour = Instant.ofEpochMilli(start).atZone(zone);
+            final long hourEnd = hour.truncatedTo(ChronoUnit.HOURS).plusHours(1).toInstant().toEpochMilli();
+            final long sliceEnd = Math.min(end, hourEnd);
+            consumer.accept(hour, sliceEnd - start);
+            start = sliceEnd;
+        }
+    }
+
+    private void append(byte type, long time, UUID uuid) {
+        try {
+            if(channel == null) openChannel();
+            final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            buffer.put(type).putLong(time).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+            buffer.flip();
+            while(buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            logger.warn("Cannot write the session log: "+ e.getMessage());
+        }
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(LOG_PATH, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void closeChannel() {
+        if(channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+    private void load() {
+        Aggregates loaded = null;
+        if(Files.exists(CHECKPOINT_PATH)) {
+            try {
+                loaded = new Gson().fromJson(Files.readString(CHECKPOINT_PATH, StandardCharsets.UTF_8), Aggregates.class);
+            } catch (IOException | JsonParseException e) {
+                logger.warn("Cannot load the session checkpoint, the session log will be replayed: "+ e.getMessage());
+            }
+        }
+
+        try {
+            final long logSize = Files.exists(LOG_PATH) ? Files.size(LOG_PATH) : 0;
+            // The checkpoint doesn't belong to this log
+            if(loaded == null || loaded.logOffset > logSize || loaded.logOffset % RECORD_SIZE != 0) loaded = new Aggregates();
+            synchronized(this) {
+                data = loaded;
+            }
+            if(logSize > data.logOffset) replay(logSize);
+
+            // The server was not stopped properly last time, end the sessions when it was last seen running
+            if(!data.open.isEmpty()) {
+                final long time = data.lastTime;
+                append(STOP, time, new UUID(0, 0));
+                synchronized(this) {
+                    apply(STOP, time, null);
+                }
+            }
+            trimDaily();
+        } catch (IOException e) {
+            logger.warn("Cannot read the session log: "+ e.getMessage());
+        }
+    }
+
+    private void replay(long logSize) throws IOException {
+        try(FileChannel reader = FileChannel.open(LOG_PATH, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // A record cut off by a crash is dropped
+            final long end = logSize - logSize % RECORD_SIZE;
+            if(end != logSize) reader.truncate(end);
+
+            final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 4096);
+            long position = data.logOffset;
+            synchronized(this) {
+                while(position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    while(buffer.hasRemaining()) {
+                        if(reader.read(buffer, position + buffer.position()) < 0) throw new IOException("The session log is truncated.");
+                    }
+                    buffer.flip();
+                    while(buffer.remaining() >= RECORD_SIZE) {
+                        final byte type = buffer.get();
+                        final long time = buffer.getLong();
+                        final UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                        apply(type, time, type == STOP ? null : uuid.toString());
+                    }
+                    position += buffer.limit();
+                }
+            }
+        }
+    }
+
+    private synchronized void trimDaily() {
+        final String oldest = LocalDate.now(zone).minusDays(DAILY_RETENTION_DAYS).format(DAY_FORMAT);
+        data.daily.keySet().removeIf(day -> day.compareTo(oldest) < 0);
+        data.dailyPeak.keySet().removeIf(day -> day.compareTo(oldest) < 0);
+    }
+
+    private void checkpoint() {
+        final String json;
+        synchronized(this) {
+            // Sessions in progress move the last seen time forward, which bounds them if the server crashes
+            if(!dirty && data.open.isEmpty()) return;
+            data.lastTime = Math.max(data.lastTime, System.currentTimeMillis());
+            try {
+                data.logOffset = Files.exists(LOG_PATH) ? Files.size(LOG_PATH) : 0;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            json = new Gson().toJson(data);
+            dirty = false;
+        }
+        trimDaily();
+        try {
+            final Path tmpPath = CHECKPOINT_PATH.resolveSibling(CHECKPOINT_PATH.getFileName() +".tmp");
+            Files.writeString(tmpPath, json, StandardCharsets.UTF_8);
+            Files.move(tmpPath, CHECKPOINT_PATH, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Cannot save the session checkpoint: "+ e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package net.opanel.player;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.opanel.OPanel;
+import net.opanel.common.OPanelSave;
+import net.opanel.common.OPanelServer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Statistics and advancements of the players, from `stats/<uuid>.json` and `advancements/<uuid>.json` of the running save.
+ *
+ * The files are parsed in parallel with a streaming reader, and only when they are modified since the last refresh.
+ * Only the statistics of the leaderboards are kept in memory, and each leaderboard keeps its top players,
+ * which are updated with the players whose files are changed.
+ */
+public class StatsAggregator {
+    public static final int MAX_LEADERBOARD_SIZE = 100;
+    private static final long REFRESH_INTERVAL_MS = 10_000;
+    private static final String CUSTOM = "minecraft:custom";
+    private static final String RECIPES = ":recipes/";
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+
+    // The statistics with leaderboards, "advancements" is the number of done advancements
+    public static final String[] STATS = {
+            "play_time", "deaths", "mined", "crafted", "mob_kills", "player_kills", "walked", "jumps", "advancements"
+    };
+    private static final int PLAY_TIME = 0;
+    private static final int DEATHS = 1;
+    private static final int MINED = 2;
+    private static final int CRAFTED = 3;
+    private static final int MOB_KILLS = 4;
+    private static final int PLAYER_KILLS = 5;
+    private static final int WALKED = 6;
+    private static final int JUMPS = 7;
+    private static final int ADVANCEMENTS = 8;
+
+    public static class Ranking {
+        public String uuid;
+        public String name;
+        public long value;
+    }
+
+    private static class Entry {
+        long statsModified = -1;
+        long advancementsModified = -1;
+        final long[] values = new long[STATS.length];
+    }
+
+    // The values of the files which are parsed in a refresh
+    private record Parsed(String uuid, long statsModified, long advancementsModified, long[] stats, Long advancements) { }
+
+    private class Leaderboard {
+        final int stat;
+        final List<String> top = new ArrayList<>(); // by value from the highest
+        final Comparator<String> order;
+
+        Leaderboard(int stat) {
+            this.stat = stat;
+            order = Comparator.comparingLong((String uuid) -> entries.get(uuid).values[stat]).reversed().thenComparing(Comparator.naturalOrder());
+        }
+
+        void update(String uuid, long previous, long value) {
+            if(top.contains(uuid)) {
+                // Someone out of the board may be higher now
+                if(value < previous) {
+                    rebuild();
+                } else {
+                    top.sort(order);
+                }
+                return;
+            }
+            if(value <= 0) return;
+            if(top.size() < MAX_LEADERBOARD_SIZE || value > entries.get(top.get(top.size() - 1)).values[stat]) {
+                top.add(uuid);
+                top.sort(order);
+                if(top.size() > MAX_LEADERBOARD_SIZE) top.remove(top.size() - 1);
+            }
+        }
+
+        void remove(String uuid) {
+            if(top.contains(uuid)) rebuild();
+        }
+
+        // Select the top players with a bounded heap, the lowest of them is on the top of the heap
+        void rebuild() {
+            final PriorityQueue<String> heap = new PriorityQueue<>(order.reversed());
+            for(Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if(entry.getValue().values[stat] <= 0) continue;
+                heap.offer(entry.getKey());
+                if(heap.size() > MAX_LEADERBOARD_SIZE) heap.poll();
+            }
+            top.clear();
+            top.addAll(heap);
+            top.sort(order);
+        }
+    }
+
+    private final OPanel plugin;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Leaderboard[] leaderboards = new Leaderboard[STATS.length];
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Stats Aggregator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Path savePath;
+    private volatile long lastRefresh = 0;
+    private volatile boolean refreshQueued = false;
+
+    public StatsAggregator(OPanel plugin) {
+        this.plugin = plugin;
+        for(int i = 0; i < STATS.length; i++) leaderboards[i] = new Leaderboard(i);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param stat one of {@link #STATS}
+     * @return null if the statistic is unknown
+     */
+    public List<Ranking> getLeaderboard(String stat, int limit) {
+        final int index = Arrays.asList(STATS).indexOf(stat);
+        if(index < 0) return null;
+        refreshIfNeeded();
+
+        final List<Ranking> result = new ArrayList<>();
+        synchronized(this) {
+            for(String uuid : leaderboards[index].top) {
+                if(result.size() >= limit) break;
+                final Ranking ranking = new Ranking();
+                ranking.uuid = uuid;
+                ranking.value = entries.get(uuid).values[index];
+                result.add(ranking);
+            }
+        }
+        final PlayerIndex playerIndex = plugin.getPlayerIndex();
+        for(Ranking ranking : result) {
+            final PlayerIndex.Entry entry = playerIndex.getEntry(ranking.uuid);
+            if(entry != null) ranking.name = entry.name;
+        }
+        return result;
+    }
+
+    /**
+     * Read all statistics of a player, which are not kept in memory.
+     * @return category -> statistic -> value, and the done advancements, null if the player has no statistics
+     */
+    public HashMap<String, Object> getPlayerStats(String uuid) throws IOException {
+        final Path path = getSavePath();
+        if(path == null || !uuid.matches("[0-9a-fA-F-]{36}")) return null;
+        final Path statsPath = path.resolve("stats").resolve(uuid +".json");
+        if(!Files.exists(statsPath)) return null;
+
+        final Map<String, Map<String, Long>> stats = new TreeMap<>();
+        readStats(statsPath, (category, key, value) -> stats.computeIfAbsent(category, k -> new TreeMap<>()).put(key, value));
+        final List<String> advancements = new ArrayList<>();
+        final Path advancementsPath = path.resolve("advancements").resolve(uuid +".json");
+        if(Files.exists(advancementsPath)) readAdvancements(advancementsPath, advancements::add);
+
+        HashMap<String, Object> obj = new HashMap<>();
+        obj.put("stats", stats);
+        obj.put("advancements", advancements);
+        return obj;
+    }
+
+    private void refreshIfNeeded() {
+        if(lastRefresh == 0) {
+            refresh();
+        } else if(System.currentTimeMillis() - lastRefresh > REFRESH_INTERVAL_MS && !refreshQueued) {
+            refreshQueued = true;
+            try {
+                executor.execute(() -> {
+                    refreshQueued = false;
+                    refresh();
+                });
+            } catch (RejectedExecutionException e) {
+                refreshQueued = false; // stopped
+            }
+        }
+    }
+
+    private synchronized void refresh() {
+        try {
+            final Path path = getSavePath();
+            if(!Objects.equals(path, savePath)) {
+                // Another save is running
+                savePath = path;
+                entries.clear();
+                for(Leaderboard leaderboard : leaderboards) leaderboard.top.clear();
+            }
+            if(path == null) return;
+
+            final Map<String, Long> statsFiles = listFiles(path.resolve("stats"));
+            final Map<String, Long> advancementsFiles = listFiles(path.resolve("advancements"));
+            final Set<String> uuids = new HashSet<>(statsFiles.keySet());
+            uuids.addAll(advancementsFiles.keySet());
+
+            // Players whose files are deleted
+            for(String uuid : new ArrayList<>(entries.keySet())) {
+                if(uuids.contains(uuid)) continue;
+                entries.remove(uuid);
+                for(Leaderboard leaderboard : leaderboards) leaderboard.remove(uuid);
+            }
+
+            final List<String> changed = new ArrayList<>();
+            for(String uuid : uuids) {
+                final Entry entry = entries.get(uuid);
+                if(entry == null
+                        || entry.statsModified != statsFiles.getOrDefault(uuid, -1L)
+                        || entry.advancementsModified != advancementsFiles.getOrDefault(uuid, -1L)) {
+                    changed.add(uuid);
+                }
+            }
+            if(changed.isEmpty()) return;
+
+            final List<Parsed> parsed = pool.submit(() -> changed.parallelStream().map(uuid -> {
+                final Entry entry = entries.get(uuid);
+                final long statsModified = statsFiles.getOrDefault(uuid, -1L);
+                final long advancementsModified = advancementsFiles.getOrDefault(uuid, -1L);
+                long[] stats = null;
+                Long advancements = null;
+                try {
+                    if(entry == null || entry.statsModified != statsModified) {
+                        stats = statsModified < 0 ? new long[STATS.length] : parseStats(path.resolve("stats").resolve(uuid +".json"));
+                    }
+                    if(entry == null || entry.advancementsModified != advancementsModified) {
+                        advancements = advancementsModified < 0 ? 0L : countAdvancements(path.resolve("advancements").resolve(uuid +".json"));
+                    }
+                } catch (NoSuchFileException e) {
+                    return null; // deleted since listed, it is removed in the next refresh
+                } catch (IOException | IllegalStateException | NumberFormatException e) {
+                    // being written by the server, it is parsed again after it is modified
+                    return new Parsed(uuid, entry != null ? entry.statsModified : -1, entry != null ? entry.advancementsModified : -1, null, null);
+                }
+                return new Parsed(uuid, statsModified, advancementsModified, stats, advancements);
+            }).filter(Objects::nonNull).toList()).get();
+
+            for(Parsed item : parsed) apply(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException e) {
+            e.printStackTrace();
+        } finally {
+            lastRefresh = System.currentTimeMillis();
+        }
+    }
+
+    private void apply(Parsed item) {
+        final Entry entry = entries.computeIfAbsent(item.uuid, key -> new Entry());
+        final long[] previous = entry.values.clone();
+        entry.statsModified = item.statsModified;
+        entry.advancementsModified = item.advancementsModified;
+        if(item.stats != null) System.arraycopy(item.stats, 0, entry.values, 0, ADVANCEMENTS);
+        if(item.advancements != null) entry.values[ADVANCEMENTS] = item.advancements;
+        for(int i = 0; i < STATS.length; i++) {
+            if(entry.values[i] != previous[i]) leaderboards[i].update(item.uuid, previous[i], entry.values[i]);
+        }
+    }
+
+    private Path getSavePath() {
+        final OPanelServer server = plugin.getServer();
+        if(server == null) return null;
+        for(OPanelSave save : server.getSaves()) {
+            if(save.isRunning()) return save.getPath();
+        }
+        return null;
+    }
+
+    // uuid -> modified time of the json files in the folder
+    private static Map<String, Long> listFiles(Path dir) throws IOException {
+        final Map<String, Long> files = new HashMap<>();
+        if(!Files.isDirectory(dir)) return files;
+        try(Stream<Path> stream = Files.list(dir)) {
+            for(Path path : stream.toList()) {
+                final String fileName = path.getFileName().toString();
+                if(!fileName.endsWith(".json") || fileName.length() != 41) continue;
+                try {
+                    files.put(fileName.substring(0, 36), Files.getLastModifiedTime(path).toMillis());
+                } catch (NoSuchFileException e) {
+                    // deleted while listing
+                }
+            }
+        }
+        return files;
+    }
+
+    private interface StatConsumer {
+        void accept(String category, String key, long value);
+    }
+
+    private static long[] parseStats(Path path) throws IOException {
+        final long[] values = new long[STATS.length];
+        readStats(path, (category, key, value) -> {
+            switch(category) {
+                case "minecraft:mined" -> values[MINED] += value;
+                case "minecraft:crafted" -> values[CRAFTED] += value;
+                case CUSTOM -> {
+                    switch(key) {
+                        case "minecraft:play_time", "minecraft:play_one_minute" -> values[PLAY_TIME] += value; // in ticks
+                        case "minecraft:deaths" -> values[DEATHS] = value;
+                        case "minecraft:mob_kills" -> values[MOB_KILLS] = value;
+                        case "minecraft:player_kills" -> values[PLAYER_KILLS] = value;
+                        case "minecraft:walk_one_cm" -> values[WALKED] = value;
+                        case "minecraft:jump" -> values[JUMPS] = value;
+                    }
+                }
+            }
+        });
+        return values;
+    }
+
+    // {"stats": {"<category>": {"<key>": value}}, "DataVersion": ...}
+    private static void readStats(Path path, StatConsumer consumer) throws IOException {
+        try(Reader fileReader = Files.newBufferedReader(path, StandardCharsets.UTF_8); JsonReader reader = new JsonReader(fileReader)) {
+            reader.beginObject();
+            while(reader.hasNext()) {
+                if(!reader.nextName().equals("stats") || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while(reader.hasNext()) {
+                    final String category = reader.nextName();
+                    if(reader.peek() != JsonToken.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        continue;
+                    }
+                    reader.beginObject();
+                    while(reader.hasNext()) {
+                        final String key = reader.nextName();
+                        if(reader.peek() == JsonToken.NUMBER) {
+                            consumer.accept(category, key, reader.nextLong());
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+    }
+
+    private static long countAdvancements(Path path) throws IOException {
+        final long[] count = {0};
+        readAdvancements(path, id -> count[0]++);
+        return count[0];
+    }
+
+    // {"<advancement>": {"criteria": {...}, "done": true}, "DataVersion": ...}, the recipes are not counted
+    private static void readAdvancements(Path path, java.util.function.Consumer<String> consumer) throws IOException {
+        try(Reader fileReader = Files.newBufferedReader(path, StandardCharsets.UTF_8); JsonReader reader = new JsonReader(fileReader)) {
+            reader.beginObject();
+            while(reader.hasNext()) {
+                final String id = reader.nextName();
+                if(id.contains(RECIPES) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                boolean done = false;
+                reader.beginObject();
+                while(reader.hasNext()) {
+                    if(reader.nextName().equals("done") && reader.peek() == JsonToken.BOOLEAN) {
+                        done = reader.nextBoolean();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if(done) consumer.accept(id);
+            }
+            reader.endObject();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package net.opanel.terminal;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class LogFilter {
+    public static final LogFilter ACCEPT_ALL = new LogFilter(null, null, null, null);
+
+    private final Set<String> levels;
+    private final String sourcePrefix;
+    private final String thread;
+    private final Pattern pattern;
+
+    private LogFilter(Set<String> levels, String sourcePrefix, String thread, Pattern pattern) {
+        this.levels = levels;
+        this.sourcePrefix = sourcePrefix;
+        this.thread = thread;
+        this.pattern = pattern;
+    }
+
+    // Compile the filter only once when the session subscribes,
+    // so that each incoming log is only checked against the prepared conditions
+    public static LogFilter compile(Options options) throws PatternSyntaxException {
+        if(options == null) return ACCEPT_ALL;
+
+        Set<String> levels = null;
+        if(options.levels != null && !options.levels.isEmpty()) {
+            levels = new HashSet<>();
+            for(String level : options.levels) {
+                levels.add(level.toUpperCase());
+            }
+        }
+        final String sourcePrefix = (options.source == null || options.source.isEmpty()) ? null : options.source;
+        final String thread = (options.thread == null || options.thread.isEmpty()) ? null : options.thread;
+        final Pattern pattern = (options.regex == null || options.regex.isEmpty()) ? null : Pattern.compile(options.regex);
+
+        if(levels == null && sourcePrefix == null && thread == null && pattern == null) {
+            return ACCEPT_ALL;
+        }
+        return new LogFilter(levels, sourcePrefix, thread, pattern);
+    }
+
+    public boolean test(ConsoleLog log) {
+        if(this == ACCEPT_ALL) return true;
+
+        // Cheapest checks first, the regex is the last one
+        if(levels != null && !levels.contains(log.level)) return false;
+        if(sourcePrefix != null && (log.source == null || !log.source.startsWith(sourcePrefix))) return false;
+        if(thread != null && !thread.equals(log.thread)) return false;
+        return pattern == null || (log.line != null && pattern.matcher(log.line).find());
+    }
+
+    public static class Options {
+        public List<String> levels;
+        public String source;
+        public String thread;
+        public String regex;
+    }
+}
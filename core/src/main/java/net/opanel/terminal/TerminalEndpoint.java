@@ -13,15 +13,18 @@ import net.opanel.utils.Utils;
 import java.io.IOException;
 import java.util.*;
 import java.util.Collections;
+import java.util.regex.PatternSyntaxException;
 
 @ServerEndpoint(value = TerminalEndpoint.route, configurator = TerminalEndpoint.Configurator.class)
 public class TerminalEndpoint {
     public static final String route = "/terminal";
+    private static final int MAX_AUTOCOMPLETE_PLAYERS = 20;
     private final OPanel plugin;
     private final Loggable logger;
     private final LogListenerManager logListenerManager;
 
-    private static final Set<Session> sessions = Collections.synchronizedSet(new HashSet<>());
+    // Authorized sessions with their log subscription filters
+    private static final Map<Session, LogFilter> sessions = Collections.synchronizedMap(new HashMap<>());
 
     // To avoid duplicated log listener from registering,
     // which can lead to plenty duplicated logs in the frontend terminal
@@ -33,9 +36,7 @@ public class TerminalEndpoint {
         logListenerManager = plugin.getLogListenerManager();
 
         if(!hasLogListenerRegistered) {
-            logListenerManager.addListener(log -> {
-                broadcast(new TerminalPacket<>(TerminalPacket.LOG, log));
-            });
+            logListenerManager.addListener(TerminalEndpoint::broadcastLog);
             hasLogListenerRegistered = true;
         }
     }
@@ -57,7 +58,7 @@ public class TerminalEndpoint {
                     final String hashedRealKey = plugin.getConfig().accessKey; // hashed 2
                     if(token != null && token.equals(Utils.md5(plugin.getConfig().salt + hashedRealKey))) {
                         // Register session
-                        sessions.add(session);
+                        sessions.put(session, LogFilter.ACCEPT_ALL);
                         // Send recent logs
                         sendMessage(session, new TerminalPacket<>(TerminalPacket.INIT, logListenerManager.getRecentLogs()));
                     } else {
@@ -65,7 +66,7 @@ public class TerminalEndpoint {
                     }
                 }
                 case TerminalPacket.COMMAND -> {
-                    if(!sessions.contains(session)) {
+                    if(!sessions.containsKey(session)) {
                         session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Unauthorized."));
                         return;
                     }
@@ -76,23 +77,55 @@ public class TerminalEndpoint {
                     plugin.getServer().sendServerCommand(command.replaceFirst("/", ""));
                 }
                 case TerminalPacket.AUTOCOMPLETE -> {
-                    if(!sessions.contains(session)) {
+                    if(!sessions.containsKey(session)) {
                         session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Unauthorized."));
                         return;
                     }
-                    if(!(packet.data instanceof Number arg)) {
+                    // Either the argument number, or {arg, prefix} to complete the player names with the inputted prefix
+                    Number arg = null;
+                    String prefix = null;
+                    if(packet.data instanceof Number number) {
+                        arg = number;
+                    } else if(packet.data instanceof Map<?, ?> map && map.get("arg") instanceof Number number) {
+                        arg = number;
+                        if(map.get("prefix") instanceof String str) prefix = str;
+                    }
+                    if(arg == null) {
                         sendErrorMessage(session, "Unexpected type of data.");
                         return;
                     }
 
-                    if(arg.equals(1.0)) {
+                    if(arg.intValue() == 1) {
                         sendMessage(session, new TerminalPacket<>(TerminalPacket.AUTOCOMPLETE, plugin.getServer().getCommands()));
                         return;
                     }
-                    sendMessage(session, new TerminalPacket<>(
-                            TerminalPacket.AUTOCOMPLETE,
-                            plugin.getServer().getOnlinePlayers().stream().map(OPanelPlayer::getName).toList()
-                    ));
+                    // Online players come first, then the other known players
+                    final List<String> names = new ArrayList<>(plugin.getServer().getOnlinePlayers().stream().map(OPanelPlayer::getName).toList());
+                    if(prefix != null && !prefix.isEmpty()) {
+                        for(String name : plugin.getPlayerSearch().complete(prefix, MAX_AUTOCOMPLETE_PLAYERS)) {
+                            if(!names.contains(name)) names.add(name);
+                        }
+                    }
+                    sendMessage(session, new TerminalPacket<>(TerminalPacket.AUTOCOMPLETE, names));
+                }
+                case TerminalPacket.SUBSCRIBE -> {
+                    if(!sessions.containsKey(session)) {
+                        session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Unauthorized."));
+                        return;
+                    }
+                    try {
+                        LogFilter.Options options = gson.fromJson(gson.toJsonTree(packet.data), LogFilter.Options.class);
+                        final LogFilter filter = LogFilter.compile(options);
+                        sessions.put(session, filter);
+                        // Send the recent logs again, filtered, to replace the backlog sent on auth
+                        final List<ConsoleLog> recentLogs = new ArrayList<>();
+                        for(ConsoleLog log : logListenerManager.getRecentLogs()) {
+                            if(filter.test(log)) recentLogs.add(log);
+                        }
+                        sendMessage(session, new TerminalPacket<>(TerminalPacket.INIT, recentLogs));
+                    } catch(PatternSyntaxException e) {
+                        sendErrorMessage(session, "Invalid regex: "+ e.getDescription());
+                    }
                 }
                 default -> sendErrorMessage(session, "Unexpected type of packet.");
             }
@@ -126,11 +159,16 @@ public class TerminalEndpoint {
         sendMessage(session, new TerminalPacket<>(TerminalPacket.ERROR, err));
     }
 
-    private <T> void broadcast(TerminalPacket<T> packet) {
-        String message = new Gson().toJson(packet);
+    private static void broadcastLog(ConsoleLog log) {
+        // Only serialize the log when at least one session accepts it
+        String message = null;
         synchronized (sessions) {
-            sessions.removeIf(session -> !session.isOpen());
-            for(Session session : sessions) {
+            sessions.keySet().removeIf(session -> !session.isOpen());
+            for(Map.Entry<Session, LogFilter> entry : sessions.entrySet()) {
+                if(!entry.getValue().test(log)) continue;
+
+                final Session session = entry.getKey();
+                if(message == null) message = new Gson().toJson(new TerminalPacket<>(TerminalPacket.LOG, log));
                 try {
                     session.getAsyncRemote().sendText(message);
                 } catch(Exception e) {
@@ -142,7 +180,7 @@ public class TerminalEndpoint {
     }
 
     public static void closeAllSessions() throws IOException {
-        for(Session session : sessions) {
+        for(Session session : sessions.keySet()) {
             session.close(new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "Server is stopping."));
         }
         sessions.clear();
@@ -7,6 +7,7 @@ public class TerminalPacket<T> {
     public static final String ERROR = "error";
     public static final String AUTH = "auth";
     public static final String COMMAND = "command";
+    public static final String SUBSCRIBE = "subscribe";
 
     public String type;
     public T data;
@@ -0,0 +1,71 @@
+package net.opanel.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Collection;
+
+public class BloomFilter {
+    private static final int HASH_COUNT = 7; // ~1% false positive rate with 10 bits per element
+    private static final int BITS_PER_ELEMENT = 10;
+    private static final int MIN_BITS = 1024;
+    private static final int MAX_BITS = 1 << 23; // 1 MB
+
+    private final long[] bits;
+
+    private BloomFilter(long[] bits) {
+        this.bits = bits;
+    }
+
+    public static BloomFilter of(Collection<String> elements) {
+        long size = Math.max(MIN_BITS, Math.min(MAX_BITS, (long) elements.size() * BITS_PER_ELEMENT));
+        BloomFilter filter = new BloomFilter(new long[(int) ((size + 63) / 64)]);
+        for(String element : elements) {
+            filter.add(element);
+        }
+        return filter;
+    }
+
+    public static BloomFilter fromBase64(String encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(encoded));
+        long[] bits = new long[buffer.remaining() / 8];
+        buffer.asLongBuffer().get(bits);
+        return new BloomFilter(bits);
+    }
+
+    public String toBase64() {
+        ByteBuffer buffer = ByteBuffer.allocate(bits.length * 8);
+        buffer.asLongBuffer().put(bits);
+        return Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    public void add(String element) {
+        final long bitCount = (long) bits.length * 64;
+        final int h1 = element.hashCode();
+        final int h2 = mix(h1);
+        for(int i = 0; i < HASH_COUNT; i++) {
+            long index = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    public boolean mightContain(String element) {
+        final long bitCount = (long) bits.length * 64;
+        final int h1 = element.hashCode();
+        final int h2 = mix(h1);
+        for(int i = 0; i < HASH_COUNT; i++) {
+            long index = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if((bits[(int) (index >>> 6)] & (1L << index)) == 0) return false;
+        }
+        return true;
+    }
+
+    // murmur3 finalizer, used as the second hash for double hashing
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
@@ -0,0 +1,114 @@
+package net.opanel.utils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * Standard 5-field cron expression: minute hour day-of-month month day-of-week.
+ * Supports `*`, lists `1,2`, ranges `1-5` and steps `*&#47;15` or `0-30/10`. Sunday is 0 or 7.
+ * As in the standard cron, if both day fields are restricted, a day matching either of them matches.
+ */
+public class CronExpression {
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean daysOfMonthRestricted;
+    private final boolean daysOfWeekRestricted;
+
+    public CronExpression(String expression) {
+        if(expression == null) throw new IllegalArgumentException("Cron expression cannot be null.");
+        final String[] fields = expression.trim().split("\\s+");
+        if(fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression must have 5 fields: "+ expression);
+        }
+        this.expression = expression.trim();
+        minutes = parseField(fields[0], 0, 59);
+        hours = parseField(fields[1], 0, 23);
+        daysOfMonth = parseField(fields[2], 1, 31);
+        months = parseField(fields[3], 1, 12);
+        daysOfWeek = parseField(fields[4], 0, 7);
+        if(daysOfWeek.get(7)) daysOfWeek.set(0);
+        daysOfMonthRestricted = !fields[2].equals("*");
+        daysOfWeekRestricted = !fields[4].equals("*");
+    }
+
+    public boolean matches(LocalDateTime time) {
+        return minutes.get(time.getMinute()) && hours.get(time.getHour()) && matchesDay(time);
+    }
+
+    // The first matched minute after the given time, or null if not found in 4 years
+    public LocalDateTime next(LocalDateTime after) {
+        LocalDateTime time = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        final LocalDateTime limit = after.plusYears(4);
+        while(time.isBefore(limit)) {
+            if(!matchesDay(time)) {
+                time = time.toLocalDate().plusDays(1).atStartOfDay();
+                continue;
+            }
+            if(!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                continue;
+            }
+            if(minutes.get(time.getMinute())) return time;
+            time = time.plusMinutes(1);
+        }
+        return null;
+    }
+
+    private boolean matchesDay(LocalDateTime time) {
+        if(!months.get(time.getMonthValue())) return false;
+        final boolean dayOfMonth = daysOfMonth.get(time.getDayOfMonth());
+        final boolean dayOfWeek = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        if(daysOfMonthRestricted && daysOfWeekRestricted) return dayOfMonth || dayOfWeek;
+        return dayOfMonth && dayOfWeek;
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        final BitSet bits = new BitSet(max + 1);
+        for(String part : field.split(",")) {
+            int step = 1;
+            final int slash = part.indexOf('/');
+            if(slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max);
+                part = part.substring(0, slash);
+            }
+
+            int from, to;
+            if(part.equals("*")) {
+                from = min;
+                to = max;
+            } else if(part.contains("-")) {
+                final String[] range = part.split("-", 2);
+                from = parseNumber(range[0], min, max);
+                to = parseNumber(range[1], min, max);
+                if(from > to) throw new IllegalArgumentException("Illegal range in cron expression: "+ part);
+            } else {
+                from = parseNumber(part, min, max);
+                to = slash >= 0 ? max : from;
+            }
+            for(int i = from; i <= to; i += step) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    private static int parseNumber(String str, int min, int max) {
+        try {
+            final int value = Integer.parseInt(str);
+            if(value < min || value > max) throw new IllegalArgumentException("Value out of range in cron expression: "+ str);
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal number in cron expression: "+ str);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,249 @@
+package net.opanel.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zip folders with multiple threads.
+ * Files are compressed concurrently on a bounded pool, and written to the archive in order by the calling thread.
+ * The pool is shared by all archives, so concurrent backups and downloads never use more threads than the cores.
+ */
+public class ParallelArchiver {
+    public static final int DEFAULT_LEVEL = 6;
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    // Files larger than this are compressed by the writer thread to keep the memory bounded
+    private static final long IN_MEMORY_LIMIT = 8L * 1024 * 1024; // 8 MB
+    private static final long MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024; // 64 MB
+    // These files are already compressed, deflating them again only wastes CPU
+    private static final String[] STORED_EXTENSIONS = {".mca", ".mcc", ".dat", ".dat_old", ".nbt", ".gz", ".zip", ".png"};
+    private static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+    // Low priority to leave the server thread alone
+    private static final ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE, runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Archiver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final int level;
+    private final int threads;
+
+    public static class Stats {
+        public int files;
+        public long bytesIn;
+        public long bytesOut;
+        public long elapsedMillis;
+
+        // MB/s of the source files
+        public double getThroughput() {
+            if(elapsedMillis <= 0) return 0;
+            return (bytesIn / 1024.0 / 1024.0) / (elapsedMillis / 1000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files, %.1f MB -> %.1f MB in %.1f s (%.1f MB/s)",
+                    files, bytesIn / 1024.0 / 1024.0, bytesOut / 1024.0 / 1024.0, elapsedMillis / 1000.0, getThroughput());
+        }
+    }
+
+    // A folder to be put into the archive under the given path
+    public record Source(Path dirPath, String archivePath) { }
+
+    private record Item(Path path, String entryName, long size, long lastModified) { }
+
+    private static class Prepared {
+        Item item;
+        boolean stored;
+        boolean inline; // to be compressed by the writer thread
+        long crc;
+        byte[] data;
+        int length;
+    }
+
+    public ParallelArchiver() {
+        this(DEFAULT_LEVEL, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param level 0-9, 0 for storing all files without compression
+     * @param threads number of files compressed at the same time, at most the size of the shared pool
+     */
+    public ParallelArchiver(int level, int threads) {
+        this.level = Math.max(Deflater.NO_COMPRESSION, Math.min(level, Deflater.BEST_COMPRESSION));
+        this.threads = Math.max(1, Math.min(threads, POOL_SIZE));
+    }
+
+    public Stats archive(Path sourceDirPath, OutputStream os) throws IOException {
+        return archive(List.of(new Source(sourceDirPath, sourceDirPath.getFileName().toString())), os);
+    }
+
+    /**
+     * Write the zip of the folders into the given stream, the stream is not closed.
+     * The zip is only finished when all files are added successfully.
+     * If an entry name appears in more than one source, the first one wins.
+     */
+    public Stats archive(List<Source> sources, OutputStream os) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final List<Item> items = new ArrayList<>();
+        final Set<String> entryNames = new HashSet<>();
+        for(Source source : sources) {
+            if(!Files.isDirectory(source.dirPath)) {
+                throw new IOException("Cannot find the source directory: "+ source.dirPath);
+            }
+            for(Item item : listFiles(source.dirPath, source.archivePath)) {
+                if(entryNames.add(item.entryName)) items.add(item);
+            }
+        }
+        final Stats stats = new Stats();
+        final ArrayDeque<Future<Prepared>> window = new ArrayDeque<>();
+
+        try {
+            final ZipArchiveWriter writer = new ZipArchiveWriter(os);
+            final Iterator<Item> iterator = items.iterator();
+            long inFlightBytes = 0;
+
+            while(iterator.hasNext() || !window.isEmpty()) {
+                // Keep the pool busy, but don't let the compressed data pile up in memory
+                while(iterator.hasNext() && window.size() < threads * 2 && (window.isEmpty() || inFlightBytes < MAX_IN_FLIGHT_BYTES)) {
+                    final Item item = iterator.next();
+                    if(!isStored(item) && item.size <= IN_MEMORY_LIMIT) inFlightBytes += item.size;
+                    window.add(pool.submit(() -> prepare(item)));
+                }
+
+                final Prepared prepared = await(window.poll());
+                final Item item = prepared.item;
+                if(prepared.stored) {
+                    writer.putStoredEntry(item.entryName, item.lastModified, item.path, item.size, prepared.crc);
+                } else if(prepared.inline) {
+                    try(InputStream is = new FileInputStream(item.path.toFile())) {
+                        writer.putDeflatedEntry(item.entryName, item.lastModified, is, level);
+                    }
+                } else {
+                    writer.putDeflatedEntry(item.entryName, item.lastModified, prepared.data, prepared.length, item.size, prepared.crc);
+                    inFlightBytes -= item.size;
+                }
+                stats.files++;
+                stats.bytesIn += item.size;
+            }
+
+            writer.finish();
+            stats.bytesOut = writer.getBytesWritten();
+        } finally {
+            // Don't leave the rest of a failed archive in the shared pool
+            for(Future<Prepared> future : window) future.cancel(true);
+        }
+
+        stats.elapsedMillis = System.currentTimeMillis() - startTime;
+        return stats;
+    }
+
+    private static List<Item> listFiles(Path sourceDirPath, String archivePath) throws IOException {
+        final List<Item> items = new ArrayList<>();
+        Files.walkFileTree(sourceDirPath, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                // this file can be inaccessible when another thread or program is using the folder
+                // so just simply skip it...
+                if(file.getFileName().toString().endsWith("session.lock")) return FileVisitResult.CONTINUE;
+                if(!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+
+                final String relative = sourceDirPath.relativize(file).toString().replace(File.separatorChar, '/');
+                items.add(new Item(file, archivePath +"/"+ relative, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return items;
+    }
+
+    private boolean isStored(Item item) {
+        if(level == Deflater.NO_COMPRESSION) return true;
+        final String name = item.path.getFileName().toString();
+        for(String extension : STORED_EXTENSIONS) {
+            if(name.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    private Prepared prepare(Item item) throws IOException {
+        final Prepared prepared = new Prepared();
+        prepared.item = item;
+        if(isStored(item)) {
+            prepared.stored = true;
+            prepared.crc = computeCrc(item.path, item.size);
+            return prepared;
+        }
+        if(item.size > IN_MEMORY_LIMIT) {
+            prepared.inline = true;
+            return prepared;
+        }
+
+        final byte[] input = new byte[(int) item.size];
+        readFully(item.path, input);
+        final CRC32 crc = new CRC32();
+        crc.update(input);
+
+        final Deflater deflater = new Deflater(level, true);
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while(!deflater.finished()) {
+                bos.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        prepared.crc = crc.getValue();
+        prepared.data = bos.toByteArray();
+        prepared.length = prepared.data.length;
+        return prepared;
+    }
+
+    // Only the first `size` bytes are counted, in case the file is growing while archiving
+    private static long computeCrc(Path path, long size) throws IOException {
+        final CRC32 crc = new CRC32();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long remaining = size;
+            while(remaining > 0) {
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, remaining));
+                final int read = channel.read(buffer);
+                if(read < 0) throw new IOException("File is truncated while archiving: "+ path);
+                buffer.flip();
+                crc.update(buffer);
+                remaining -= read;
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void readFully(Path path, byte[] bytes) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer) < 0) throw new IOException("File is truncated while archiving: "+ path);
+            }
+        }
+    }
+
+    private static Prepared await(Future<Prepared> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Archiving is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException ioe) throw ioe;
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package net.opanel.utils;
+
+import net.opanel.OPanel;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extract an uploaded save zip in one pass while it is being received.
+ *
+ * The zip may contain the save files at its root or inside a folder, which is detected by the shallowest `level.dat`.
+ * Everything is extracted into a staging folder first, and the folder containing `level.dat` is renamed to the target,
+ * so the target either appears complete or not at all.
+ */
+public class SaveExtractor {
+    private static final Path STAGING_DIR_PATH = OPanel.TMP_DIR_PATH.resolve("upload");
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    // Small entries are not checked by the ratio, an empty region file can be compressed a lot
+    private static final long RATIO_MIN_BYTES = 1024 * 1024; // 1 MB
+
+    public static class Limits {
+        public long maxTotalBytes = 256L * 1024 * 1024 * 1024; // 256 GB
+        public int maxEntries = 1_000_000;
+        public double maxCompressionRatio = 100;
+    }
+
+    public static class InvalidSaveException extends IOException {
+        public InvalidSaveException(String message) {
+            super(message);
+        }
+    }
+
+    public static class Result {
+        public int files;
+        public long bytes;
+    }
+
+    /**
+     * Get the save name from the name of the uploaded zip file
+     * @return null if it is not a zip file or not a valid folder name
+     */
+    public static String getSaveName(String fileName) {
+        if(fileName == null || !fileName.endsWith(".zip")) return null;
+        final String saveName = fileName.substring(0, fileName.length() - ".zip".length());
+        if(saveName.isEmpty() || saveName.contains("/") || saveName.contains("\\") || saveName.contains("..")) return null;
+        return saveName;
+    }
+
+    public static Result extract(InputStream is, Path targetPath) throws IOException {
+        return extract(is, targetPath, new Limits());
+    }
+
+    /**
+     * @throws ZipException if the zip is illegal, such as a zip slip or a zip bomb
+     * @throws InvalidSaveException if there is no `level.dat` in the zip
+     * @throws FileAlreadyExistsException if the target exists
+     */
+    public static Result extract(InputStream is, Path targetPath, Limits limits) throws IOException {
+        if(Files.exists(targetPath)) {
+            throw new FileAlreadyExistsException(targetPath.toString());
+        }
+
+        final Path stagingPath = STAGING_DIR_PATH.resolve(UUID.randomUUID().toString()).toAbsolutePath().normalize();
+        Files.createDirectories(stagingPath);
+        try {
+            // Don't fill up the disk
+            final long maxTotalBytes = Math.min(limits.maxTotalBytes, Files.getFileStore(stagingPath).getUsableSpace());
+            final Result result = new Result();
+            final CountingInputStream cis = new CountingInputStream(new BufferedInputStream(is, BUFFER_SIZE));
+            String rootPrefix = null;
+
+            try(ZipInputStream zin = new ZipInputStream(cis)) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                ZipEntry entry;
+                while((entry = zin.getNextEntry()) != null) {
+                    if(++result.files > limits.maxEntries) {
+                        throw new ZipException("Too many entries in the zip.");
+                    }
+
+                    final Path filePath = stagingPath.resolve(entry.getName()).normalize();
+                    if(!filePath.startsWith(stagingPath) || filePath.equals(stagingPath)) {
+                        throw new ZipException("Zip slip detected.");
+                    }
+                    if(entry.isDirectory()) {
+                        Files.createDirectories(filePath);
+                        continue;
+                    }
+
+                    final String relative = stagingPath.relativize(filePath).toString().replace(File.separatorChar, '/');
+                    if(filePath.getFileName().toString().equals("level.dat")) {
+                        final String prefix = relative.substring(0, relative.length() - "level.dat".length());
+                        if(rootPrefix == null || getDepth(prefix) < getDepth(rootPrefix)) {
+                            rootPrefix = prefix;
+                        }
+                    }
+
+                    Files.createDirectories(filePath.getParent());
+                    final long entryStart = cis.count;
+                    long entrySize = 0;
+                    try(OutputStream os = Files.newOutputStream(filePath)) {
+                        int read;
+                        while((read = zin.read(buffer)) != -1) {
+                            os.write(buffer, 0, read);
+                            entrySize += read;
+                            result.bytes += read;
+                            if(result.bytes > maxTotalBytes) {
+                                throw new ZipException("The zip is too large to be extracted.");
+                            }
+                            if(entrySize > RATIO_MIN_BYTES && entrySize > limits.maxCompressionRatio * (cis.count - entryStart + 1)) {
+                                throw new ZipException("Suspicious compression ratio of "+ entry.getName());
+                            }
+                        }
+                    }
+                    zin.closeEntry();
+                }
+            }
+
+            if(rootPrefix == null) {
+                throw new InvalidSaveException("Cannot find level.dat in the zip.");
+            }
+            moveDirectory(rootPrefix.isEmpty() ? stagingPath : stagingPath.resolve(rootPrefix), targetPath);
+            return result;
+        } finally {
+            if(Files.exists(stagingPath)) Utils.deleteDirectoryRecursively(stagingPath);
+        }
+    }
+
+    private static int getDepth(String prefix) {
+        return (int) prefix.chars().filter(c -> c == '/').count();
+    }
+
+    private static void moveDirectory(Path sourcePath, Path targetPath) throws IOException {
+        try {
+            Files.move(sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // The server folder is on another filesystem, the target is not visible until the copy is done
+            final Path tmpTargetPath = targetPath.resolveSibling(targetPath.getFileName() +".uploading");
+            Utils.copyDirectoryRecursively(sourcePath, tmpTargetPath);
+            Files.move(tmpTargetPath, targetPath);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream is) {
+            super(is);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            if(b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = in.read(b, off, len);
+            if(read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
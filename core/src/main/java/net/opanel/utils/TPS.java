@@ -5,10 +5,31 @@ public class TPS {
     private static final long PAUSE_THRESHOLD_NS = 2_000_000_000L; // 2s
     private static final long[] tickTimes = new long[TICK_LIST_SIZE];
     private static volatile int tickIndex = 0;
+    private static volatile long tickCount = 0;
 
     public static synchronized void onTick() {
         tickTimes[tickIndex] = System.nanoTime();
         tickIndex = (tickIndex + 1) % TICK_LIST_SIZE;
+        tickCount++;
+    }
+
+    public static long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Wait until the server has run the given number of ticks,
+     * so that the tasks scheduled to the main thread before are done.
+     * @return false if timed out
+     */
+    public static boolean awaitTicks(int ticks, long timeoutMs) throws InterruptedException {
+        final long target = tickCount + ticks;
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        while(tickCount < target) {
+            if(System.currentTimeMillis() >= deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
     }
 
     public static synchronized double getRecentMSPT() {
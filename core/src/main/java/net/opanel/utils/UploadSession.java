@@ -0,0 +1,221 @@
+package net.opanel.utils;
+
+import net.opanel.OPanel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A resumable upload of a large file, which is received in chunks at arbitrary offsets.
+ * Chunks are written into the part file with positional writes, so they can arrive in any order
+ * and in parallel, and a failed chunk only needs to be sent again.
+ */
+public class UploadSession {
+    private static final Path UPLOADS_DIR_PATH = OPanel.TMP_DIR_PATH.resolve("chunked");
+    private static final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    public static final long CHUNK_SIZE = 8L * 1024 * 1024; // 8 MB, recommended to clients
+    public static final long MAX_CHUNK_SIZE = 64L * 1024 * 1024; // 64 MB
+    private static final long EXPIRE_MS = 24 * 60 * 60 * 1000L; // 24 hours since the last chunk
+
+    public static class ChecksumException extends IOException {
+        public ChecksumException(String message) {
+            super(message);
+        }
+    }
+
+    private final String id;
+    private final String fileName;
+    private final long size;
+    private final Path partPath;
+    private final FileChannel channel;
+    // start -> end (exclusive), merged and not overlapping
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    private int activeWrites = 0;
+    private boolean closed = false;
+    private volatile long lastActive;
+
+    private UploadSession(String id, String fileName, long size) throws IOException {
+        this.id = id;
+        this.fileName = fileName;
+        this.size = size;
+        Files.createDirectories(UPLOADS_DIR_PATH);
+        partPath = UPLOADS_DIR_PATH.resolve(id +".part");
+        channel = FileChannel.open(partPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        lastActive = System.currentTimeMillis();
+    }
+
+    public static UploadSession create(String fileName, long size) throws IOException {
+        removeExpired();
+        Files.createDirectories(UPLOADS_DIR_PATH);
+        if(size > Files.getFileStore(UPLOADS_DIR_PATH).getUsableSpace()) {
+            throw new IOException("Not enough disk space for the upload.");
+        }
+        final UploadSession session = new UploadSession(UUID.randomUUID().toString(), fileName, size);
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    public static UploadSession get(String id) {
+        final UploadSession session = sessions.get(id);
+        if(session != null && session.isExpired()) {
+            remove(id);
+            return null;
+        }
+        return session;
+    }
+
+    public static void remove(String id) {
+        final UploadSession session = sessions.remove(id);
+        if(session != null) session.close();
+    }
+
+    private static void removeExpired() {
+        for(UploadSession session : sessions.values()) {
+            if(session.isExpired()) remove(session.id);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Path getPartPath() {
+        return partPath;
+    }
+
+    /**
+     * Write a chunk at the given offset. The range is only marked as received when the checksum matches,
+     * otherwise the client should send the chunk again, and the bytes written are overwritten.
+     * @param crc32 the CRC32 of the chunk in hex, null to skip the check
+     */
+    public void writeChunk(InputStream is, long offset, long length, String crc32) throws IOException {
+        if(offset < 0 || length <= 0 || length > MAX_CHUNK_SIZE || offset + length > size) {
+            throw new IllegalArgumentException("Invalid chunk range.");
+        }
+        synchronized(this) {
+            if(closed) throw new IllegalStateException("The upload is closed.");
+            activeWrites++;
+        }
+
+        try {
+            final CRC32 crc = new CRC32();
+            final byte[] bytes = new byte[BUFFER_SIZE];
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long position = offset;
+            final long end = offset + length;
+            while(position < end) {
+                final int read = is.read(bytes, 0, (int) Math.min(BUFFER_SIZE, end - position));
+                if(read == -1) throw new IOException("The chunk is incomplete.");
+                crc.update(bytes, 0, read);
+                buffer.clear().limit(read);
+                while(buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+            if(is.read() != -1) throw new IllegalArgumentException("The chunk is larger than its declared length.");
+            if(crc32 != null && !crc32.equalsIgnoreCase(Long.toHexString(crc.getValue()))) {
+                throw new ChecksumException("Checksum mismatch of the chunk at "+ offset);
+            }
+
+            synchronized(this) {
+                addRange(offset, end);
+            }
+        } finally {
+            synchronized(this) {
+                activeWrites--;
+            }
+            lastActive = System.currentTimeMillis();
+        }
+    }
+
+    private void addRange(long start, long end) {
+        // Merge with the ranges overlapping or touching the new one
+        final Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if(floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    // Received ranges as [start, end) pairs
+    public synchronized List<long[]> getReceivedRanges() {
+        final List<long[]> list = new ArrayList<>();
+        ranges.forEach((start, end) -> list.add(new long[]{start, end}));
+        return list;
+    }
+
+    public synchronized long getReceivedBytes() {
+        long total = 0;
+        for(Map.Entry<Long, Long> entry : ranges.entrySet()) {
+            total += entry.getValue() - entry.getKey();
+        }
+        return total;
+    }
+
+    public synchronized boolean isComplete() {
+        if(size == 0) return true;
+        final Map.Entry<Long, Long> first = ranges.firstEntry();
+        return first != null && first.getKey() == 0 && first.getValue() == size;
+    }
+
+    /**
+     * Stop accepting chunks and flush the part file, so it can be read as a whole.
+     * @throws IllegalStateException if the upload is not complete or chunks are still being written
+     */
+    public synchronized void finish() throws IOException {
+        if(closed) throw new IllegalStateException("The upload is closed.");
+        if(activeWrites > 0 || !isComplete()) throw new IllegalStateException("The upload is not complete.");
+        closed = true;
+        channel.force(false);
+        channel.close();
+    }
+
+    private boolean isExpired() {
+        return System.currentTimeMillis() - lastActive > EXPIRE_MS;
+    }
+
+    private synchronized void close() {
+        closed = true;
+        try {
+            if(channel.isOpen()) channel.close();
+            Files.deleteIfExists(partPath);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public HashMap<String, Object> toJson() {
+        HashMap<String, Object> obj = new HashMap<>();
+        obj.put("id", id);
+        obj.put("fileName", fileName);
+        obj.put("size", size);
+        obj.put("chunkSize", CHUNK_SIZE);
+        obj.put("maxChunkSize", MAX_CHUNK_SIZE);
+        obj.put("received", getReceivedRanges());
+        obj.put("receivedBytes", getReceivedBytes());
+        return obj;
+    }
+}
@@ -0,0 +1,289 @@
+package net.opanel.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A minimal zip writer that accepts entries which are already compressed,
+ * so that the compression can be done by other threads.
+ * ZIP64 is written when the sizes, offsets or the number of entries exceed the classic zip limits.
+ *
+ * @see <a href="https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT">APPNOTE.TXT</a>
+ */
+public class ZipArchiveWriter implements Closeable {
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    private final CountingOutputStream out;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private boolean finished = false;
+
+    private static class CentralEntry {
+        byte[] name;
+        int flags;
+        int method;
+        long dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        long offset;
+    }
+
+    public ZipArchiveWriter(OutputStream os) {
+        out = new CountingOutputStream(new BufferedOutputStream(os, BUFFER_SIZE));
+    }
+
+    public long getBytesWritten() {
+        return out.count;
+    }
+
+    // Copy the first `size` bytes of the file without compression, the crc must be computed in advance
+    public void putStoredEntry(String name, long lastModified, Path filePath, long size, long crc) throws IOException {
+        CentralEntry entry = createEntry(name, lastModified, METHOD_STORED, 0);
+        entry.crc = crc;
+        entry.size = size;
+        entry.compressedSize = size;
+        writeLocalHeader(entry);
+
+        try(FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            long remaining = size;
+            while(remaining > 0) {
+                byteBuffer.clear().limit((int) Math.min(buffer.length, remaining));
+                final int read = channel.read(byteBuffer);
+                if(read < 0) throw new IOException("File is truncated while archiving: "+ filePath);
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    // Write raw deflate data that has been compressed with `new Deflater(level, true)`
+    public void putDeflatedEntry(String name, long lastModified, byte[] data, int length, long size, long crc) throws IOException {
+        CentralEntry entry = createEntry(name, lastModified, METHOD_DEFLATED, 0);
+        entry.crc = crc;
+        entry.size = size;
+        entry.compressedSize = length;
+        writeLocalHeader(entry);
+        out.write(data, 0, length);
+    }
+
+    // Compress the file on the current thread, the sizes and crc are written in a data descriptor afterwards
+    public void putDeflatedEntry(String name, long lastModified, InputStream is, int level) throws IOException {
+        CentralEntry entry = createEntry(name, lastModified, METHOD_DEFLATED, FLAG_DATA_DESCRIPTOR);
+        writeLocalHeader(entry);
+
+        final long start = out.count;
+        final CRC32 crc = new CRC32();
+        final Deflater deflater = new Deflater(level, true);
+        final byte[] output = new byte[BUFFER_SIZE];
+        try {
+            int read;
+            while((read = is.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                entry.size += read;
+                deflater.setInput(buffer, 0, read);
+                while(!deflater.needsInput()) {
+                    out.write(output, 0, deflater.deflate(output));
+                }
+            }
+            deflater.finish();
+            while(!deflater.finished()) {
+                out.write(output, 0, deflater.deflate(output));
+            }
+        } finally {
+            deflater.end();
+        }
+        entry.crc = crc.getValue();
+        entry.compressedSize = out.count - start;
+
+        // Data descriptor
+        writeInt(0x08074b50L);
+        writeInt(entry.crc);
+        if(entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC) {
+            writeLong(entry.compressedSize);
+            writeLong(entry.size);
+        } else {
+            writeInt(entry.compressedSize);
+            writeInt(entry.size);
+        }
+    }
+
+    public void finish() throws IOException {
+        if(finished) return;
+        finished = true;
+
+        final long centralStart = out.count;
+        for(CentralEntry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        final long centralSize = out.count - centralStart;
+
+        if(entries.size() >= ZIP64_MAGIC_COUNT || centralStart >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC) {
+            final long zip64EndStart = out.count;
+            // Zip64 end of central directory record
+            writeInt(0x06064b50L);
+            writeLong(44);
+            writeShort(45);
+            writeShort(45);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(centralSize);
+            writeLong(centralStart);
+            // Zip64 end of central directory locator
+            writeInt(0x07064b50L);
+            writeInt(0);
+            writeLong(zip64EndStart);
+            writeInt(1);
+        }
+
+        // End of central directory record
+        writeInt(0x06054b50L);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(centralSize, ZIP64_MAGIC));
+        writeInt(Math.min(centralStart, ZIP64_MAGIC));
+        writeShort(0);
+        out.flush();
+    }
+
+    // Finish the archive, but leave the underlying stream open
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private CentralEntry createEntry(String name, long lastModified, int method, int flags) {
+        CentralEntry entry = new CentralEntry();
+        entry.name = name.getBytes(StandardCharsets.UTF_8);
+        entry.flags = flags | FLAG_UTF8;
+        entry.method = method;
+        entry.dosTime = toDosTime(lastModified);
+        entry.offset = out.count;
+        entries.add(entry);
+        return entry;
+    }
+
+    private void writeLocalHeader(CentralEntry entry) throws IOException {
+        final boolean isZip64 = entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+        writeInt(0x04034b50L);
+        writeShort(isZip64 ? 45 : 20);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(isZip64 ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(isZip64 ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.name.length);
+        writeShort(isZip64 ? 20 : 0);
+        out.write(entry.name);
+        if(isZip64) {
+            writeShort(0x0001);
+            writeShort(16);
+            writeLong(entry.size);
+            writeLong(entry.compressedSize);
+        }
+    }
+
+    private void writeCentralHeader(CentralEntry entry) throws IOException {
+        final boolean sizeOverflow = entry.size >= ZIP64_MAGIC;
+        final boolean compressedSizeOverflow = entry.compressedSize >= ZIP64_MAGIC;
+        final boolean offsetOverflow = entry.offset >= ZIP64_MAGIC;
+        final int extraLength = (sizeOverflow ? 8 : 0) + (compressedSizeOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+        final boolean isZip64 = extraLength > 0;
+
+        writeInt(0x02014b50L);
+        writeShort(45);
+        writeShort(isZip64 ? 45 : 20);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(compressedSizeOverflow ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(sizeOverflow ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.name.length);
+        writeShort(isZip64 ? extraLength + 4 : 0);
+        writeShort(0); // comment length
+        writeShort(0); // disk number
+        writeShort(0); // internal attributes
+        writeInt(0); // external attributes
+        writeInt(offsetOverflow ? ZIP64_MAGIC : entry.offset);
+        out.write(entry.name);
+        if(isZip64) {
+            writeShort(0x0001);
+            writeShort(extraLength);
+            if(sizeOverflow) writeLong(entry.size);
+            if(compressedSizeOverflow) writeLong(entry.compressedSize);
+            if(offsetOverflow) writeLong(entry.offset);
+        }
+    }
+
+    private static long toDosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if(time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16); // 1980-01-01
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | ((long) time.getSecond() >> 1);
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >>> 8) & 0xff);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xffff));
+        writeShort((int) ((value >>> 16) & 0xffff));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt(value & 0xffffffffL);
+        writeInt(value >>> 32);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream os) {
+            super(os);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
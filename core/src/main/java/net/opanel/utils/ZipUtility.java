@@ -2,6 +2,7 @@ package net.opanel.utils;
 
 import java.io.*;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.zip.*;
 
 public class ZipUtility {
@@ -13,38 +14,26 @@ public class ZipUtility {
             throw new IOException("Cannot find the source directory.");
         }
 
-        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipPath.toString()))) {
-            addFolderToZos(sourceDir, sourceDir.getName(), zos);
+        try(FileOutputStream fos = new FileOutputStream(zipPath.toString())) {
+            zip(sourceDirPath, fos);
         }
     }
 
-    // for recursively calling
-    private static void addFolderToZos(File folder, String parentDirName, ZipOutputStream zos) throws IOException {
-        if(!folder.exists()) {
-            throw new IOException("Folder not found: "+ folder.getPath());
-        }
+    /**
+     * Write the zip directly into the given stream, so that no temp file or in-memory copy is needed.
+     * The stream is not closed, and the zip is only finished when all files are added successfully.
+     */
+    public static ParallelArchiver.Stats zip(Path sourceDirPath, OutputStream os) throws IOException {
+        return zip(sourceDirPath, os, ParallelArchiver.DEFAULT_LEVEL);
+    }
 
-        for(File item : folder.listFiles()) {
-            // this file can be inaccessible when another thread or program is using the folder
-            // so just simply skip it...
-            if(item.getName().endsWith("session.lock")) continue;
-            if(item.isDirectory()) {
-                addFolderToZos(item, parentDirName +"/"+ item.getName(), zos);
-            } else {
-                final String entryName = parentDirName +"/"+ item.getName();
-                ZipEntry entry = new ZipEntry(entryName);
-                zos.putNextEntry(entry);
+    public static ParallelArchiver.Stats zip(Path sourceDirPath, OutputStream os, int level) throws IOException {
+        return new ParallelArchiver(level, Runtime.getRuntime().availableProcessors()).archive(sourceDirPath, os);
+    }
 
-                try(FileInputStream fis = new FileInputStream(item)) {
-                    byte[] bytesIn = new byte[BUFFER_SIZE];
-                    int read;
-                    while((read = fis.read(bytesIn)) != -1) {
-                        zos.write(bytesIn, 0, read);
-                    }
-                }
-                zos.closeEntry();
-            }
-        }
+    // Zip several folders, each of them is put under its own path in the zip
+    public static ParallelArchiver.Stats zip(List<ParallelArchiver.Source> sources, OutputStream os, int level) throws IOException {
+        return new ParallelArchiver(level, Runtime.getRuntime().availableProcessors()).archive(sources, os);
     }
 
     public static void unzip(Path zipPath, Path targetDirPath) throws IOException, ZipException {
@@ -11,9 +11,18 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public abstract class BaseServlet extends HttpServlet {
+    private static final Pattern rangePattern = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+
     protected final OPanel plugin;
 
     public BaseServlet(OPanel plugin) {
@@ -81,6 +90,73 @@ public abstract class BaseServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Stream a file to the client without loading it into memory,
+     * with support for a single byte range (`Range: bytes=start-end`).
+     */
+    protected void sendFileResponse(HttpServletRequest req, HttpServletResponse res, Path filePath, String contentType, String contentEncoding) throws IOException {
+        if(res.isCommitted()) {
+            plugin.logger.warn("Response already committed, cannot send file response");
+            return;
+        }
+
+        try(FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            long start = 0;
+            long end = size - 1;
+
+            final String range = req.getHeader("Range");
+            Matcher matcher = range != null ? rangePattern.matcher(range.trim()) : null;
+            final boolean isPartial = matcher != null && matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty());
+            if(isPartial) {
+                try {
+                    if(matcher.group(1).isEmpty()) { // suffix range, e.g. bytes=-500
+                        start = Math.max(0, size - Long.parseLong(matcher.group(2)));
+                    } else {
+                        start = Long.parseLong(matcher.group(1));
+                        if(!matcher.group(2).isEmpty()) end = Math.min(end, Long.parseLong(matcher.group(2)));
+                    }
+                } catch (NumberFormatException e) {
+                    start = size; // treat as unsatisfiable
+                }
+                if(start >= size || start > end) {
+                    res.addHeader("X-Powered-By", "OPanel");
+                    res.setHeader("Content-Range", "bytes */"+ size);
+                    res.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+            }
+            final long length = size == 0 ? 0 : end - start + 1;
+
+            res.addHeader("X-Powered-By", "OPanel");
+            res.setHeader("Accept-Ranges", "bytes");
+            if(contentEncoding != null) res.setHeader("Content-Encoding", contentEncoding);
+            if(isPartial) {
+                res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                res.setHeader("Content-Range", "bytes "+ start +"-"+ end +"/"+ size);
+            } else {
+                res.setStatus(HttpServletResponse.SC_OK);
+            }
+            res.setContentType(contentType);
+            res.setContentLengthLong(length);
+
+            // Copied through one buffer, mapping the file instead would keep it locked on Windows
+            // for as long as the client downloads it
+            try(OutputStream os = res.getOutputStream()) {
+                final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                long position = start;
+                final long limit = start + length;
+                while(position < limit) {
+                    buffer.clear().limit((int) Math.min(BUFFER_SIZE, limit - position));
+                    final int read = channel.read(buffer, position);
+                    if(read <= 0) break; // the file is truncated while sending
+                    os.write(buffer.array(), 0, read);
+                    position += read;
+                }
+            }
+        }
+    }
+
     protected <T> T getRequestBody(HttpServletRequest req, Class<T> type) throws IOException {
         try (BufferedReader reader = req.getReader()) {
             StringBuilder requestBody = new StringBuilder();
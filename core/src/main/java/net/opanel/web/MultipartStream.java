@@ -0,0 +1,189 @@
+package net.opanel.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Read a multipart/form-data body part by part while it is being received,
+ * instead of letting the servlet container spool the whole upload to disk first.
+ */
+public class MultipartStream {
+    private static final int BUFFER_SIZE = 65536; // 64 KB
+    private static final int MAX_HEADER_SIZE = 8192;
+
+    private final InputStream is;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int start = 0;
+    private int end = 0;
+    private boolean eof = false;
+    private boolean inPart = true; // the preamble is skipped like a part
+    private boolean finished = false;
+
+    private String name;
+    private String fileName;
+
+    public MultipartStream(InputStream is, String boundary) {
+        this.is = is;
+        delimiter = ("\r\n--"+ boundary).getBytes(StandardCharsets.ISO_8859_1);
+        buffer = new byte[BUFFER_SIZE + delimiter.length];
+        // The first boundary has no leading CRLF, so add one to match it in the same way
+        buffer[end++] = '\r';
+        buffer[end++] = '\n';
+    }
+
+    public static String getBoundary(String contentType) {
+        if(contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) return null;
+        for(String param : contentType.split(";")) {
+            param = param.trim();
+            if(!param.toLowerCase(Locale.ROOT).startsWith("boundary=")) continue;
+            String boundary = param.substring("boundary=".length());
+            if(boundary.startsWith("\"") && boundary.endsWith("\"") && boundary.length() >= 2) {
+                boundary = boundary.substring(1, boundary.length() - 1);
+            }
+            return boundary.isEmpty() ? null : boundary;
+        }
+        return null;
+    }
+
+    /**
+     * Move to the next part, the rest of the current part is skipped.
+     * @return false if there are no more parts
+     */
+    public boolean nextPart() throws IOException {
+        if(finished) return false;
+        if(inPart) {
+            final InputStream partStream = getPartStream();
+            final byte[] skipBuffer = new byte[BUFFER_SIZE];
+            while(partStream.read(skipBuffer) != -1) { }
+        }
+
+        // After the delimiter, "--" means the end of the body
+        if(!ensure(2)) throw new IOException("Unexpected end of multipart body.");
+        if(buffer[start] == '-' && buffer[start + 1] == '-') {
+            finished = true;
+            return false;
+        }
+
+        name = null;
+        fileName = null;
+        readLine(); // the rest of the boundary line
+        int headerSize = 0;
+        String line;
+        while(!(line = readLine()).isEmpty()) {
+            headerSize += line.length();
+            if(headerSize > MAX_HEADER_SIZE) throw new IOException("Multipart header is too large.");
+            if(line.toLowerCase(Locale.ROOT).startsWith("content-disposition:")) {
+                name = getParam(line, "name");
+                fileName = getParam(line, "filename");
+            }
+        }
+        inPart = true;
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    // The body of the current part, ends before the next boundary
+    public InputStream getPartStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if(!inPart) return -1;
+                if(len == 0) return 0;
+                ensure(delimiter.length);
+
+                final int index = indexOfDelimiter();
+                int available;
+                if(index >= 0) {
+                    available = index - start;
+                    if(available == 0) {
+                        start += delimiter.length;
+                        inPart = false;
+                        return -1;
+                    }
+                } else {
+                    if(eof) throw new IOException("Unexpected end of multipart body.");
+                    // The end of buffer may be the beginning of the delimiter
+                    available = end - start - delimiter.length + 1;
+                }
+                final int length = Math.min(len, available);
+                System.arraycopy(buffer, start, b, off, length);
+                start += length;
+                return length;
+            }
+        };
+    }
+
+    private int indexOfDelimiter() {
+        final int last = end - delimiter.length;
+        outer:
+        for(int i = start; i <= last; i++) {
+            for(int j = 0; j < delimiter.length; j++) {
+                if(buffer[i + j] != delimiter[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // Make sure at least `size` bytes are in the buffer unless the stream ends
+    private boolean ensure(int size) throws IOException {
+        if(end - start >= size) return true;
+        if(start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        while(end - start < size && !eof) {
+            final int read = is.read(buffer, end, buffer.length - end);
+            if(read == -1) {
+                eof = true;
+            } else {
+                end += read;
+            }
+        }
+        return end - start >= size;
+    }
+
+    private String readLine() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        while(true) {
+            if(!ensure(1)) throw new IOException("Unexpected end of multipart body.");
+            final byte b = buffer[start++];
+            if(b == '\n') break;
+            if(b != '\r') sb.append((char) (b & 0xff));
+            if(sb.length() > MAX_HEADER_SIZE) throw new IOException("Multipart header is too large.");
+        }
+        // Header values are sent as UTF-8 by browsers
+        return new String(sb.toString().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    }
+
+    private static String getParam(String header, String key) {
+        for(String param : header.split(";")) {
+            param = param.trim();
+            final int index = param.indexOf('=');
+            if(index < 0 || !param.substring(0, index).trim().equalsIgnoreCase(key)) continue;
+            String value = param.substring(index + 1).trim();
+            if(value.startsWith("\"") && value.endsWith("\"") && value.length() >= 2) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return value;
+        }
+        return null;
+    }
+}
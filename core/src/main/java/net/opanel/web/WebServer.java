@@ -38,8 +38,8 @@ public class WebServer {
         // CORS configuration
         FilterHolder cors = new FilterHolder(new CrossOriginFilter());
         cors.setInitParameter(CrossOriginFilter.ALLOWED_ORIGINS_PARAM, "http://localhost:3001"); // for dev
-        cors.setInitParameter(CrossOriginFilter.ALLOWED_METHODS_PARAM, "GET,POST,DELETE,HEAD,OPTIONS");
-        cors.setInitParameter(CrossOriginFilter.ALLOWED_HEADERS_PARAM, "X-Requested-With,Content-Type,X-Credential-Token");
+        cors.setInitParameter(CrossOriginFilter.ALLOWED_METHODS_PARAM, "GET,POST,PUT,DELETE,HEAD,OPTIONS");
+        cors.setInitParameter(CrossOriginFilter.ALLOWED_HEADERS_PARAM, "X-Requested-With,Content-Type,X-Credential-Token,X-Chunk-Checksum");
         ctx.addFilter(cors, "/*", EnumSet.of(DispatcherType.REQUEST));
 
         // WebSocket
@@ -66,11 +66,16 @@ public class WebServer {
         ctx.addServlet(new ServletHolder(new ControlServlet(plugin)), ControlServlet.route);
         ctx.addServlet(new ServletHolder(new IconServlet(plugin)), IconServlet.route);
         ctx.addServlet(new ServletHolder(new SavesServlet(plugin)), SavesServlet.route);
+        ctx.addServlet(new ServletHolder(new UploadsServlet(plugin)), UploadsServlet.route);
         ctx.addServlet(new ServletHolder(new PlayersServlet(plugin)), PlayersServlet.route);
         ctx.addServlet(new ServletHolder(new WhitelistServlet(plugin)), WhitelistServlet.route);
         ctx.addServlet(new ServletHolder(new MonitorServlet(plugin)), MonitorServlet.route);
         ctx.addServlet(new ServletHolder(new GamerulesServlet(plugin)), GamerulesServlet.route);
         ctx.addServlet(new ServletHolder(new LogsServlet(plugin)), LogsServlet.route);
+        ctx.addServlet(new ServletHolder(new BackupsServlet(plugin)), BackupsServlet.route);
+        ctx.addServlet(new ServletHolder(new MapServlet(plugin)), MapServlet.route);
+        ctx.addServlet(new ServletHolder(new SessionsServlet(plugin)), SessionsServlet.route);
+        ctx.addServlet(new ServletHolder(new StatsServlet(plugin)), StatsServlet.route);
         // Frontend
         ctx.addServlet(new ServletHolder(new StaticFileServlet(plugin)), StaticFileServlet.route);
 
@@ -0,0 +1,129 @@
+package net.opanel.world;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map colors of the blocks seen from above, without biome tints.
+ * Blocks which are not listed are matched by their name, e.g. `*_planks`, and fall back to gray.
+ */
+public class BlockColors {
+    public static final int TRANSPARENT = 0;
+    public static final int WATER = 0xff3f76e4;
+    private static final int DEFAULT = 0xff8a8a8a;
+    private static final Set<String> AIR = Set.of("air", "cave_air", "void_air", "light", "barrier", "structure_void");
+    private static final Set<String> WATER_BLOCKS = Set.of("water", "bubble_column", "seagrass", "tall_seagrass", "kelp", "kelp_plant");
+    private static final Map<String, Integer> colors = new HashMap<>();
+    private static final Map<String, Integer> resolved = new ConcurrentHashMap<>();
+
+    // Checked in order, the first matching part of the name decides the color
+    private static final String[][] PATTERNS = {
+            {"leaves", "ff4a7a2a"}, {"log", "ff6b5132"}, {"wood", "ff6b5132"}, {"planks", "ffa2834f"},
+            {"wool", "ffdcdcdc"}, {"carpet", "ffdcdcdc"}, {"concrete", "ffa0a0a0"}, {"terracotta", "ff985e43"},
+            {"glass", "ffc0d8e0"}, {"ice", "ff91b3fe"}, {"snow", "fff8fefe"}, {"sandstone", "ffd8cb9b"},
+            {"sand", "ffdbd3a0"}, {"dirt", "ff866043"}, {"mud", "ff3c3a3d"}, {"grass", "ff5b8b32"},
+            {"fern", "ff5b8b32"}, {"flower", "ffd0c040"}, {"mushroom", "ff9a3020"}, {"coral", "ffd05080"},
+            {"copper", "ffc06c50"}, {"deepslate", "ff505055"}, {"blackstone", "ff2a2328"}, {"basalt", "ff515156"},
+            {"nether_brick", "ff2c1519"}, {"netherrack", "ff6f3534"}, {"end_stone", "ffdbde9e"}, {"purpur", "ffa77aa7"},
+            {"quartz", "ffebe5de"}, {"prismarine", "ff63a59a"}, {"brick", "ff966454"}, {"stone", "ff7d7d7d"},
+            {"cobble", "ff7a7a7a"}, {"ore", "ff7d7d7d"}, {"rail", "ff7a6a50"}, {"slab", "ff9a9a9a"}, {"stairs", "ff9a9a9a"},
+    };
+
+    static {
+        put("grass_block", 0xff5b8b32);
+        put("short_grass", 0xff5b8b32);
+        put("tall_grass", 0xff5b8b32);
+        put("dirt_path", 0xff947a41);
+        put("podzol", 0xff5b3d1c);
+        put("mycelium", 0xff6f6265);
+        put("farmland", 0xff6b4a2a);
+        put("gravel", 0xff857f7e);
+        put("clay", 0xffa0a7b3);
+        put("sand", 0xffdbd3a0);
+        put("red_sand", 0xffbe6621);
+        put("stone", 0xff7d7d7d);
+        put("granite", 0xff956755);
+        put("diorite", 0xffbcbcbc);
+        put("andesite", 0xff888888);
+        put("tuff", 0xff6c6d66);
+        put("calcite", 0xffdfe0dc);
+        put("bedrock", 0xff555555);
+        put("obsidian", 0xff0f0b19);
+        put("water", WATER);
+        put("lava", 0xffcf5b13);
+        put("ice", 0xff91b3fe);
+        put("packed_ice", 0xff8db4fa);
+        put("blue_ice", 0xff74a8fd);
+        put("snow", 0xfff8fefe);
+        put("snow_block", 0xfff8fefe);
+        put("powder_snow", 0xfff8fdfd);
+        put("moss_block", 0xff596e2d);
+        put("moss_carpet", 0xff596e2d);
+        put("vine", 0xff4a7a2a);
+        put("lily_pad", 0xff208030);
+        put("sugar_cane", 0xff94c065);
+        put("cactus", 0xff5a8a2a);
+        put("pumpkin", 0xffc67719);
+        put("melon", 0xff6f911f);
+        put("hay_block", 0xffa6881a);
+        put("soul_sand", 0xff513e32);
+        put("soul_soil", 0xff4b3a2f);
+        put("crimson_nylium", 0xff831f1f);
+        put("warped_nylium", 0xff2b7265);
+        put("nether_wart_block", 0xff730303);
+        put("warped_wart_block", 0xff167879);
+        put("glowstone", 0xffab8654);
+        put("magma_block", 0xff8e3f1f);
+        put("end_stone", 0xffdbde9e);
+        put("chorus_plant", 0xff5d395d);
+        put("chorus_flower", 0xff977a97);
+        put("torch", 0xffffd060);
+        put("iron_block", 0xffdcdcdc);
+        put("gold_block", 0xfff6d03d);
+        put("diamond_block", 0xff62ede4);
+        put("emerald_block", 0xff2ad25a);
+        put("redstone_block", 0xffaf1805);
+        put("lapis_block", 0xff1f438c);
+        put("coal_block", 0xff101010);
+        put("bookshelf", 0xff6b5132);
+        put("crafting_table", 0xff825f3a);
+        put("furnace", 0xff6e6e6e);
+        put("chest", 0xffa2712b);
+        put("tnt", 0xffd03020);
+    }
+
+    private static void put(String name, int color) {
+        colors.put(name, color);
+    }
+
+    // The name can be with or without the `minecraft:` namespace
+    public static int get(String name) {
+        return resolved.computeIfAbsent(name, BlockColors::resolve);
+    }
+
+    public static boolean isAir(String name) {
+        return AIR.contains(stripNamespace(name));
+    }
+
+    public static boolean isWater(String name) {
+        return WATER_BLOCKS.contains(stripNamespace(name));
+    }
+
+    private static int resolve(String name) {
+        final String path = stripNamespace(name);
+        if(AIR.contains(path)) return TRANSPARENT;
+        final Integer color = colors.get(path);
+        if(color != null) return color;
+        for(String[] pattern : PATTERNS) {
+            if(path.contains(pattern[0])) return Integer.parseUnsignedInt(pattern[1], 16);
+        }
+        return DEFAULT;
+    }
+
+    private static String stripNamespace(String name) {
+        final int index = name.indexOf(':');
+        return index < 0 ? name : name.substring(index + 1);
+    }
+}
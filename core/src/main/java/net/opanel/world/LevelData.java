@@ -0,0 +1,93 @@
+package net.opanel.world;
+
+import net.opanel.common.OPanelGameMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The metadata of a save read from its `level.dat`, shared by all platforms.
+ * Only the needed tags are read, and the result is cached until the file is changed.
+ */
+public class LevelData {
+    private static final Map<Path, LevelData> cache = new ConcurrentHashMap<>();
+    private static final String LEVEL_NAME = "Data.LevelName";
+    private static final String GAME_TYPE = "Data.GameType";
+    private static final String HARDCORE = "Data.hardcore";
+    private static final String VERSION_NAME = "Data.Version.Name";
+    private static final String DATA_VERSION = "Data.DataVersion";
+    private static final String SEED = "Data.WorldGenSettings.seed";
+    private static final String LEGACY_SEED = "Data.RandomSeed"; // before 1.16
+    private static final String LAST_PLAYED = "Data.LastPlayed";
+    private static final Set<String> PATHS = Set.of(LEVEL_NAME, GAME_TYPE, HARDCORE, VERSION_NAME, DATA_VERSION, SEED, LEGACY_SEED, LAST_PLAYED);
+
+    public String levelName = "world";
+    public int gameType = 0;
+    public boolean hardcore = false;
+    public String versionName;
+    public int dataVersion;
+    public long seed;
+    public long lastPlayed;
+
+    private transient long lastModified;
+    private transient long fileSize;
+
+    /**
+     * @param savePath the save folder
+     */
+    public static LevelData get(Path savePath) throws IOException {
+        final Path levelDatPath = savePath.resolve("level.dat").toAbsolutePath().normalize();
+        final BasicFileAttributes attrs = Files.readAttributes(levelDatPath, BasicFileAttributes.class);
+        final LevelData cached = cache.get(levelDatPath);
+        if(cached != null && cached.lastModified == attrs.lastModifiedTime().toMillis() && cached.fileSize == attrs.size()) {
+            return cached;
+        }
+
+        final LevelData data = read(levelDatPath);
+        data.lastModified = attrs.lastModifiedTime().toMillis();
+        data.fileSize = attrs.size();
+        cache.put(levelDatPath, data);
+        return data;
+    }
+
+    // Should be called after level.dat is written by OPanel, in case the modified time is not precise enough
+    public static void invalidate(Path savePath) {
+        cache.remove(savePath.resolve("level.dat").toAbsolutePath().normalize());
+    }
+
+    private static LevelData read(Path levelDatPath) throws IOException {
+        final Map<String, Object> values;
+        try(NbtReader reader = NbtReader.openCompressed(levelDatPath)) {
+            // SEED and LEGACY_SEED never appear together, so all of them are found one path short
+            values = reader.read(PATHS, PATHS.size() - 1);
+        }
+
+        final LevelData data = new LevelData();
+        if(values.get(LEVEL_NAME) instanceof String levelName) data.levelName = levelName;
+        if(values.get(GAME_TYPE) instanceof Number gameType) data.gameType = gameType.intValue();
+        if(values.get(HARDCORE) instanceof Number hardcore) data.hardcore = hardcore.intValue() != 0;
+        if(values.get(VERSION_NAME) instanceof String versionName) data.versionName = versionName;
+        if(values.get(DATA_VERSION) instanceof Number dataVersion) data.dataVersion = dataVersion.intValue();
+        if(values.get(SEED) instanceof Number seed) {
+            data.seed = seed.longValue();
+        } else if(values.get(LEGACY_SEED) instanceof Number seed) {
+            data.seed = seed.longValue();
+        }
+        if(values.get(LAST_PLAYED) instanceof Number lastPlayed) data.lastPlayed = lastPlayed.longValue();
+        return data;
+    }
+
+    public OPanelGameMode getGameMode() {
+        switch(gameType) {
+            case 1 -> { return OPanelGameMode.CREATIVE; }
+            case 2 -> { return OPanelGameMode.ADVENTURE; }
+            case 3 -> { return OPanelGameMode.SPECTATOR; }
+        }
+        return OPanelGameMode.SURVIVAL;
+    }
+}
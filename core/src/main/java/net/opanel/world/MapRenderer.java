@@ -0,0 +1,248 @@
+package net.opanel.world;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Render a region file into a top-down image, one pixel per block column.
+ * The color is the topmost visible block, shaded by the height difference to the north,
+ * and water is blended with the ground under it by its depth.
+ *
+ * Only palette-based chunks (1.13+) are rendered, the other chunks are left transparent.
+ */
+public class MapRenderer {
+    public static final int TILE_SIZE = 512; // blocks of a region
+    private static final int MAX_WATER_DEPTH = 12;
+    // Block states are no longer spread over two longs since 20w17a
+    private static final int DATA_VERSION_NO_SPANNING = 2529;
+    private static final Set<String> CHUNK_PATHS = Set.of("DataVersion", "sections", "Level.Sections");
+
+    public interface Throttle {
+        void await() throws IOException;
+    }
+
+    private static class Section {
+        int y;
+        int[] colors; // by palette index
+        boolean[] air;
+        boolean[] water;
+        short[] indices; // 4096 blocks in y, z, x order, null if the palette has only one entry
+    }
+
+    /**
+     * @param ceiling whether the dimension has a roof (the nether), the first open space under it is rendered
+     * @param throttle called before each chunk, it can wait for the server to catch up
+     * @return ARGB pixels in rows of z
+     */
+    public static int[] render(Path regionFile, boolean ceiling, Throttle throttle) throws IOException {
+        final int[] coords = RegionFile.parseRegionCoords(regionFile.getFileName().toString());
+        final int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+        final int[] heights = new int[TILE_SIZE * TILE_SIZE];
+        Arrays.fill(heights, Integer.MIN_VALUE);
+
+        try(FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if(fileSize < RegionFile.HEADER_SIZE) return pixels;
+            final ByteBuffer header = RegionFile.readFully(channel, 0, RegionFile.HEADER_SIZE);
+            for(RegionFile.ChunkLocation location : RegionFile.readLocations(header)) {
+                if(throttle != null) throttle.await();
+                final List<Section> sections;
+                try {
+                    sections = readSections(channel, fileSize, location, regionFile, coords[0] * 32 + location.getLocalX(), coords[1] * 32 + location.getLocalZ());
+                } catch (IOException e) {
+                    continue; // broken chunks are left transparent
+                }
+                if(sections != null) renderChunk(sections, location.getLocalX() * 16, location.getLocalZ() * 16, ceiling, pixels, heights);
+            }
+        }
+
+        // Shade after all chunks are drawn, so that the chunk borders are shaded as well
+        for(int z = TILE_SIZE - 1; z > 0; z--) {
+            for(int x = 0; x < TILE_SIZE; x++) {
+                final int i = z * TILE_SIZE + x;
+                final int north = heights[i - TILE_SIZE];
+                if(heights[i] == Integer.MIN_VALUE || north == Integer.MIN_VALUE || heights[i] == north) continue;
+                pixels[i] = shade(pixels[i], heights[i] > north ? 1.12 : 0.86);
+            }
+        }
+        return pixels;
+    }
+
+    public static byte[] encodePng(int[] pixels) throws IOException {
+        final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, TILE_SIZE, TILE_SIZE, pixels, 0, TILE_SIZE);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", os);
+        return os.toByteArray();
+    }
+
+    // @return the sections from the top, null if the chunk has no palette-based sections
+    @SuppressWarnings("unchecked")
+    private static List<Section> readSections(FileChannel channel, long fileSize, RegionFile.ChunkLocation location, Path file, int chunkX, int chunkZ) throws IOException {
+        final long position = location.getPosition();
+        if(location.sectorOffset < 2 || position + 5 > fileSize) return null;
+        final ByteBuffer head = RegionFile.readFully(channel, position, 5);
+        final int length = head.getInt(0);
+        final int type = head.get(4) & 0xff;
+        if(length <= 0 || position + 4 + length > fileSize) return null;
+
+        final InputStream is;
+        if((type & RegionFile.EXTERNAL_FLAG) != 0) {
+            final Path externalPath = file.resolveSibling(RegionFile.getExternalFileName(chunkX, chunkZ));
+            if(!Files.exists(externalPath)) return null;
+            is = Files.newInputStream(externalPath);
+        } else {
+            is = new ByteArrayInputStream(RegionFile.readFully(channel, position + 5, length - 1).array());
+        }
+
+        final Map<String, Object> values;
+        try(NbtReader reader = new NbtReader(RegionFile.openChunkStream(type & ~RegionFile.EXTERNAL_FLAG, is))) {
+            values = reader.read(CHUNK_PATHS, 2);
+        } finally {
+            is.close();
+        }
+        final int dataVersion = values.get("DataVersion") instanceof Number number ? number.intValue() : 0;
+        Object sectionList = values.get("sections"); // 1.18+
+        if(sectionList == null) sectionList = values.get("Level.Sections");
+        if(!(sectionList instanceof List<?> list)) return null;
+
+        final List<Section> sections = new ArrayList<>();
+        for(Object element : list) {
+            if(!(element instanceof Map<?, ?> map)) continue;
+            final Section section = readSection((Map<String, Object>) map, dataVersion);
+            if(section != null) sections.add(section);
+        }
+        sections.sort(Comparator.comparingInt((Section section) -> section.y).reversed());
+        return sections;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Section readSection(Map<String, Object> map, int dataVersion) {
+        if(!(map.get("Y") instanceof Number y)) return null;
+        Object palette;
+        Object data;
+        if(map.get("block_states") instanceof Map<?, ?> blockStates) { // 1.18+
+            palette = blockStates.get("palette");
+            data = blockStates.get("data");
+        } else {
+            palette = map.get("Palette");
+            data = map.get("BlockStates");
+        }
+        if(!(palette instanceof List<?> paletteList) || paletteList.isEmpty()) return null;
+
+        final Section section = new Section();
+        section.y = y.intValue();
+        section.colors = new int[paletteList.size()];
+        section.air = new boolean[paletteList.size()];
+        section.water = new boolean[paletteList.size()];
+        for(int i = 0; i < paletteList.size(); i++) {
+            String name = "minecraft:air";
+            if(paletteList.get(i) instanceof Map<?, ?> state && state.get("Name") instanceof String stateName) name = stateName;
+            section.colors[i] = BlockColors.get(name);
+            section.air[i] = BlockColors.isAir(name);
+            section.water[i] = BlockColors.isWater(name);
+            if(!section.water[i] && paletteList.get(i) instanceof Map<?, ?> state && state.get("Properties") instanceof Map<?, ?> properties) {
+                section.water[i] = "true".equals(((Map<String, Object>) properties).get("waterlogged"));
+            }
+        }
+        if(paletteList.size() > 1 && data instanceof long[] longs) {
+            section.indices = unpack(longs, paletteList.size(), dataVersion >= DATA_VERSION_NO_SPANNING);
+        } else if(paletteList.size() > 1) {
+            return null;
+        }
+        return section;
+    }
+
+    private static short[] unpack(long[] data, int paletteSize, boolean noSpanning) {
+        final int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+        final long mask = (1L << bits) - 1;
+        final short[] indices = new short[4096];
+        if(noSpanning) {
+            final int perLong = 64 / bits;
+            for(int i = 0; i < 4096; i++) {
+                final int longIndex = i / perLong;
+                if(longIndex >= data.length) break;
+                indices[i] = (short) Math.min(paletteSize - 1, (data[longIndex] >>> ((i % perLong) * bits)) & mask);
+            }
+        } else {
+            for(int i = 0; i < 4096; i++) {
+                final long bitIndex = (long) i * bits;
+                final int longIndex = (int) (bitIndex >> 6);
+                final int offset = (int) (bitIndex & 63);
+                if(longIndex >= data.length) break;
+                long value = data[longIndex] >>> offset;
+                if(offset + bits > 64 && longIndex + 1 < data.length) value |= data[longIndex + 1] << (64 - offset);
+                indices[i] = (short) Math.min(paletteSize - 1, value & mask);
+            }
+        }
+        return indices;
+    }
+
+    private static void renderChunk(List<Section> sections, int offsetX, int offsetZ, boolean ceiling, int[] pixels, int[] heights) {
+        for(int z = 0; z < 16; z++) {
+            for(int x = 0; x < 16; x++) {
+                final int i = (offsetZ + z) * TILE_SIZE + offsetX + x;
+                boolean open = !ceiling;
+                int waterDepth = 0;
+                int waterTop = Integer.MIN_VALUE;
+                column:
+                for(Section section : sections) {
+                    for(int y = 15; y >= 0; y--) {
+                        final int paletteIndex = section.indices == null ? 0 : section.indices[(y * 16 + z) * 16 + x];
+                        if(section.air[paletteIndex]) {
+                            open = true;
+                            continue;
+                        }
+                        if(!open) continue;
+                        final int blockY = section.y * 16 + y;
+                        if(section.water[paletteIndex]) {
+                            if(waterDepth == 0) waterTop = blockY;
+                            if(++waterDepth < MAX_WATER_DEPTH) continue;
+                            pixels[i] = BlockColors.WATER;
+                            heights[i] = waterTop;
+                            break column;
+                        }
+                        final int color = section.colors[paletteIndex];
+                        if(waterDepth > 0) {
+                            pixels[i] = blend(BlockColors.WATER, color, 0.5 + 0.5 * waterDepth / MAX_WATER_DEPTH);
+                            heights[i] = waterTop;
+                        } else {
+                            pixels[i] = color;
+                            heights[i] = blockY;
+                        }
+                        break column;
+                    }
+                }
+                if(pixels[i] == BlockColors.TRANSPARENT && waterDepth > 0) {
+                    pixels[i] = BlockColors.WATER;
+                    heights[i] = waterTop;
+                }
+            }
+        }
+    }
+
+    private static int shade(int color, double factor) {
+        final int r = Math.min(255, (int) (((color >> 16) & 0xff) * factor));
+        final int g = Math.min(255, (int) (((color >> 8) & 0xff) * factor));
+        final int b = Math.min(255, (int) ((color & 0xff) * factor));
+        return (color & 0xff000000) | (r << 16) | (g << 8) | b;
+    }
+
+    // @param ratio of the first color
+    private static int blend(int first, int second, double ratio) {
+        final int r = (int) (((first >> 16) & 0xff) * ratio + ((second >> 16) & 0xff) * (1 - ratio));
+        final int g = (int) (((first >> 8) & 0xff) * ratio + ((second >> 8) & 0xff) * (1 - ratio));
+        final int b = (int) ((first & 0xff) * ratio + (second & 0xff) * (1 - ratio));
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,245 @@
+package net.opanel.world;
+
+import net.opanel.OPanel;
+import net.opanel.utils.TPS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Top-down map tiles of the saves, one tile per region file.
+ *
+ * Tiles are rendered on low-priority background threads, which pause while the server is lagging.
+ * A rendered tile is stored as a PNG under `.opanel/map` with the modified time of its region file,
+ * so it is only rendered again after the region is changed. The disk cache is limited in size and evicts
+ * the least recently used tiles, and the recently served tiles are also kept in memory.
+ */
+public class MapTileCache {
+    public static final Path MAP_DIR_PATH = OPanel.OPANEL_DIR_PATH.resolve("map");
+    private static final long MAX_DISK_BYTES = 512L * 1024 * 1024;
+    private static final long MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+    // Ticks are 50 ms apart on a healthy server
+    private static final double MSPT_BUDGET = 55;
+    private static final long LAG_CHECK_INTERVAL_MS = 200;
+    // Don't wait forever if the server keeps lagging
+    private static final long MAX_LAG_WAIT_MS = 30_000;
+    private static MapTileCache instance;
+
+    public static class Tile {
+        public final byte[] png;
+        public final long sourceModified; // modified time of the region file it is rendered from
+        public final boolean stale; // the region is modified since, and the new tile is still being rendered
+
+        Tile(byte[] png, long sourceModified, boolean stale) {
+            this.png = png;
+            this.sourceModified = sourceModified;
+            this.stale = stale;
+        }
+
+        public String getETag() {
+            return "\""+ Long.toHexString(sourceModified) +"\"";
+        }
+    }
+
+    public static class TileInfo {
+        public int x;
+        public int z;
+        public long lastModified;
+    }
+
+    private final ExecutorService renderer;
+    private final Map<Path, CompletableFuture<Tile>> rendering = new ConcurrentHashMap<>();
+    // Both are in access order, the eldest is the least recently used
+    private final LinkedHashMap<Path, Tile> memoryTiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Path, Long> diskTiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+    private long diskBytes = 0;
+    private boolean diskIndexed = false;
+
+    private MapTileCache() {
+        final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        renderer = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "OPanel Map Renderer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    public static synchronized MapTileCache get() {
+        if(instance == null) instance = new MapTileCache();
+        return instance;
+    }
+
+    // @return dimension name -> the regions which can be rendered
+    public Map<String, List<TileInfo>> listTiles(Path savePath) throws IOException {
+        final Map<String, List<TileInfo>> result = new LinkedHashMap<>();
+        for(Map.Entry<String, Path> entry : RegionAnalyzer.findDimensions(savePath).entrySet()) {
+            final List<TileInfo> tiles = new ArrayList<>();
+            try(Stream<Path> stream = Files.list(entry.getValue())) {
+                for(Path path : stream.toList()) {
+                    final int[] coords = RegionFile.parseRegionCoords(path.getFileName().toString());
+                    if(coords == null) continue;
+                    final TileInfo tile = new TileInfo();
+                    tile.x = coords[0];
+                    tile.z = coords[1];
+                    tile.lastModified = Files.getLastModifiedTime(path).toMillis();
+                    tiles.add(tile);
+                }
+            }
+            result.put(entry.getKey(), tiles);
+        }
+        return result;
+    }
+
+    /**
+     * Get the tile of a region, and render it if it is missing or the region is modified since.
+     * If the rendering takes longer than `waitMillis`, the outdated tile is returned if there is one.
+     * @return null if the tile is not rendered yet
+     * @throws NoSuchFileException if the dimension or the region does not exist
+     */
+    public Tile getTile(String saveName, Path savePath, String dimension, int x, int z, long waitMillis) throws IOException {
+        final Path dimensionPath = RegionAnalyzer.findDimensions(savePath).get(dimension);
+        if(dimensionPath == null) throw new NoSuchFileException(dimension);
+        final Path regionFile = dimensionPath.resolve("r."+ x +"."+ z +".mca");
+        final long sourceModified = Files.getLastModifiedTime(regionFile).toMillis();
+        final Path tilePath = MAP_DIR_PATH.resolve(saveName).resolve(dimension.replaceAll("[^a-zA-Z0-9_.-]", "_")).resolve("r."+ x +"."+ z +".png");
+
+        Tile cached = getMemoryTile(tilePath);
+        if(cached == null) cached = readDiskTile(tilePath);
+        if(cached != null && cached.sourceModified == sourceModified) return cached;
+
+        final CompletableFuture<Tile> future = new CompletableFuture<>();
+        final CompletableFuture<Tile> existing = rendering.putIfAbsent(tilePath, future);
+        if(existing == null) {
+            final boolean ceiling = dimension.equals(RegionAnalyzer.THE_NETHER);
+            renderer.execute(() -> {
+                try {
+                    final Tile tile = render(regionFile, tilePath, sourceModified, ceiling);
+                    rendering.remove(tilePath, future);
+                    future.complete(tile);
+                } catch (Throwable e) {
+                    rendering.remove(tilePath, future);
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+
+        try {
+            return (existing != null ? existing : future).get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return cached != null ? new Tile(cached.png, cached.sourceModified, true) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for the map tile is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException ioe) throw ioe;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Tile render(Path regionFile, Path tilePath, long sourceModified, boolean ceiling) throws IOException {
+        final byte[] png = MapRenderer.encodePng(MapRenderer.render(regionFile, ceiling, this::waitForServer));
+        Files.createDirectories(tilePath.getParent());
+        final Path tmpPath = tilePath.resolveSibling(tilePath.getFileName() +".tmp");
+        Files.write(tmpPath, png);
+        Files.setLastModifiedTime(tmpPath, FileTime.fromMillis(sourceModified));
+        Files.move(tmpPath, tilePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        final Tile tile = new Tile(png, sourceModified, false);
+        putMemoryTile(tilePath, tile);
+        putDiskTile(tilePath, png.length);
+        return tile;
+    }
+
+    // Pause while the ticks take longer than the budget
+    private void waitForServer() throws IOException {
+        long waited = 0;
+        try {
+            while(TPS.getRecentMSPT() > MSPT_BUDGET && !TPS.isPaused() && waited < MAX_LAG_WAIT_MS) {
+                Thread.sleep(LAG_CHECK_INTERVAL_MS);
+                waited += LAG_CHECK_INTERVAL_MS;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Map rendering is interrupted.");
+        }
+    }
+
+    private synchronized Tile getMemoryTile(Path tilePath) {
+        return memoryTiles.get(tilePath);
+    }
+
+    private synchronized void putMemoryTile(Path tilePath, Tile tile) {
+        final Tile previous = memoryTiles.put(tilePath, tile);
+        if(previous != null) memoryBytes -= previous.png.length;
+        memoryBytes += tile.png.length;
+        final Iterator<Tile> iterator = memoryTiles.values().iterator();
+        while(memoryBytes > MAX_MEMORY_BYTES && iterator.hasNext()) {
+            memoryBytes -= iterator.next().png.length;
+            iterator.remove();
+        }
+    }
+
+    private Tile readDiskTile(Path tilePath) throws IOException {
+        final long lastModified;
+        final byte[] png;
+        try {
+            lastModified = Files.getLastModifiedTime(tilePath).toMillis();
+            png = Files.readAllBytes(tilePath);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        final Tile tile = new Tile(png, lastModified, false);
+        putMemoryTile(tilePath, tile);
+        putDiskTile(tilePath, png.length);
+        return tile;
+    }
+
+    private void putDiskTile(Path tilePath, long size) throws IOException {
+        final List<Path> evicted = new ArrayList<>();
+        synchronized(diskTiles) {
+            if(!diskIndexed) indexDiskTiles();
+            final Long previous = diskTiles.put(tilePath, size);
+            if(previous != null) diskBytes -= previous;
+            diskBytes += size;
+            final Iterator<Map.Entry<Path, Long>> iterator = diskTiles.entrySet().iterator();
+            while(diskBytes > MAX_DISK_BYTES && iterator.hasNext()) {
+                final Map.Entry<Path, Long> eldest = iterator.next();
+                if(eldest.getKey().equals(tilePath)) continue;
+                diskBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+            }
+        }
+        for(Path path : evicted) {
+            synchronized(this) {
+                final Tile tile = memoryTiles.remove(path);
+                if(tile != null) memoryBytes -= tile.png.length;
+            }
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // The tiles left from the last run are put in the order of their regions' modified time
+    private void indexDiskTiles() throws IOException {
+        diskIndexed = true;
+        if(!Files.isDirectory(MAP_DIR_PATH)) return;
+        final List<Path> tiles;
+        try(Stream<Path> stream = Files.walk(MAP_DIR_PATH)) {
+            tiles = stream.filter(path -> path.getFileName().toString().endsWith(".png")).toList();
+        }
+        final Map<Path, FileTime> times = new HashMap<>();
+        for(Path path : tiles) times.put(path, Files.getLastModifiedTime(path));
+        for(Path path : tiles.stream().sorted(Comparator.comparing(times::get)).toList()) {
+            final long size = Files.size(path);
+            diskTiles.put(path, size);
+            diskBytes += size;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package net.opanel.world;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A streaming NBT reader which only picks the wanted tags, everything else is skipped without being materialized.
+ * Reading stops as soon as all the wanted tags are found.
+ *
+ * Tags are selected by their path from the root compound, separated by dots, e.g. `Data.Version.Name`.
+ * A selected compound or list is read as a whole, so it should be kept small.
+ */
+public class NbtReader implements Closeable {
+    public static final byte TAG_END = 0;
+    public static final byte TAG_BYTE = 1;
+    public static final byte TAG_SHORT = 2;
+    public static final byte TAG_INT = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_FLOAT = 5;
+    public static final byte TAG_DOUBLE = 6;
+    public static final byte TAG_BYTE_ARRAY = 7;
+    public static final byte TAG_STRING = 8;
+    public static final byte TAG_LIST = 9;
+    public static final byte TAG_COMPOUND = 10;
+    public static final byte TAG_INT_ARRAY = 11;
+    public static final byte TAG_LONG_ARRAY = 12;
+    private static final int MAX_DEPTH = 512;
+
+    private final DataInputStream dis;
+
+    // The stream should be uncompressed
+    public NbtReader(InputStream is) {
+        dis = new DataInputStream(is);
+    }
+
+    // Open a gzipped NBT file, such as level.dat and player data
+    public static NbtReader openCompressed(Path path) throws IOException {
+        final InputStream is = new BufferedInputStream(Files.newInputStream(path), 8192);
+        try {
+            return new NbtReader(new BufferedInputStream(new GZIPInputStream(is, 8192), 8192));
+        } catch (IOException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the values of the given paths.
+     * @return path -> value, missing paths are not included
+     *         (Byte, Short, Integer, Long, Float, Double, String, byte[], int[], long[], List or Map for compounds)
+     */
+    public Map<String, Object> read(Set<String> paths) throws IOException {
+        return read(paths, paths.size());
+    }
+
+    /**
+     * Read the values of the given paths, and stop when `limit` of them are found.
+     * This is useful when the paths are alternatives of different versions.
+     */
+    public Map<String, Object> read(Set<String> paths, int limit) throws IOException {
+        final Map<String, Object> values = new HashMap<>();
+        final byte type = dis.readByte();
+        if(type != TAG_COMPOUND) throw new IOException("The root tag is not a compound.");
+        dis.skipNBytes(dis.readUnsignedShort()); // root name
+        readCompound("", paths, values, limit, 0);
+        return values;
+    }
+
+    // @return false if reading can be stopped
+    private boolean readCompound(String prefix, Set<String> paths, Map<String, Object> values, int limit, int depth) throws IOException {
+        if(depth > MAX_DEPTH) throw new IOException("NBT is nested too deeply.");
+        byte type;
+        while((type = dis.readByte()) != TAG_END) {
+            final String path = prefix + dis.readUTF();
+            if(type == TAG_COMPOUND && isPrefix(path +".", paths)) {
+                if(!readCompound(path +".", paths, values, limit, depth + 1)) return false;
+            } else if(paths.contains(path)) {
+                values.put(path, readTag(type, depth + 1));
+                if(values.size() >= limit) return false;
+            } else {
+                skip(type, depth + 1);
+            }
+        }
+        return true;
+    }
+
+    private Object readTag(byte type, int depth) throws IOException {
+        if(depth > MAX_DEPTH) throw new IOException("NBT is nested too deeply.");
+        return switch(type) {
+            case TAG_BYTE -> dis.readByte();
+            case TAG_SHORT -> dis.readShort();
+            case TAG_INT -> dis.readInt();
+            case TAG_LONG -> dis.readLong();
+            case TAG_FLOAT -> dis.readFloat();
+            case TAG_DOUBLE -> dis.readDouble();
+            case TAG_STRING -> dis.readUTF();
+            case TAG_BYTE_ARRAY -> {
+                final byte[] array = new byte[readLength()];
+                dis.readFully(array);
+                yield array;
+            }
+            case TAG_INT_ARRAY -> {
+                final int[] array = new int[readLength()];
+                for(int i = 0; i < array.length; i++) array[i] = dis.readInt();
+                yield array;
+            }
+            case TAG_LONG_ARRAY -> {
+                final long[] array = new long[readLength()];
+                for(int i = 0; i < array.length; i++) array[i] = dis.readLong();
+                yield array;
+            }
+            case TAG_LIST -> {
+                final byte elementType = dis.readByte();
+                final int length = readLength();
+                final List<Object> list = new ArrayList<>(Math.min(length, 1024));
+                for(int i = 0; i < length; i++) list.add(readTag(elementType, depth + 1));
+                yield list;
+            }
+            case TAG_COMPOUND -> {
+                final Map<String, Object> compound = new HashMap<>();
+                byte childType;
+                while((childType = dis.readByte()) != TAG_END) {
+                    final String name = dis.readUTF();
+                    compound.put(name, readTag(childType, depth + 1));
+                }
+                yield compound;
+            }
+            default -> throw new IOException("Unknown tag type: "+ type);
+        };
+    }
+
+    private void skip(byte type, int depth) throws IOException {
+        if(depth > MAX_DEPTH) throw new IOException("NBT is nested too deeply.");
+        switch(type) {
+            case TAG_BYTE -> dis.skipNBytes(1);
+            case TAG_SHORT -> dis.skipNBytes(2);
+            case TAG_INT, TAG_FLOAT -> dis.skipNBytes(4);
+            case TAG_LONG, TAG_DOUBLE -> dis.skipNBytes(8);
+            case TAG_BYTE_ARRAY -> dis.skipNBytes(readLength());
+            case TAG_INT_ARRAY -> dis.skipNBytes(readLength() * 4L);
+            case TAG_LONG_ARRAY -> dis.skipNBytes(readLength() * 8L);
+            case TAG_STRING -> dis.skipNBytes(dis.readUnsignedShort());
+            case TAG_LIST -> {
+                final byte elementType = dis.readByte();
+                final int length = readLength();
+                for(int i = 0; i < length; i++) skip(elementType, depth + 1);
+            }
+            case TAG_COMPOUND -> {
+                byte childType;
+                while((childType = dis.readByte()) != TAG_END) {
+                    dis.skipNBytes(dis.readUnsignedShort());
+                    skip(childType, depth + 1);
+                }
+            }
+            default -> throw new IOException("Unknown tag type: "+ type);
+        }
+    }
+
+    private int readLength() throws IOException {
+        final int length = dis.readInt();
+        if(length < 0) throw new IOException("Negative length in NBT.");
+        return length;
+    }
+
+    private static boolean isPrefix(String prefix, Set<String> paths) {
+        for(String path : paths) {
+            if(path.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dis.close();
+    }
+}
@@ -0,0 +1,55 @@
+package net.opanel.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where the disk space and the activity of a world concentrate, by dimension, region and chunk.
+ */
+public class RegionAnalysis {
+    public String save;
+    public long time;
+    public long elapsedMillis;
+    public int regions;
+    public int chunks;
+    public long bytes;
+    public int externalChunks;
+    public int oversizedChunks;
+    public int unreadableChunks;
+    public List<Dimension> dimensions = new ArrayList<>();
+
+    public static class Dimension {
+        public String name;
+        public int regions;
+        public int chunks;
+        public long bytes;
+        public int externalChunks;
+        public long totalInhabitedTime;
+        public List<Region> largestRegions = new ArrayList<>();
+        public List<Chunk> mostInhabitedChunks = new ArrayList<>();
+        public List<Chunk> oversizedChunks = new ArrayList<>();
+    }
+
+    public static class Region {
+        public String file;
+        public int x;
+        public int z;
+        public long size; // size of the region file and its external chunks
+        public int chunks;
+        public long usedBytes; // bytes of the chunk data, the rest is the header and free sectors
+        public int externalChunks;
+        public int unreadableChunks;
+        public long lastUpdated; // the latest chunk timestamp in seconds
+        public long totalInhabitedTime;
+        public transient List<Chunk> chunkList = new ArrayList<>();
+    }
+
+    public static class Chunk {
+        public int x;
+        public int z;
+        public int size;
+        public long inhabitedTime = -1; // in ticks, -1 if it cannot be read
+        public long lastUpdated;
+        public boolean external;
+    }
+}
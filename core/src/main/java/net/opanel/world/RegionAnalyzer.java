@@ -0,0 +1,256 @@
+package net.opanel.world;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Analyze the region files of a world in parallel.
+ * The headers are read through memory-mapped files, and every chunk is only decompressed until its `InhabitedTime` is found.
+ * The result of each region file is cached until the file is modified.
+ */
+public class RegionAnalyzer {
+    public static final String OVERWORLD = "minecraft:overworld";
+    public static final String THE_NETHER = "minecraft:the_nether";
+    public static final String THE_END = "minecraft:the_end";
+    // Chunks larger than this are reported, vanilla moves chunks over 1 MB to external .mcc files
+    public static final int OVERSIZED_BYTES = 512 * 1024;
+    private static final int TOP_COUNT = 20;
+    private static final Set<String> INHABITED_TIME_PATHS = Set.of("InhabitedTime", "Level.InhabitedTime"); // 1.18+, before 1.18
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    private static final Map<Path, CachedRegion> cache = new ConcurrentHashMap<>();
+
+    private record CachedRegion(long lastModified, long size, RegionAnalysis.Region region) { }
+
+    private record RegionTask(String dimension, Path file) { }
+
+    /**
+     * Find the region folders of the dimensions in the save.
+     * For Bukkit servers, the nether and the end are found in the `_nether` and `_the_end` folders next to the save.
+     * @return dimension name -> region folder
+     */
+    public static Map<String, Path> findDimensions(Path savePath) throws IOException {
+        final Map<String, Path> dimensions = new LinkedHashMap<>();
+        final String saveName = savePath.getFileName().toString();
+        putIfExists(dimensions, OVERWORLD, savePath.resolve("region"));
+        putIfExists(dimensions, THE_NETHER, savePath.resolve("DIM-1/region"));
+        putIfExists(dimensions, THE_NETHER, savePath.resolveSibling(saveName +"_nether").resolve("DIM-1/region"));
+        putIfExists(dimensions, THE_END, savePath.resolve("DIM1/region"));
+        putIfExists(dimensions, THE_END, savePath.resolveSibling(saveName +"_the_end").resolve("DIM1/region"));
+
+        // Custom dimensions are in dimensions/<namespace>/<path>/region
+        final Path customPath = savePath.resolve("dimensions");
+        if(Files.isDirectory(customPath)) {
+            try(Stream<Path> stream = Files.walk(customPath, 8)) {
+                stream.filter(path -> path.getFileName().toString().equals("region") && Files.isDirectory(path))
+                        .sorted()
+                        .forEach(path -> {
+                            final Path relative = customPath.relativize(path.getParent());
+                            if(relative.getNameCount() < 2) return;
+                            final String name = relative.getName(0) +":"+ relative.subpath(1, relative.getNameCount()).toString().replace('\\', '/');
+                            dimensions.putIfAbsent(name, path);
+                        });
+            }
+        }
+        return dimensions;
+    }
+
+    private static void putIfExists(Map<String, Path> dimensions, String name, Path regionPath) {
+        if(!dimensions.containsKey(name) && Files.isDirectory(regionPath)) dimensions.put(name, regionPath);
+    }
+
+    public static RegionAnalysis analyze(String saveName, Map<String, Path> dimensions) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final List<RegionTask> tasks = new ArrayList<>();
+        for(Map.Entry<String, Path> entry : dimensions.entrySet()) {
+            try(Stream<Path> stream = Files.list(entry.getValue())) {
+                stream.filter(path -> RegionFile.parseRegionCoords(path.getFileName().toString()) != null)
+                        .forEach(path -> tasks.add(new RegionTask(entry.getKey(), path)));
+            }
+        }
+
+        final List<RegionAnalysis.Region> regions;
+        try {
+            regions = pool.submit(() -> tasks.parallelStream().map(task -> {
+                try {
+                    return analyzeRegion(task.file);
+                } catch (NoSuchFileException e) {
+                    return null; // deleted while analyzing
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Region analysis is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException ioe) throw ioe.getCause();
+            throw new IOException(e.getCause());
+        }
+
+        final RegionAnalysis analysis = new RegionAnalysis();
+        analysis.save = saveName;
+        analysis.time = startTime;
+        final Map<String, List<RegionAnalysis.Region>> regionsByDimension = new LinkedHashMap<>();
+        for(String name : dimensions.keySet()) regionsByDimension.put(name, new ArrayList<>());
+        for(int i = 0; i < tasks.size(); i++) {
+            if(regions.get(i) != null) regionsByDimension.get(tasks.get(i).dimension).add(regions.get(i));
+        }
+
+        for(Map.Entry<String, List<RegionAnalysis.Region>> entry : regionsByDimension.entrySet()) {
+            final RegionAnalysis.Dimension dimension = summarize(entry.getKey(), entry.getValue());
+            analysis.dimensions.add(dimension);
+            analysis.regions += dimension.regions;
+            analysis.chunks += dimension.chunks;
+            analysis.bytes += dimension.bytes;
+            analysis.externalChunks += dimension.externalChunks;
+            for(RegionAnalysis.Region region : entry.getValue()) {
+                analysis.unreadableChunks += region.unreadableChunks;
+                for(RegionAnalysis.Chunk chunk : region.chunkList) {
+                    if(isOversized(chunk)) analysis.oversizedChunks++;
+                }
+            }
+        }
+        analysis.elapsedMillis = System.currentTimeMillis() - startTime;
+        return analysis;
+    }
+
+    private static RegionAnalysis.Dimension summarize(String name, List<RegionAnalysis.Region> regions) {
+        final RegionAnalysis.Dimension dimension = new RegionAnalysis.Dimension();
+        dimension.name = name;
+        final List<RegionAnalysis.Chunk> chunks = new ArrayList<>();
+        for(RegionAnalysis.Region region : regions) {
+            dimension.regions++;
+            dimension.chunks += region.chunks;
+            dimension.bytes += region.size;
+            dimension.externalChunks += region.externalChunks;
+            dimension.totalInhabitedTime += region.totalInhabitedTime;
+            chunks.addAll(region.chunkList);
+        }
+
+        dimension.largestRegions = regions.stream()
+                .sorted(Comparator.comparingLong((RegionAnalysis.Region region) -> region.size).reversed())
+                .limit(TOP_COUNT)
+                .toList();
+        dimension.mostInhabitedChunks = chunks.stream()
+                .filter(chunk -> chunk.inhabitedTime > 0)
+                .sorted(Comparator.comparingLong((RegionAnalysis.Chunk chunk) -> chunk.inhabitedTime).reversed())
+                .limit(TOP_COUNT)
+                .toList();
+        dimension.oversizedChunks = chunks.stream()
+                .filter(RegionAnalyzer::isOversized)
+                .sorted(Comparator.comparingInt((RegionAnalysis.Chunk chunk) -> chunk.size).reversed())
+                .limit(TOP_COUNT)
+                .toList();
+        return dimension;
+    }
+
+    private static boolean isOversized(RegionAnalysis.Chunk chunk) {
+        return chunk.external || chunk.size >= OVERSIZED_BYTES;
+    }
+
+    public static RegionAnalysis.Region analyzeRegion(Path file) throws IOException {
+        final Path key = file.toAbsolutePath().normalize();
+        final long lastModified = Files.getLastModifiedTime(key).toMillis();
+        final long size = Files.size(key);
+        final CachedRegion cached = cache.get(key);
+        if(cached != null && cached.lastModified == lastModified && cached.size == size) {
+            return cached.region;
+        }
+
+        final RegionAnalysis.Region region = readRegion(key);
+        cache.put(key, new CachedRegion(lastModified, size, region));
+        return region;
+    }
+
+    private static RegionAnalysis.Region readRegion(Path file) throws IOException {
+        final int[] coords = RegionFile.parseRegionCoords(file.getFileName().toString());
+        final RegionAnalysis.Region region = new RegionAnalysis.Region();
+        region.file = file.getFileName().toString();
+        region.x = coords[0];
+        region.z = coords[1];
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            region.size = fileSize;
+            // A new region file can be empty before the server writes its header
+            if(fileSize < RegionFile.HEADER_SIZE) return region;
+
+            final MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            for(RegionFile.ChunkLocation location : RegionFile.readLocations(data)) {
+                final RegionAnalysis.Chunk chunk = new RegionAnalysis.Chunk();
+                chunk.x = region.x * 32 + location.getLocalX();
+                chunk.z = region.z * 32 + location.getLocalZ();
+                chunk.lastUpdated = Integer.toUnsignedLong(RegionFile.readTimestamp(data, location.index));
+                region.chunks++;
+                region.lastUpdated = Math.max(region.lastUpdated, chunk.lastUpdated);
+
+                final long position = location.getPosition();
+                if(location.sectorOffset < 2 || position + 5 > fileSize) {
+                    region.unreadableChunks++;
+                    continue;
+                }
+                final int length = data.getInt((int) position);
+                final int type = data.get((int) position + 4) & 0xff;
+                if(length <= 0 || position + 4 + length > fileSize) {
+                    region.unreadableChunks++;
+                    continue;
+                }
+
+                final InputStream is;
+                if((type & RegionFile.EXTERNAL_FLAG) != 0) {
+                    final Path externalPath = file.resolveSibling(RegionFile.getExternalFileName(chunk.x, chunk.z));
+                    try {
+                        chunk.size = (int) Math.min(Integer.MAX_VALUE, Files.size(externalPath));
+                    } catch (NoSuchFileException e) {
+                        region.unreadableChunks++;
+                        continue;
+                    }
+                    chunk.external = true;
+                    region.externalChunks++;
+                    region.size += chunk.size;
+                    is = Files.newInputStream(externalPath);
+                } else {
+                    chunk.size = length + 4;
+                    region.usedBytes += chunk.size;
+                    final byte[] bytes = new byte[length - 1];
+                    data.get((int) position + 5, bytes);
+                    is = new ByteArrayInputStream(bytes);
+                }
+
+                chunk.inhabitedTime = readInhabitedTime(type & ~RegionFile.EXTERNAL_FLAG, is);
+                if(chunk.inhabitedTime < 0 && (type & ~RegionFile.EXTERNAL_FLAG) != RegionFile.COMPRESSION_LZ4) {
+                    region.unreadableChunks++;
+                }
+                if(chunk.inhabitedTime > 0) region.totalInhabitedTime += chunk.inhabitedTime;
+                region.chunkList.add(chunk);
+            }
+        }
+        return region;
+    }
+
+    // @return -1 if the chunk cannot be read
+    static long readInhabitedTime(int compressionType, InputStream is) {
+        try(NbtReader reader = new NbtReader(RegionFile.openChunkStream(compressionType, is))) {
+            final Map<String, Object> values = reader.read(INHABITED_TIME_PATHS, 1);
+            for(Object value : values.values()) {
+                if(value instanceof Number number) return number.longValue();
+            }
+            return 0;
+        } catch (IOException e) {
+            try {
+                is.close();
+            } catch (IOException ignored) { }
+            return -1;
+        }
+    }
+}
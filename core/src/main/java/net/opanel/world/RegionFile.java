@@ -0,0 +1,209 @@
+package net.opanel.world;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Layout of the Anvil region file (.mca).
+ * The first 4 KB is the location table of the 32x32 chunks, followed by 4 KB of timestamps.
+ * Each chunk starts at its sector with a 4-byte length and a 1-byte compression type.
+ *
+ * @see <a href="https://minecraft.wiki/w/Region_file_format">Region file format</a>
+ */
+public class RegionFile {
+    public static final int SECTOR_SIZE = 4096;
+    public static final int CHUNK_COUNT = 1024;
+    public static final int HEADER_SIZE = SECTOR_SIZE * 2;
+    // The chunk data is stored in a separate .mcc file if this bit of the compression type is set
+    public static final int EXTERNAL_FLAG = 128;
+    public static final int COMPRESSION_GZIP = 1;
+    public static final int COMPRESSION_ZLIB = 2;
+    public static final int COMPRESSION_NONE = 3;
+    public static final int COMPRESSION_LZ4 = 4;
+    private static final String TMP_SUFFIX = ".rewriting";
+    private static final Pattern regionNamePattern = Pattern.compile("^r\\.(-?\\d+)\\.(-?\\d+)\\.mca$");
+
+    public static class ChunkLocation {
+        public final int index; // x + z * 32 in the region
+        public final int sectorOffset;
+        public final int sectorCount;
+        public int length = -1; // length of the chunk data including the 4-byte length field, -1 if not read
+
+        public ChunkLocation(int index, int sectorOffset, int sectorCount) {
+            this.index = index;
+            this.sectorOffset = sectorOffset;
+            this.sectorCount = sectorCount;
+        }
+
+        public long getPosition() {
+            return (long) sectorOffset * SECTOR_SIZE;
+        }
+
+        public int getLocalX() {
+            return index & 31;
+        }
+
+        public int getLocalZ() {
+            return index >> 5;
+        }
+    }
+
+    public static boolean isRegionFile(String fileName) {
+        return fileName.endsWith(".mca");
+    }
+
+    // Region coordinates from the file name `r.x.z.mca`, null if the name is not in this form
+    public static int[] parseRegionCoords(String fileName) {
+        final Matcher matcher = regionNamePattern.matcher(fileName);
+        if(!matcher.matches()) return null;
+        return new int[]{Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))};
+    }
+
+    // The file storing an oversized chunk, next to the region file
+    public static String getExternalFileName(int chunkX, int chunkZ) {
+        return "c."+ chunkX +"."+ chunkZ +".mcc";
+    }
+
+    /**
+     * Decompress the chunk data by its compression type (without the external flag).
+     * LZ4 is not supported since it needs an extra library.
+     */
+    public static InputStream openChunkStream(int compressionType, InputStream is) throws IOException {
+        return switch(compressionType) {
+            case COMPRESSION_GZIP -> new GZIPInputStream(is);
+            case COMPRESSION_ZLIB -> new InflaterInputStream(is);
+            case COMPRESSION_NONE -> is;
+            default -> throw new IOException("Unsupported chunk compression type: "+ compressionType);
+        };
+    }
+
+    // Read the present chunks from the location table
+    public static List<ChunkLocation> readLocations(ByteBuffer header) {
+        final List<ChunkLocation> locations = new ArrayList<>();
+        for(int i = 0; i < CHUNK_COUNT; i++) {
+            final int location = header.getInt(i * 4);
+            if(location == 0) continue;
+            locations.add(new ChunkLocation(i, location >>> 8, location & 0xff));
+        }
+        return locations;
+    }
+
+    public static int readTimestamp(ByteBuffer header, int index) {
+        return header.getInt(SECTOR_SIZE + index * 4);
+    }
+
+    /**
+     * Read the lengths of the chunks from the region data,
+     * return false if any of the chunks is out of its sectors, which means the file is corrupted or being written.
+     */
+    public static boolean readLengths(ByteBuffer data, List<ChunkLocation> locations) {
+        final long size = data.limit();
+        for(ChunkLocation location : locations) {
+            final long position = location.getPosition();
+            if(location.sectorOffset < 2 || position + 5 > size) return false;
+            final int length = data.getInt((int) position);
+            if(length <= 0 || (long) length + 4 > (long) location.sectorCount * SECTOR_SIZE || position + 4 + length > size) return false;
+            location.length = length + 4;
+        }
+        return true;
+    }
+
+    /**
+     * Rewrite the region file without the dropped chunks (by index), or delete it if no chunk is left.
+     * The kept chunks are compacted into a temporary file next to it, which is then atomically renamed over the original,
+     * so a failure leaves either the old or the new file. The external files of the dropped chunks are deleted as well.
+     * @return the size of the new file
+     */
+    public static long rewrite(Path file, boolean[] drops, boolean dryRun) throws IOException {
+        final int[] coords = parseRegionCoords(file.getFileName().toString());
+        final List<ChunkLocation> kept = new ArrayList<>();
+        final List<Path> externalFiles = new ArrayList<>(); // of the dropped chunks
+        final ByteBuffer header;
+        final Path tmpPath = file.resolveSibling(file.getFileName() + TMP_SUFFIX);
+        long newSize = HEADER_SIZE;
+
+        try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = in.size();
+            if(fileSize < HEADER_SIZE) return fileSize;
+            header = readFully(in, 0, HEADER_SIZE);
+            for(ChunkLocation location : readLocations(header)) {
+                if(!drops[location.index]) {
+                    // Chunks pointing into the header are broken, the game drops them as well
+                    if(location.sectorOffset >= 2) {
+                        kept.add(location);
+                        newSize += (long) location.sectorCount * SECTOR_SIZE;
+                    }
+                    continue;
+                }
+                final long position = location.getPosition();
+                if(location.sectorOffset >= 2 && position + 5 <= fileSize && (readFully(in, position, 5).get(4) & EXTERNAL_FLAG) != 0) {
+                    externalFiles.add(file.resolveSibling(getExternalFileName(coords[0] * 32 + location.getLocalX(), coords[1] * 32 + location.getLocalZ())));
+                }
+            }
+
+            if(kept.isEmpty()) newSize = 0;
+            if(dryRun) return newSize;
+            if(!kept.isEmpty()) {
+                // Keep the order of the data in the file
+                kept.sort(Comparator.comparingInt(location -> location.sectorOffset));
+                try(FileChannel out = FileChannel.open(tmpPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    final ByteBuffer newHeader = ByteBuffer.allocate(HEADER_SIZE);
+                    int sector = 2;
+                    for(ChunkLocation location : kept) {
+                        final ByteBuffer data = readFully(in, location.getPosition(), location.sectorCount * SECTOR_SIZE);
+                        data.clear();
+                        writeFully(out, data, (long) sector * SECTOR_SIZE);
+                        newHeader.putInt(location.index * 4, (sector << 8) | location.sectorCount);
+                        newHeader.putInt(SECTOR_SIZE + location.index * 4, readTimestamp(header, location.index));
+                        sector += location.sectorCount;
+                    }
+                    newHeader.clear();
+                    writeFully(out, newHeader, 0);
+                    out.force(true);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+
+        if(kept.isEmpty()) {
+            Files.delete(file);
+        } else {
+            Files.move(tmpPath, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        for(Path externalFile : externalFiles) {
+            Files.deleteIfExists(externalFile);
+        }
+        return newSize;
+    }
+
+    // The rest of the buffer is left zeroed if the file ends
+    public static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + buffer.position());
+            if(read < 0) break;
+        }
+        return buffer;
+    }
+
+    public static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
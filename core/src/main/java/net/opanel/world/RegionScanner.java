@@ -0,0 +1,343 @@
+package net.opanel.world;
+
+import com.google.gson.Gson;
+import net.opanel.OPanel;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Check the integrity of the region files of a world in the background,
+ * including the entities and POI region files next to the terrain.
+ *
+ * Every chunk is validated from its location in the header down to its NBT, which is fully decoded.
+ * With repair, the broken chunks are dropped and the overlapping ones are moved apart,
+ * after the original file and the external files of the broken chunks are put into the quarantine.
+ */
+public class RegionScanner {
+    public static final Path QUARANTINE_DIR_PATH = OPanel.OPANEL_DIR_PATH.resolve("quarantine");
+    public static final int MAX_PROBLEMS = 500;
+    private static final String[] FOLDERS = {"region", "entities", "poi"};
+    private static final Set<String> POSITION_PATHS = Set.of("xPos", "zPos", "Level.xPos", "Level.zPos"); // 1.18+, before 1.18
+    private static final DateTimeFormatter ID_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneId.systemDefault());
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "OPanel Region Scanner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // save name -> the latest task
+    private static final Map<String, ScanTask> tasks = new ConcurrentHashMap<>();
+
+    private record FileTask(String dimension, Path file, boolean terrain) { }
+
+    private record FileResult(int chunks, int unverified, int broken, boolean repaired, List<ScanReport.Problem> problems) { }
+
+    private static class ChunkState {
+        final RegionFile.ChunkLocation location;
+        final int x;
+        final int z;
+        boolean broken;
+        boolean external;
+
+        ChunkState(RegionFile.ChunkLocation location, int x, int z) {
+            this.location = location;
+            this.x = x;
+            this.z = z;
+        }
+    }
+
+    /**
+     * Queue a scan of the save, the repair should only be requested when the save is not running.
+     * If the save is already being scanned, the existing task is returned.
+     */
+    public static ScanTask submit(String saveName, Path savePath, boolean repair, boolean running) {
+        final ScanTask task = new ScanTask(UUID.randomUUID().toString(), saveName, repair);
+        final ScanTask existing = tasks.compute(saveName, (key, current) -> current != null && current.isActive() ? current : task);
+        if(existing != task) return existing;
+
+        worker.execute(() -> {
+            task.state = ScanTask.State.RUNNING;
+            task.startTime = System.currentTimeMillis();
+            try {
+                task.report = scan(saveName, savePath, repair, running, task);
+                task.state = ScanTask.State.DONE;
+            } catch (Exception e) {
+                e.printStackTrace();
+                task.error = e.getMessage();
+                task.state = ScanTask.State.FAILED;
+            } finally {
+                task.endTime = System.currentTimeMillis();
+            }
+        });
+        return task;
+    }
+
+    public static ScanTask getTask(String saveName) {
+        return tasks.get(saveName);
+    }
+
+    public static ScanReport scan(String saveName, Path savePath, boolean repair, boolean running, ScanTask progress) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final Path rootPath = savePath.toAbsolutePath().normalize().getParent();
+        final List<FileTask> fileTasks = new ArrayList<>();
+        for(Map.Entry<String, Path> entry : RegionAnalyzer.findDimensions(savePath).entrySet()) {
+            for(String folder : FOLDERS) {
+                final Path folderPath = entry.getValue().resolveSibling(folder);
+                if(!Files.isDirectory(folderPath)) continue;
+                try(Stream<Path> stream = Files.list(folderPath)) {
+                    stream.filter(path -> RegionFile.parseRegionCoords(path.getFileName().toString()) != null)
+                            .sorted()
+                            .forEach(path -> fileTasks.add(new FileTask(entry.getKey(), path, folder.equals("region"))));
+                }
+            }
+        }
+        if(progress != null) progress.totalFiles = fileTasks.size();
+
+        final Path quarantinePath = QUARANTINE_DIR_PATH.resolve(saveName).resolve(ID_FORMATTER.format(Instant.ofEpochMilli(startTime)));
+        final List<FileResult> results;
+        try {
+            results = pool.submit(() -> fileTasks.parallelStream().map(task -> {
+                try {
+                    final String relativePath = rootPath.relativize(task.file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+                    final FileResult result = scanFile(task, relativePath, repair ? quarantinePath.resolve(relativePath) : null);
+                    if(progress != null) progress.onFile();
+                    return result;
+                } catch (NoSuchFileException e) {
+                    return null; // deleted while scanning
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Region scan is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException ioe) throw ioe.getCause();
+            throw new IOException(e.getCause());
+        }
+
+        final ScanReport report = new ScanReport();
+        report.save = saveName;
+        report.repair = repair;
+        report.running = running;
+        report.time = startTime;
+        for(FileResult result : results) {
+            if(result == null) continue;
+            report.files++;
+            report.chunks += result.chunks;
+            report.unverifiedChunks += result.unverified;
+            report.brokenChunks += result.broken;
+            if(result.repaired) report.repairedFiles++;
+            boolean broken = false;
+            for(ScanReport.Problem problem : result.problems) {
+                report.problemCount++;
+                if(problem.type != ScanReport.Type.WRONG_LOCATION) broken = true;
+                if(problem.action == ScanReport.Action.QUARANTINED && !problem.wholeFile) report.quarantinedChunks++;
+                if(report.problems.size() < MAX_PROBLEMS) report.problems.add(problem);
+            }
+            if(broken) report.brokenFiles++;
+        }
+        report.elapsedMillis = System.currentTimeMillis() - startTime;
+
+        if(report.repairedFiles > 0) {
+            report.quarantinePath = quarantinePath.toString();
+            Files.writeString(quarantinePath.resolve("report.json"), new Gson().toJson(report), StandardCharsets.UTF_8);
+        }
+        return report;
+    }
+
+    // @param quarantinePath where the original file is copied before repairing, null to only scan
+    private static FileResult scanFile(FileTask task, String relativePath, Path quarantinePath) throws IOException {
+        final Path file = task.file;
+        final int[] coords = RegionFile.parseRegionCoords(file.getFileName().toString());
+        final List<ScanReport.Problem> problems = new ArrayList<>();
+        final List<ChunkState> chunks = new ArrayList<>();
+        int unverified = 0;
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            // An empty file is a new region file which has no header written yet
+            if(fileSize == 0) return new FileResult(0, 0, 0, false, problems);
+            if(fileSize < RegionFile.HEADER_SIZE) {
+                final ScanReport.Problem problem = createProblem(task, relativePath, ScanReport.Type.BAD_HEADER, "The file has only "+ fileSize +" bytes.");
+                problem.wholeFile = true;
+                problems.add(problem);
+                if(quarantinePath != null) {
+                    // There is no room for any chunk data in the file, so nothing is lost by removing it
+                    quarantine(file, quarantinePath);
+                    Files.delete(file);
+                    problem.action = ScanReport.Action.QUARANTINED;
+                }
+                return new FileResult(0, 0, 0, quarantinePath != null, problems);
+            }
+
+            final ByteBuffer header = RegionFile.readFully(channel, 0, RegionFile.HEADER_SIZE);
+            for(RegionFile.ChunkLocation location : RegionFile.readLocations(header)) {
+                final ChunkState chunk = new ChunkState(location, coords[0] * 32 + location.getLocalX(), coords[1] * 32 + location.getLocalZ());
+                chunks.add(chunk);
+                try {
+                    if(!checkChunk(channel, fileSize, task, chunk, relativePath, problems)) unverified++;
+                } catch (IOException e) {
+                    chunk.broken = true;
+                    problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.UNDECODABLE, e.getMessage()));
+                }
+            }
+        }
+
+        // Sectors shared by more than one chunk, the game would overwrite one with the other
+        final List<ChunkState> placed = new ArrayList<>();
+        for(ChunkState chunk : chunks) {
+            if(chunk.location.sectorOffset >= 2 && chunk.location.sectorCount > 0) placed.add(chunk);
+        }
+        placed.sort(Comparator.comparingInt(chunk -> chunk.location.sectorOffset));
+        final Set<ChunkState> overlapping = new LinkedHashSet<>();
+        ChunkState farthest = null;
+        for(ChunkState chunk : placed) {
+            if(farthest != null && chunk.location.sectorOffset < farthest.location.sectorOffset + farthest.location.sectorCount) {
+                overlapping.add(farthest);
+                overlapping.add(chunk);
+            }
+            if(farthest == null || chunk.location.sectorOffset + chunk.location.sectorCount > farthest.location.sectorOffset + farthest.location.sectorCount) {
+                farthest = chunk;
+            }
+        }
+        final List<ScanReport.Problem> overlapProblems = new ArrayList<>();
+        for(ChunkState chunk : overlapping) {
+            if(chunk.broken) continue;
+            overlapProblems.add(createProblem(task, relativePath, chunk, ScanReport.Type.OVERLAP, "Sectors "+ chunk.location.sectorOffset +"+"+ chunk.location.sectorCount +" are shared with another chunk."));
+        }
+        problems.addAll(overlapProblems);
+
+        final boolean[] drops = new boolean[RegionFile.CHUNK_COUNT];
+        int broken = 0;
+        for(ChunkState chunk : chunks) {
+            if(!chunk.broken) continue;
+            drops[chunk.location.index] = true;
+            broken++;
+        }
+
+        boolean repaired = false;
+        if(quarantinePath != null && (broken > 0 || !overlapProblems.isEmpty())) {
+            quarantine(file, quarantinePath);
+            for(ChunkState chunk : chunks) {
+                if(!chunk.broken || !chunk.external) continue;
+                final Path externalPath = file.resolveSibling(RegionFile.getExternalFileName(chunk.x, chunk.z));
+                if(Files.exists(externalPath)) {
+                    quarantine(externalPath, quarantinePath.resolveSibling(externalPath.getFileName()));
+                }
+            }
+            // Every kept chunk is copied into its own sectors, which also moves the overlapping chunks apart
+            RegionFile.rewrite(file, drops, false);
+            repaired = true;
+            for(ScanReport.Problem problem : problems) {
+                if(problem.type == ScanReport.Type.WRONG_LOCATION) continue;
+                problem.action = problem.type == ScanReport.Type.OVERLAP ? ScanReport.Action.RELOCATED : ScanReport.Action.QUARANTINED;
+            }
+        }
+        return new FileResult(chunks.size(), unverified, broken, repaired, problems);
+    }
+
+    /**
+     * Validate a chunk, and mark it as broken if it cannot be loaded.
+     * @return false if the data cannot be verified since its compression is not supported
+     */
+    private static boolean checkChunk(FileChannel channel, long fileSize, FileTask task, ChunkState chunk, String relativePath, List<ScanReport.Problem> problems) throws IOException {
+        final RegionFile.ChunkLocation location = chunk.location;
+        final long position = location.getPosition();
+        if(location.sectorOffset < 2 || location.sectorCount == 0) {
+            chunk.broken = true;
+            problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.INVALID_OFFSET, "Sectors "+ location.sectorOffset +"+"+ location.sectorCount +" are not valid."));
+            return true;
+        }
+        if(position + 5 > fileSize) {
+            chunk.broken = true;
+            problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.OUT_OF_FILE, "The chunk starts at "+ position +", but the file has only "+ fileSize +" bytes."));
+            return true;
+        }
+
+        final ByteBuffer head = RegionFile.readFully(channel, position, 5);
+        final int length = head.getInt(0);
+        final int type = head.get(4) & 0xff;
+        if(length <= 0 || (long) length + 4 > (long) location.sectorCount * RegionFile.SECTOR_SIZE || position + 4 + length > fileSize) {
+            chunk.broken = true;
+            problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.BAD_LENGTH, "Length "+ length +" does not fit in "+ location.sectorCount +" sectors or the file."));
+            return true;
+        }
+
+        final int compressionType = type & ~RegionFile.EXTERNAL_FLAG;
+        if(compressionType < RegionFile.COMPRESSION_GZIP || compressionType > RegionFile.COMPRESSION_LZ4) {
+            chunk.broken = true;
+            problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.BAD_COMPRESSION, "Unknown compression type "+ compressionType +"."));
+            return true;
+        }
+
+        final InputStream is;
+        if((type & RegionFile.EXTERNAL_FLAG) != 0) {
+            chunk.external = true;
+            final Path externalPath = task.file.resolveSibling(RegionFile.getExternalFileName(chunk.x, chunk.z));
+            if(!Files.exists(externalPath)) {
+                chunk.broken = true;
+                problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.MISSING_EXTERNAL, externalPath.getFileName() +" is missing."));
+                return true;
+            }
+            if(compressionType == RegionFile.COMPRESSION_LZ4) return false;
+            is = Files.newInputStream(externalPath);
+        } else {
+            if(compressionType == RegionFile.COMPRESSION_LZ4) return false;
+            is = new ByteArrayInputStream(RegionFile.readFully(channel, position + 5, length - 1).array());
+        }
+
+        // Read the whole NBT, so that a truncated or garbled tag anywhere is found
+        final Map<String, Object> values;
+        try(NbtReader reader = new NbtReader(RegionFile.openChunkStream(compressionType, is))) {
+            values = reader.read(task.terrain ? POSITION_PATHS : Set.of(), Integer.MAX_VALUE);
+        } catch (IOException e) {
+            chunk.broken = true;
+            problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.UNDECODABLE, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+            return true;
+        }
+
+        if(task.terrain) {
+            final Object x = values.containsKey("xPos") ? values.get("xPos") : values.get("Level.xPos");
+            final Object z = values.containsKey("zPos") ? values.get("zPos") : values.get("Level.zPos");
+            if(x instanceof Number xPos && z instanceof Number zPos && (xPos.intValue() != chunk.x || zPos.intValue() != chunk.z)) {
+                problems.add(createProblem(task, relativePath, chunk, ScanReport.Type.WRONG_LOCATION, "The chunk data is of "+ xPos +", "+ zPos +"."));
+            }
+        }
+        return true;
+    }
+
+    private static void quarantine(Path file, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    private static ScanReport.Problem createProblem(FileTask task, String relativePath, ScanReport.Type type, String message) {
+        final ScanReport.Problem problem = new ScanReport.Problem();
+        problem.dimension = task.dimension;
+        problem.file = relativePath;
+        problem.type = type;
+        problem.message = message;
+        return problem;
+    }
+
+    private static ScanReport.Problem createProblem(FileTask task, String relativePath, ChunkState chunk, ScanReport.Type type, String message) {
+        final ScanReport.Problem problem = createProblem(task, relativePath, type, message);
+        problem.x = chunk.x;
+        problem.z = chunk.z;
+        return problem;
+    }
+}
@@ -0,0 +1,311 @@
+package net.opanel.world;
+
+import net.opanel.logger.Loggable;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sizes of save folders, kept current without walking the whole folder on every request.
+ *
+ * The size of every directory (its direct files only) is remembered, and a `WatchService` marks
+ * the directories whose content has changed. Only those directories are listed again, in the background,
+ * and the last known size is returned in the meantime together with the time it was computed.
+ * If the folder cannot be watched, the size is recomputed when it is older than a minute.
+ */
+public class SaveSizeCache {
+    private static final long REFRESH_INTERVAL_MS = 10_000;
+    private static final long UNWATCHED_TTL_MS = 60_000;
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    private static SaveSizeCache instance;
+
+    public static class Entry {
+        public long size;
+        public long updatedAt;
+        public boolean stale;
+    }
+
+    private static class SaveState {
+        final Path rootPath;
+        final Map<Path, Long> dirSizes = new ConcurrentHashMap<>();
+        final Set<Path> dirtyDirs = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean refreshing = new AtomicBoolean(false);
+        volatile boolean fullRescan = true;
+        volatile boolean watched = true;
+        volatile long size = -1;
+        volatile long updatedAt = 0;
+
+        SaveState(Path rootPath) {
+            this.rootPath = rootPath;
+        }
+
+        boolean isStale() {
+            return fullRescan || !dirtyDirs.isEmpty() || (!watched && System.currentTimeMillis() - updatedAt > UNWATCHED_TTL_MS);
+        }
+    }
+
+    private record WatchedDir(SaveState state, Path dirPath) { }
+
+    private final Map<Path, SaveState> states = new ConcurrentHashMap<>();
+    private final Map<WatchKey, WatchedDir> watchKeys = new ConcurrentHashMap<>();
+    private final Loggable logger;
+    private WatchService watchService;
+
+    private SaveSizeCache(Loggable logger) {
+        this.logger = logger;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(this::watch, "OPanel Size Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Cannot watch save folders, sizes will be recomputed periodically: "+ e.getMessage());
+            watchService = null;
+        }
+    }
+
+    // Called by OPanel on startup, before any save size is requested
+    public static synchronized void init(Loggable logger) {
+        instance = new SaveSizeCache(logger);
+    }
+
+    public static synchronized SaveSizeCache get() {
+        if(instance == null) {
+            throw new IllegalStateException("The save size cache has not been initialized.");
+        }
+        return instance;
+    }
+
+    /**
+     * Get the size of the save folder. It is computed on the first call,
+     * later calls return the last known size at once and refresh it in the background if it is stale.
+     */
+    public Entry getEntry(Path savePath) throws IOException {
+        final Path rootPath = savePath.toAbsolutePath().normalize();
+        if(!Files.isDirectory(rootPath)) {
+            remove(rootPath);
+            throw new IOException("Cannot find the directory.");
+        }
+
+        final SaveState state = states.computeIfAbsent(rootPath, SaveState::new);
+        if(state.size < 0) {
+            synchronized(state) {
+                if(state.size < 0) refresh(state);
+            }
+        } else if(state.isStale() && System.currentTimeMillis() - state.updatedAt > REFRESH_INTERVAL_MS) {
+            refreshAsync(state);
+        }
+
+        final Entry entry = new Entry();
+        entry.size = state.size;
+        entry.updatedAt = state.updatedAt;
+        entry.stale = state.isStale();
+        return entry;
+    }
+
+    public long getSize(Path savePath) throws IOException {
+        return getEntry(savePath).size;
+    }
+
+    // Mark the save to be walked again after OPanel changes it, or forget it if it is deleted
+    public void invalidate(Path savePath) {
+        final Path rootPath = savePath.toAbsolutePath().normalize();
+        if(!Files.isDirectory(rootPath)) {
+            remove(rootPath);
+            return;
+        }
+        final SaveState state = states.get(rootPath);
+        if(state != null) state.fullRescan = true;
+    }
+
+    private void remove(Path rootPath) {
+        final SaveState state = states.remove(rootPath);
+        if(state == null) return;
+        watchKeys.entrySet().removeIf(entry -> {
+            if(entry.getValue().state != state) return false;
+            entry.getKey().cancel();
+            return true;
+        });
+    }
+
+    private void refreshAsync(SaveState state) {
+        if(!state.refreshing.compareAndSet(false, true)) return;
+        pool.execute(() -> {
+            try {
+                synchronized(state) {
+                    refresh(state);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to compute the size of "+ state.rootPath +": "+ e.getMessage());
+            } finally {
+                state.refreshing.set(false);
+            }
+        });
+    }
+
+    private void refresh(SaveState state) throws IOException {
+        if(state.fullRescan || !state.watched) {
+            // Events arriving from now on are kept for the next refresh
+            state.fullRescan = false;
+            state.dirtyDirs.clear();
+            final Map<Path, Long> dirSizes = new ConcurrentHashMap<>();
+            walk(state, state.rootPath, dirSizes);
+            state.dirSizes.clear();
+            state.dirSizes.putAll(dirSizes);
+        } else {
+            final List<Path> dirtyDirs = new ArrayList<>(state.dirtyDirs);
+            state.dirtyDirs.removeAll(dirtyDirs);
+            for(Path dirPath : dirtyDirs) {
+                if(Files.isDirectory(dirPath)) {
+                    if(state.dirSizes.containsKey(dirPath)) {
+                        state.dirSizes.put(dirPath, getDirectFilesSize(dirPath));
+                    } else {
+                        walk(state, dirPath, state.dirSizes); // a new directory
+                    }
+                } else {
+                    // The directory is deleted, so are its subdirectories
+                    state.dirSizes.keySet().removeIf(path -> path.startsWith(dirPath));
+                }
+            }
+        }
+
+        long size = 0;
+        for(long dirSize : state.dirSizes.values()) size += dirSize;
+        state.size = size;
+        state.updatedAt = System.currentTimeMillis();
+    }
+
+    // Compute the directory sizes of the folder in parallel, and watch every directory of it
+    private void walk(SaveState state, Path dirPath, Map<Path, Long> dirSizes) throws IOException {
+        final DirectoryTask task = new DirectoryTask(this, state, dirPath, dirSizes);
+        pool.invoke(task);
+        if(task.exception != null) throw task.exception;
+    }
+
+    private void register(SaveState state, Path dirPath) {
+        if(watchService == null) {
+            state.watched = false;
+            return;
+        }
+        try {
+            final WatchKey key = dirPath.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(key, new WatchedDir(state, dirPath));
+        } catch (IOException e) {
+            // e.g. the inotify watch limit is reached
+            state.watched = false;
+        }
+    }
+
+    private void watch() {
+        while(true) {
+            final WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            final WatchedDir watched = watchKeys.get(key);
+            if(watched != null) {
+                for(WatchEvent<?> event : key.pollEvents()) {
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        watched.state.fullRescan = true;
+                        continue;
+                    }
+                    watched.state.dirtyDirs.add(watched.dirPath);
+                    // A new or deleted subdirectory is walked or dropped on refresh
+                    final Path childPath = watched.dirPath.resolve((Path) event.context());
+                    if(event.kind() != StandardWatchEventKinds.ENTRY_MODIFY && (Files.isDirectory(childPath) || watched.state.dirSizes.containsKey(childPath))) {
+                        watched.state.dirtyDirs.add(childPath);
+                    }
+                }
+            } else {
+                key.pollEvents();
+            }
+
+            if(!key.reset()) {
+                watchKeys.remove(key);
+                if(watched != null && watched.dirPath.equals(watched.state.rootPath)) {
+                    remove(watched.state.rootPath);
+                }
+            }
+        }
+    }
+
+    private static long getDirectFilesSize(Path dirPath) throws IOException {
+        long size = 0;
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dirPath)) {
+            for(Path path : stream) {
+                try {
+                    final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if(attrs.isRegularFile()) size += attrs.size();
+                } catch (NoSuchFileException e) {
+                    // deleted while listing
+                }
+            }
+        }
+        return size;
+    }
+
+    private static class DirectoryTask extends RecursiveAction {
+        private final SaveSizeCache cache;
+        private final SaveState state;
+        private final Path dirPath;
+        private final Map<Path, Long> dirSizes;
+        IOException exception;
+
+        DirectoryTask(SaveSizeCache cache, SaveState state, Path dirPath, Map<Path, Long> dirSizes) {
+            this.cache = cache;
+            this.state = state;
+            this.dirPath = dirPath;
+            this.dirSizes = dirSizes;
+        }
+
+        @Override
+        protected void compute() {
+            cache.register(state, dirPath);
+            final List<DirectoryTask> subtasks = new ArrayList<>();
+            long size = 0;
+            try(DirectoryStream<Path> stream = Files.newDirectoryStream(dirPath)) {
+                for(Path path : stream) {
+                    try {
+                        final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if(attrs.isRegularFile()) {
+                            size += attrs.size();
+                        } else if(attrs.isDirectory()) {
+                            subtasks.add(new DirectoryTask(cache, state, path, dirSizes));
+                        }
+                    } catch (NoSuchFileException e) {
+                        // deleted while walking
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return;
+            } catch (IOException e) {
+                exception = e;
+                return;
+            }
+            dirSizes.put(dirPath, size);
+
+            invokeAll(subtasks);
+            for(DirectoryTask subtask : subtasks) {
+                if(subtask.exception != null) {
+                    exception = subtask.exception;
+                    return;
+                }
+            }
+        }
+    }
+}
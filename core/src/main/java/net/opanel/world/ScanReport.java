@@ -0,0 +1,50 @@
+package net.opanel.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Integrity problems found in the region files of a world, and what the repair did to them.
+ */
+public class ScanReport {
+    public enum Type {
+        BAD_HEADER, // the file is shorter than the location and timestamp tables
+        INVALID_OFFSET, // the chunk points into the header
+        OUT_OF_FILE, // the chunk starts after the end of the file
+        OVERLAP, // the chunk shares sectors with another chunk
+        BAD_LENGTH, // the length field is not positive, or exceeds the sectors or the file
+        BAD_COMPRESSION,
+        MISSING_EXTERNAL, // the .mcc file of an oversized chunk is missing
+        UNDECODABLE, // the data cannot be decompressed or parsed as NBT
+        WRONG_LOCATION // the coordinates in the chunk don't match its slot, the game relocates it
+    }
+
+    public enum Action { NONE, RELOCATED, QUARANTINED }
+
+    public String save;
+    public boolean repair;
+    public boolean running; // results of a running save can include chunks being written
+    public long time;
+    public long elapsedMillis;
+    public int files;
+    public int chunks;
+    public int unverifiedChunks; // LZ4 chunks, which cannot be decompressed
+    public int brokenFiles;
+    public int brokenChunks;
+    public int repairedFiles;
+    public int quarantinedChunks;
+    public String quarantinePath;
+    public int problemCount;
+    public List<Problem> problems = new ArrayList<>(); // at most RegionScanner.MAX_PROBLEMS
+
+    public static class Problem {
+        public String dimension;
+        public String file; // relative to the server folder
+        public boolean wholeFile;
+        public int x; // chunk coordinates
+        public int z;
+        public Type type;
+        public String message;
+        public Action action = Action.NONE;
+    }
+}
@@ -0,0 +1,33 @@
+package net.opanel.world;
+
+/**
+ * Progress of a region scan running in the background.
+ */
+public class ScanTask {
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    public final String id;
+    public final String save;
+    public final boolean repair;
+    public volatile State state = State.QUEUED;
+    public volatile int totalFiles;
+    public volatile int doneFiles;
+    public volatile long startTime;
+    public volatile long endTime;
+    public volatile String error;
+    public volatile ScanReport report;
+
+    public ScanTask(String id, String save, boolean repair) {
+        this.id = id;
+        this.save = save;
+        this.repair = repair;
+    }
+
+    public boolean isActive() {
+        return state == State.QUEUED || state == State.RUNNING;
+    }
+
+    synchronized void onFile() {
+        doneFiles++;
+    }
+}
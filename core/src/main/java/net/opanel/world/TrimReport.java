@@ -0,0 +1,33 @@
+package net.opanel.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a world trim removes, or would remove in a dry run.
+ * The sizes include the entities and POI region files trimmed along with the terrain.
+ */
+public class TrimReport {
+    public String save;
+    public boolean dryRun;
+    public long elapsedMillis;
+    public int regions;
+    public int regionsRewritten;
+    public int regionsDeleted;
+    public int chunks;
+    public int chunksDropped;
+    public long bytesBefore;
+    public long bytesAfter;
+    public List<Dimension> dimensions = new ArrayList<>();
+
+    public static class Dimension {
+        public String name;
+        public int regions;
+        public int regionsRewritten;
+        public int regionsDeleted;
+        public int chunks;
+        public int chunksDropped;
+        public long bytesBefore;
+        public long bytesAfter;
+    }
+}
@@ -0,0 +1,215 @@
+package net.opanel.world;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Delete the chunks that were barely visited from a world which is not running, the game generates them again when needed.
+ *
+ * Region files are trimmed in parallel, and each one is replaced atomically with the kept chunks only.
+ * The entities and POI region files are trimmed along with the terrain, so nothing is left in the dropped chunks.
+ */
+public class WorldTrimmer {
+    private static final String[] RELATED_FOLDERS = {"entities", "poi"};
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+    // An area in block coordinates, the bounds are inclusive
+    public static class Area {
+        public String dimension; // null for all dimensions
+        public int minX;
+        public int minZ;
+        public int maxX;
+        public int maxZ;
+
+        boolean appliesTo(String dimensionName) {
+            return dimension == null || dimension.equals(dimensionName);
+        }
+
+        boolean containsChunk(int chunkX, int chunkZ) {
+            return chunkX * 16 + 15 >= Math.min(minX, maxX) && chunkX * 16 <= Math.max(minX, maxX)
+                    && chunkZ * 16 + 15 >= Math.min(minZ, maxZ) && chunkZ * 16 <= Math.max(minZ, maxZ);
+        }
+    }
+
+    public static class Options {
+        public boolean dryRun = true;
+        // Chunks with less InhabitedTime (in ticks) are dropped, -1 to disable
+        public long minInhabitedTime = -1;
+        // Chunks outside all the bounds of their dimension are dropped, dimensions without bounds are not affected
+        public List<Area> bounds = new ArrayList<>();
+        // Chunks touching these areas are always kept
+        public List<Area> protectedAreas = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return minInhabitedTime < 0 && (bounds == null || bounds.isEmpty());
+        }
+    }
+
+    private record RegionTask(String dimension, Path file) { }
+
+    private record RegionResult(int chunks, int dropped, long bytesBefore, long bytesAfter) { }
+
+    public static TrimReport trim(String saveName, Map<String, Path> dimensions, Options options) throws IOException {
+        if(options.bounds == null) options.bounds = new ArrayList<>();
+        if(options.protectedAreas == null) options.protectedAreas = new ArrayList<>();
+        final long startTime = System.currentTimeMillis();
+
+        final List<RegionTask> tasks = new ArrayList<>();
+        for(Map.Entry<String, Path> entry : dimensions.entrySet()) {
+            try(Stream<Path> stream = Files.list(entry.getValue())) {
+                stream.filter(path -> RegionFile.parseRegionCoords(path.getFileName().toString()) != null)
+                        .sorted()
+                        .forEach(path -> tasks.add(new RegionTask(entry.getKey(), path)));
+            }
+        }
+
+        final List<RegionResult> results;
+        try {
+            results = pool.submit(() -> tasks.parallelStream().map(task -> {
+                try {
+                    return trimRegion(task.dimension, task.file, options);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("World trimming is interrupted.");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof UncheckedIOException ioe) throw ioe.getCause();
+            throw new IOException(e.getCause());
+        }
+
+        final TrimReport report = new TrimReport();
+        report.save = saveName;
+        report.dryRun = options.dryRun;
+        final Map<String, TrimReport.Dimension> dimensionReports = new LinkedHashMap<>();
+        for(String name : dimensions.keySet()) {
+            final TrimReport.Dimension dimension = new TrimReport.Dimension();
+            dimension.name = name;
+            dimensionReports.put(name, dimension);
+        }
+        for(int i = 0; i < tasks.size(); i++) {
+            final RegionResult result = results.get(i);
+            final TrimReport.Dimension dimension = dimensionReports.get(tasks.get(i).dimension);
+            dimension.regions++;
+            dimension.chunks += result.chunks;
+            dimension.chunksDropped += result.dropped;
+            dimension.bytesBefore += result.bytesBefore;
+            dimension.bytesAfter += result.bytesAfter;
+            if(result.dropped > 0 && result.dropped == result.chunks) {
+                dimension.regionsDeleted++;
+            } else if(result.dropped > 0) {
+                dimension.regionsRewritten++;
+            }
+        }
+        for(TrimReport.Dimension dimension : dimensionReports.values()) {
+            report.dimensions.add(dimension);
+            report.regions += dimension.regions;
+            report.regionsRewritten += dimension.regionsRewritten;
+            report.regionsDeleted += dimension.regionsDeleted;
+            report.chunks += dimension.chunks;
+            report.chunksDropped += dimension.chunksDropped;
+            report.bytesBefore += dimension.bytesBefore;
+            report.bytesAfter += dimension.bytesAfter;
+        }
+        report.elapsedMillis = System.currentTimeMillis() - startTime;
+        return report;
+    }
+
+    private static RegionResult trimRegion(String dimension, Path file, Options options) throws IOException {
+        final int[] coords = RegionFile.parseRegionCoords(file.getFileName().toString());
+        final List<Path> files = new ArrayList<>();
+        files.add(file);
+        for(String folder : RELATED_FOLDERS) {
+            final Path relatedFile = file.getParent().resolveSibling(folder).resolve(file.getFileName());
+            if(Files.exists(relatedFile)) files.add(relatedFile);
+        }
+        long bytesBefore = 0;
+        for(Path path : files) bytesBefore += Files.size(path);
+
+        // Decide by the terrain chunks
+        final boolean[] drops = new boolean[RegionFile.CHUNK_COUNT];
+        int chunks = 0;
+        int dropped = 0;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if(fileSize < RegionFile.HEADER_SIZE) return new RegionResult(0, 0, bytesBefore, bytesBefore);
+            final ByteBuffer header = RegionFile.readFully(channel, 0, RegionFile.HEADER_SIZE);
+            for(RegionFile.ChunkLocation location : RegionFile.readLocations(header)) {
+                chunks++;
+                final int chunkX = coords[0] * 32 + location.getLocalX();
+                final int chunkZ = coords[1] * 32 + location.getLocalZ();
+                if(shouldDrop(dimension, chunkX, chunkZ, options, () -> readInhabitedTime(channel, fileSize, location, file, chunkX, chunkZ))) {
+                    drops[location.index] = true;
+                    dropped++;
+                }
+            }
+        }
+        if(dropped == 0) return new RegionResult(chunks, 0, bytesBefore, bytesBefore);
+
+        long bytesAfter = 0;
+        for(Path path : files) {
+            bytesAfter += RegionFile.rewrite(path, drops, options.dryRun);
+        }
+        return new RegionResult(chunks, dropped, bytesBefore, bytesAfter);
+    }
+
+    private interface InhabitedTimeReader {
+        long read() throws IOException;
+    }
+
+    private static boolean shouldDrop(String dimension, int chunkX, int chunkZ, Options options, InhabitedTimeReader reader) throws IOException {
+        for(Area area : options.protectedAreas) {
+            if(area.appliesTo(dimension) && area.containsChunk(chunkX, chunkZ)) return false;
+        }
+
+        boolean hasBounds = false;
+        boolean inBounds = false;
+        for(Area area : options.bounds) {
+            if(!area.appliesTo(dimension)) continue;
+            hasBounds = true;
+            if(area.containsChunk(chunkX, chunkZ)) {
+                inBounds = true;
+                break;
+            }
+        }
+        if(hasBounds && !inBounds) return true;
+
+        if(options.minInhabitedTime >= 0) {
+            final long inhabitedTime = reader.read();
+            // Unreadable chunks are kept
+            return inhabitedTime >= 0 && inhabitedTime < options.minInhabitedTime;
+        }
+        return false;
+    }
+
+    private static long readInhabitedTime(FileChannel channel, long fileSize, RegionFile.ChunkLocation location, Path file, int chunkX, int chunkZ) throws IOException {
+        final long position = location.getPosition();
+        if(location.sectorOffset < 2 || position + 5 > fileSize) return -1;
+        final ByteBuffer head = RegionFile.readFully(channel, position, 5);
+        final int length = head.getInt(0);
+        final int type = head.get(4) & 0xff;
+        if(length <= 0 || position + 4 + length > fileSize) return -1;
+
+        final InputStream is;
+        if((type & RegionFile.EXTERNAL_FLAG) != 0) {
+            final Path externalPath = file.resolveSibling(RegionFile.getExternalFileName(chunkX, chunkZ));
+            if(!Files.exists(externalPath)) return -1;
+            is = Files.newInputStream(externalPath);
+        } else {
+            is = new ByteArrayInputStream(RegionFile.readFully(channel, position + 5, length - 1).array());
+        }
+        return RegionAnalyzer.readInhabitedTime(type & ~RegionFile.EXTERNAL_FLAG, is);
+    }
+
+}
@@ -4,11 +4,11 @@ import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtIo;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.WorldSavePath;
-import net.minecraft.world.GameMode;
 import net.opanel.common.OPanelGameMode;
 import net.opanel.common.OPanelSave;
 import net.opanel.common.OPanelServer;
 import net.opanel.utils.Utils;
+import net.opanel.world.LevelData;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -23,14 +23,14 @@ public class FabricSave implements OPanelSave {
     public FabricSave(MinecraftServer server, Path path) {
         this.server = server;
         savePath = path;
-        try {
-            nbt = NbtIo.readCompressed(savePath.resolve("level.dat").toFile())
-                    .getCompound("Data");
-            if(nbt.isEmpty()) {
-                throw new IOException("Cannot find a valid level.dat");
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    }
+
+    // level.dat is only fully parsed before it is modified, reading goes through LevelData
+    private void loadNbt() throws IOException {
+        nbt = NbtIo.readCompressed(savePath.resolve("level.dat").toFile())
+                .getCompound("Data");
+        if(nbt.isEmpty()) {
+            throw new IOException("Cannot find a valid level.dat");
         }
     }
 
@@ -38,6 +38,7 @@ public class FabricSave implements OPanelSave {
         NbtCompound dataNbt = new NbtCompound();
         dataNbt.put("Data", nbt);
         NbtIo.writeCompressed(dataNbt, savePath.resolve("level.dat").toFile());
+        LevelData.invalidate(savePath);
     }
 
     @Override
@@ -47,11 +48,12 @@ public class FabricSave implements OPanelSave {
 
     @Override
     public String getDisplayName() {
-        return nbt.getString("LevelName").replaceAll("\u00C2", "");
+        return getLevelData().levelName.replaceAll("\u00C2", "");
     }
 
     @Override
     public void setDisplayName(String displayName) throws IOException {
+        loadNbt();
         nbt.putString("LevelName", displayName);
         saveNbt();
     }
@@ -86,18 +88,12 @@ public class FabricSave implements OPanelSave {
 
     @Override
     public OPanelGameMode getDefaultGameMode() {
-        GameMode gamemode = GameMode.byId(nbt.getInt("GameType"));
-        switch(gamemode) {
-            case ADVENTURE -> { return OPanelGameMode.ADVENTURE; }
-            case SURVIVAL -> { return OPanelGameMode.SURVIVAL; }
-            case CREATIVE -> { return OPanelGameMode.CREATIVE; }
-            case SPECTATOR -> { return OPanelGameMode.SPECTATOR; }
-        }
-        return null;
+        return getLevelData().getGameMode();
     }
 
     @Override
     public void setDefaultGameMode(OPanelGameMode gamemode) throws IOException {
+        loadNbt();
         switch(gamemode) {
             case ADVENTURE -> nbt.putInt("GameType", 2);
             case SURVIVAL -> nbt.putInt("GameType", 0);
@@ -4,7 +4,10 @@ import net.fabricmc.api.DedicatedServerModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.opanel.*;
 import net.opanel.config.OPanelConfiguration;
 import net.opanel.fabric_1_21_2.command.OPanelCommand;
@@ -32,6 +35,8 @@ public class Main implements DedicatedServerModInitializer {
         ServerLifecycleEvents.SERVER_STARTED.register(this::onServerStart);
         ServerLifecycleEvents.SERVER_STOPPING.register(this::onServerStop);
         ServerTickEvents.START_SERVER_TICK.register(this::onServerTick);
+        ServerPlayConnectionEvents.JOIN.register(this::onPlayerJoin);
+        ServerPlayConnectionEvents.DISCONNECT.register(this::onPlayerLeave);
 
         CommandRegistrationCallback.EVENT.register(new OPanelCommand(instance));
     }
@@ -77,4 +82,12 @@ public class Main implements DedicatedServerModInitializer {
     private void onServerTick(MinecraftServer server) {
         instance.onTick();
     }
+
+    private void onPlayerJoin(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
+        instance.onPlayerJoin(handler.getPlayer().getUuidAsString(), handler.getPlayer().getGameProfile().getName());
+    }
+
+    private void onPlayerLeave(ServerPlayNetworkHandler handler, MinecraftServer server) {
+        instance.onPlayerLeave(handler.getPlayer().getUuidAsString(), handler.getPlayer().getGameProfile().getName());
+    }
 }
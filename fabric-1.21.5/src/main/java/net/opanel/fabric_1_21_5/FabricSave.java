@@ -5,11 +5,11 @@ import net.minecraft.nbt.NbtIo;
 import net.minecraft.nbt.NbtSizeTracker;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.WorldSavePath;
-import net.minecraft.world.GameMode;
 import net.opanel.common.OPanelGameMode;
 import net.opanel.common.OPanelSave;
 import net.opanel.common.OPanelServer;
 import net.opanel.utils.Utils;
+import net.opanel.world.LevelData;
 import org.intellij.lang.annotations.RegExp;
 
 import java.io.FileInputStream;
@@ -28,22 +28,23 @@ public class FabricSave implements OPanelSave {
     public FabricSave(MinecraftServer server, Path path) {
         this.server = server;
         savePath = path;
-        try {
-            Optional<NbtCompound> optionalNbt = NbtIo.readCompressed(savePath.resolve("level.dat"), NbtSizeTracker.of(2097152L)) // 2 MB
-                    .get("Data").asCompound();
-            if(optionalNbt.isEmpty()) {
-                throw new IOException("Cannot find a valid level.dat");
-            }
-            nbt = optionalNbt.get();
-        } catch (IOException e) {
-            e.printStackTrace();
+    }
+
+    // level.dat is only fully parsed before it is modified, reading goes through LevelData
+    private void loadNbt() throws IOException {
+        Optional<NbtCompound> optionalNbt = NbtIo.readCompressed(savePath.resolve("level.dat"), NbtSizeTracker.of(2097152L)) // 2 MB
+                .get("Data").asCompound();
+        if(optionalNbt.isEmpty()) {
+            throw new IOException("Cannot find a valid level.dat");
         }
+        nbt = optionalNbt.get();
     }
 
     private void saveNbt() throws IOException {
         NbtCompound dataNbt = new NbtCompound();
         dataNbt.put("Data", nbt);
         NbtIo.writeCompressed(dataNbt, savePath.resolve("level.dat"));
+        LevelData.invalidate(savePath);
     }
 
     @Override
@@ -53,11 +54,12 @@ public class FabricSave implements OPanelSave {
 
     @Override
     public String getDisplayName() {
-        return nbt.getString("LevelName", "world").replaceAll("\u00C2", "");
+        return getLevelData().levelName.replaceAll("\u00C2", "");
     }
 
     @Override
     public void setDisplayName(String displayName) throws IOException {
+        loadNbt();
         nbt.putString("LevelName", displayName);
         saveNbt();
     }
@@ -92,18 +94,12 @@ public class FabricSave implements OPanelSave {
 
     @Override
     public OPanelGameMode getDefaultGameMode() {
-        GameMode gamemode = GameMode.byIndex(nbt.getInt("GameType", 0));
-        switch(gamemode) {
-            case ADVENTURE -> { return OPanelGameMode.ADVENTURE; }
-            case SURVIVAL -> { return OPanelGameMode.SURVIVAL; }
-            case CREATIVE -> { return OPanelGameMode.CREATIVE; }
-            case SPECTATOR -> { return OPanelGameMode.SPECTATOR; }
-        }
-        return null;
+        return getLevelData().getGameMode();
     }
 
     @Override
     public void setDefaultGameMode(OPanelGameMode gamemode) throws IOException {
+        loadNbt();
         switch(gamemode) {
             case ADVENTURE -> nbt.putInt("GameType", 2);
             case SURVIVAL -> nbt.putInt("GameType", 0);
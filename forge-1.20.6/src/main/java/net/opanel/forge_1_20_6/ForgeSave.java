@@ -10,6 +10,7 @@ import net.opanel.common.OPanelGameMode;
 import net.opanel.common.OPanelSave;
 import net.opanel.common.OPanelServer;
 import net.opanel.utils.Utils;
+import net.opanel.world.LevelData;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -26,14 +27,14 @@ public class ForgeSave implements OPanelSave {
     public ForgeSave(MinecraftServer server, Path path) {
         this.server = server;
         savePath = path;
-        try {
-            nbt = NbtIo.readCompressed(savePath.resolve("level.dat"), NbtAccounter.create(2097152L)) // 2 MB
-                    .getCompound("Data");
-            if(nbt.isEmpty()) {
-                throw new IOException("Cannot find a valid level.dat");
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    }
+
+    // level.dat is only fully parsed before it is modified, reading goes through LevelData
+    private void loadNbt() throws IOException {
+        nbt = NbtIo.readCompressed(savePath.resolve("level.dat"), NbtAccounter.create(2097152L)) // 2 MB
+                .getCompound("Data");
+        if(nbt.isEmpty()) {
+            throw new IOException("Cannot find a valid level.dat");
         }
     }
 
@@ -41,6 +42,7 @@ public class ForgeSave implements OPanelSave {
         CompoundTag dataNbt = new CompoundTag();
         dataNbt.put("Data", nbt);
         NbtIo.writeCompressed(dataNbt, savePath.resolve("level.dat"));
+        LevelData.invalidate(savePath);
     }
 
     @Override
@@ -50,11 +52,12 @@ public class ForgeSave implements OPanelSave {
 
     @Override
     public String getDisplayName() {
-        return nbt.getString("LevelName").replaceAll("\u00C2", "");
+        return getLevelData().levelName.replaceAll("\u00C2", "");
     }
 
     @Override
     public void setDisplayName(String displayName) throws IOException {
+        loadNbt();
         nbt.putString("LevelName", displayName);
         saveNbt();
     }
@@ -89,18 +92,12 @@ public class ForgeSave implements OPanelSave {
 
     @Override
     public OPanelGameMode getDefaultGameMode() {
-        GameType gamemode = GameType.byId(nbt.getInt("GameType"));
-        switch(gamemode) {
-            case ADVENTURE -> { return OPanelGameMode.ADVENTURE; }
-            case SURVIVAL -> { return OPanelGameMode.SURVIVAL; }
-            case CREATIVE -> { return OPanelGameMode.CREATIVE; }
-            case SPECTATOR -> { return OPanelGameMode.SPECTATOR; }
-        }
-        return null;
+        return getLevelData().getGameMode();
     }
 
     @Override
     public void setDefaultGameMode(OPanelGameMode gamemode) throws IOException {
+        loadNbt();
         switch(gamemode) {
             case ADVENTURE -> nbt.putInt("GameType", 2);
             case SURVIVAL -> nbt.putInt("GameType", 0);
@@ -5,6 +5,7 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.server.ServerStartedEvent;
 import net.minecraftforge.event.server.ServerStartingEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
@@ -91,4 +92,16 @@ public class Main {
 
         instance.onTick();
     }
+
+    @SubscribeEvent
+    public void onPlayerJoin(PlayerEvent.PlayerLoggedInEvent event) {
+        if(instance == null) return;
+        instance.onPlayerJoin(event.getEntity().getStringUUID(), event.getEntity().getGameProfile().getName());
+    }
+
+    @SubscribeEvent
+    public void onPlayerLeave(PlayerEvent.PlayerLoggedOutEvent event) {
+        if(instance == null) return;
+        instance.onPlayerLeave(event.getEntity().getStringUUID(), event.getEntity().getGameProfile().getName());
+    }
 }
@@ -119,6 +119,16 @@ public class ForgeServer implements OPanelServer {
         server.saveEverything(true, true, true);
     }
 
+    @Override
+    public void runTask(Runnable task) {
+        server.execute(task);
+    }
+
+    @Override
+    public boolean isAutoSaveEnabled() {
+        return !server.overworld().noSave;
+    }
+
     @Override
     public List<OPanelPlayer> getOnlinePlayers() {
         List<OPanelPlayer> list = new ArrayList<>();
@@ -165,12 +175,21 @@ public class ForgeServer implements OPanelServer {
 
     @Override
     public OPanelPlayer getPlayer(String uuid) {
-        for(OPanelPlayer player : getPlayers()) {
-            if(player.getUUID().equals(uuid)) {
-                return player;
-            }
+        final UUID id;
+        try {
+            id = UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        // Look up the player directly instead of enumerating all players
+        ServerPlayer serverPlayer = server.getPlayerList().getPlayer(id);
+        if(serverPlayer != null && !serverPlayer.hasDisconnected()) return new ForgePlayer(serverPlayer);
+        try {
+            return new ForgeOfflinePlayer(server, id);
+        } catch (NullPointerException | IllegalStateException e) {
+            return null;
         }
-        return null;
     }
 
     @Override
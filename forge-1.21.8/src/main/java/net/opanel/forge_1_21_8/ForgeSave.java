@@ -10,6 +10,7 @@ import net.opanel.common.OPanelGameMode;
 import net.opanel.common.OPanelSave;
 import net.opanel.common.OPanelServer;
 import net.opanel.utils.Utils;
+import net.opanel.world.LevelData;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -26,22 +27,23 @@ public class ForgeSave implements OPanelSave {
     public ForgeSave(MinecraftServer server, Path path) {
         this.server = server;
         savePath = path;
-        try {
-            Optional<CompoundTag> optionalNbt = NbtIo.readCompressed(savePath.resolve("level.dat"), NbtAccounter.create(2097152L)) // 2 MB
-                    .get("Data").asCompound();
-            if(optionalNbt.isEmpty()) {
-                throw new IOException("Cannot find a valid level.dat");
-            }
-            nbt = optionalNbt.get();
-        } catch (IOException e) {
-            e.printStackTrace();
+    }
+
+    // level.dat is only fully parsed before it is modified, reading goes through LevelData
+    private void loadNbt() throws IOException {
+        Optional<CompoundTag> optionalNbt = NbtIo.readCompressed(savePath.resolve("level.dat"), NbtAccounter.create(2097152L)) // 2 MB
+                .get("Data").asCompound();
+        if(optionalNbt.isEmpty()) {
+            throw new IOException("Cannot find a valid level.dat");
         }
+        nbt = optionalNbt.get();
     }
 
     private void saveNbt() throws IOException {
         CompoundTag dataNbt = new CompoundTag();
         dataNbt.put("Data", nbt);
         NbtIo.writeCompressed(dataNbt, savePath.resolve("level.dat"));
+        LevelData.invalidate(savePath);
     }
 
     @Override
@@ -51,11 +53,12 @@ public class ForgeSave implements OPanelSave {
 
     @Override
     public String getDisplayName() {
-        return nbt.getStringOr("LevelName", "world").replaceAll("\u00C2", "");
+        return getLevelData().levelName.replaceAll("\u00C2", "");
     }
 
     @Override
     public void setDisplayName(String displayName) throws IOException {
+        loadNbt();
         nbt.putString("LevelName", displayName);
         saveNbt();
     }
@@ -90,18 +93,12 @@ public class ForgeSave implements OPanelSave {
 
     @Override
     public OPanelGameMode getDefaultGameMode() {
-        GameType gamemode = GameType.byId(nbt.getIntOr("GameType", 0));
-        switch(gamemode) {
-            case ADVENTURE -> { return OPanelGameMode.ADVENTURE; }
-            case SURVIVAL -> { return OPanelGameMode.SURVIVAL; }
-            case CREATIVE -> { return OPanelGameMode.CREATIVE; }
-            case SPECTATOR -> { return OPanelGameMode.SPECTATOR; }
-        }
-        return null;
+        return getLevelData().getGameMode();
     }
 
     @Override
     public void setDefaultGameMode(OPanelGameMode gamemode) throws IOException {
+        loadNbt();
         switch(gamemode) {
             case ADVENTURE -> nbt.putInt("GameType", 2);
             case SURVIVAL -> nbt.putInt("GameType", 0);
@@ -6,7 +6,7 @@ import { Earth, Upload } from "lucide-react";
 import { toast } from "sonner";
 import { SubPage } from "../sub-page";
 import { SaveCard } from "./save-card";
-import { sendGetRequest, toastError, uploadFile } from "@/lib/api";
+import { sendGetRequest, toastError, uploadFileChunked } from "@/lib/api";
 import { cn } from "@/lib/utils";
 import { Progress } from "@/components/ui/progress";
 import { emitter } from "@/lib/emitter";
@@ -43,12 +43,20 @@ export default function Saves() {
     }
 
     setUploadName(file.name);
+    // Resume the unfinished upload of the same file, e.g. after the page is reloaded
+    const uploadKey = `opanel.upload.${file.name}.${file.size}.${file.lastModified}`;
     try {
-      await uploadFile("/api/saves", file, (progress) => {
+      await uploadFileChunked(file, (progress) => {
         setUploadProgress(progress < 1 ? progress : null);
+      }, {
+        sessionId: localStorage.getItem(uploadKey) ?? undefined,
+        onSession: (id) => localStorage.setItem(uploadKey, id)
       });
+      localStorage.removeItem(uploadKey);
       fetchServerWorlds();
     } catch (e: any) {
+      // Keep the upload for resuming only if the server was unreachable
+      if(e.status) localStorage.removeItem(uploadKey);
       toastError(e, "上传失败", [
         [400, "存档格式不正确，请上传一个包含地图存档的zip文件"],
         [401, "未登录"],
@@ -13,7 +13,7 @@ import { useTerminal } from "@/hooks/use-terminal";
 import { TerminalConnector } from "@/components/terminal-connector";
 import { Button } from "@/components/ui/button";
 import { AutocompleteInput } from "@/components/autocomplete-input";
-import { getCurrentArgumentNumber } from "@/lib/utils";
+import { getCurrentArgumentNumber, getInputtedArgumentStr } from "@/lib/utils";
 import { Card } from "@/components/ui/card";
 import {
   Select,
@@ -70,9 +70,13 @@ export default function Terminal() {
     if(!inputRef.current || !client) return;
     const elem = inputRef.current;
 
+    const cursor = elem.selectionStart ?? 0;
     client.send({
       type: "autocomplete",
-      data: getCurrentArgumentNumber(elem.value, elem.selectionStart ?? 0)
+      data: {
+        arg: getCurrentArgumentNumber(elem.value, cursor),
+        prefix: getInputtedArgumentStr(elem.value, cursor)
+      }
     });
   }, [client]);
 
@@ -3,7 +3,7 @@ import { useEffect, useRef, useState } from "react";
 import { format } from "date-format-parse";
 import Convert from "ansi-to-html";
 import { cn } from "@/lib/utils";
-import { defaultLogLevel, getLogLevelId, type ConsoleLogLevel } from "@/lib/terminal/log-levels";
+import { defaultLogLevel, getLogLevelsFrom, type ConsoleLogLevel } from "@/lib/terminal/log-levels";
 import { getSettings } from "@/lib/settings";
 
 function Log({
@@ -13,11 +13,9 @@ function Log({
   source,
   line,
   thrownMessage,
-  simple,
-  visible
+  simple
 }: ConsoleLog & {
   simple?: boolean
-  visible: boolean
 }) {
   const sourceStrArr = source.split(".");
   const sourceName = sourceStrArr[sourceStrArr.length - 1];
@@ -39,8 +37,7 @@ function Log({
     <p
       className={cn(
         "leading-[133%] font-[Consolas] space-x-1",
-        getSettings("terminal.word-wrap") ? "text-wrap wrap-break-word whitespace-pre-wrap" : "whitespace-pre",
-        !visible ? "hidden" : ""
+        getSettings("terminal.word-wrap") ? "text-wrap wrap-break-word whitespace-pre-wrap" : "whitespace-pre"
       )}
       style={{ fontSize: getSettings("terminal.font-size") +"px" }}>
       {getSettings("terminal.log-time") && (
@@ -106,9 +103,8 @@ export function TerminalConnector({
     client.onMessage((type, data) => {
       switch(type) {
         case "init":
-          for(const item of data) {
-            pushLog(item);
-          }
+          // The backlog is sent again after subscribing, replace the current one
+          setLogs(data);
           break;
         case "log":
           pushLog(data);
@@ -118,6 +114,22 @@ export function TerminalConnector({
 
     return () => clearLogs();
   }, [client]);
+
+  useEffect(() => {
+    if(!client) return;
+
+    // Let the server filter the logs, it sends the backlog again with the new levels
+    const subscribe = () => client.send({
+      type: "subscribe",
+      data: { levels: getLogLevelsFrom(level ?? defaultLogLevel) }
+    });
+    if(client.isOpen()) {
+      subscribe();
+    } else {
+      // Sent after the auth packet, which is sent once the connection is open
+      client.onOpen(subscribe);
+    }
+  }, [client, level]);
   
   return (
     <div
@@ -127,7 +139,6 @@ export function TerminalConnector({
         <Log
           {...log}
           simple={simple}
-          visible={getLogLevelId(log.level) >= getLogLevelId(level ?? defaultLogLevel)}
           key={i}/>
       ))}
     </div>
@@ -2,6 +2,7 @@ import type { APIResponse } from "./types";
 import axios, { type AxiosError } from "axios";
 import { getCookie } from "cookies-next/client";
 import { toast } from "sonner";
+import { crc32 } from "./utils";
 
 export const apiUrl = (
   (process.env.NODE_ENV === "development")
@@ -102,3 +103,106 @@ export async function uploadFile(route: string, file: File, onProgress?: (progre
     onUploadProgress: (e) => onProgress && onProgress(e.progress ?? 0)
   })).data as APIResponse<never>;
 }
+
+interface UploadSessionResponse {
+  id: string
+  chunkSize: number
+  received: [number, number][]
+  receivedBytes: number
+}
+
+interface UploadOptions {
+  maxRetries?: number
+  /** Id of an unfinished upload of the same file to resume */
+  sessionId?: string
+  /** Called with the id of the upload once it is created, so that it can be resumed later */
+  onSession?: (id: string) => void
+}
+
+/** Ranges of the file which are not received by the server yet */
+function getMissingRanges(received: [number, number][], size: number): [number, number][] {
+  const missing: [number, number][] = [];
+  let position = 0;
+  for(const [start, end] of [...received].sort((a, b) => a[0] - b[0])) {
+    if(start > position) missing.push([position, start]);
+    position = Math.max(position, end);
+  }
+  if(position < size) missing.push([position, size]);
+  return missing;
+}
+
+/**
+ * Upload a large file in chunks with `/api/uploads`.
+ * A failed chunk is retried without sending the whole file again. When the retries run out,
+ * the received ranges are queried from the server, and the upload continues from the gaps.
+ */
+export async function uploadFileChunked(file: File, onProgress?: (progress: number) => void, options: UploadOptions = {}): Promise<APIResponse<never>> {
+  const { maxRetries = 5, sessionId, onSession } = options;
+  const headers = { "X-Credential-Token": getCookie("token") };
+  const wait = (retry: number) => new Promise((resolve) => setTimeout(resolve, 1000 * (retry + 1)));
+
+  let session: UploadSessionResponse | null = null;
+  if(sessionId) {
+    try {
+      session = await sendGetRequest<UploadSessionResponse>(`/api/uploads/${sessionId}`);
+    } catch (e: any) {
+      // The upload is expired or finished, start over
+      if(e.status !== 404) throw e;
+    }
+  }
+  if(!session) {
+    session = await sendPostRequest<UploadSessionResponse>("/api/uploads", { fileName: file.name, size: file.size });
+  }
+  const { id, chunkSize } = session;
+  onSession && onSession(id);
+
+  const sendChunk = async (offset: number, end: number, uploaded: number) => {
+    const chunk = new Uint8Array(await file.slice(offset, end).arrayBuffer());
+    const checksum = crc32(chunk).toString(16);
+    for(let retry = 0; ; retry++) {
+      try {
+        await axios.request({
+          method: "put",
+          maxBodyLength: Infinity,
+          url: `${apiUrl}/api/uploads/${id}?offset=${offset}`,
+          headers: { ...headers, "Content-Type": "application/octet-stream", "X-Chunk-Checksum": checksum },
+          data: chunk,
+          onUploadProgress: (e) => onProgress && onProgress((uploaded + e.loaded) / file.size)
+        });
+        return chunk.length;
+      } catch (e: any) {
+        if(retry >= maxRetries || e.status === 401 || e.status === 404) throw e;
+        await wait(retry);
+      }
+    }
+  };
+
+  let received = session.received ?? [];
+  let uploaded = session.receivedBytes ?? 0;
+  for(let round = 0; ; round++) {
+    try {
+      if(round > 0) {
+        // Ask the server what it has, some of the failed chunks may have arrived
+        const current = await sendGetRequest<UploadSessionResponse>(`/api/uploads/${id}`);
+        received = current.received;
+        uploaded = current.receivedBytes;
+      }
+      for(const [start, end] of getMissingRanges(received, file.size)) {
+        for(let offset = start; offset < end; offset += chunkSize) {
+          uploaded += await sendChunk(offset, Math.min(offset + chunkSize, end), uploaded);
+          onProgress && onProgress(uploaded / file.size);
+        }
+      }
+      break;
+    } catch (e: any) {
+      if(round >= maxRetries || e.status === 401 || e.status === 404) throw e;
+      await wait(round);
+    }
+  }
+
+  return (await axios.request({
+    method: "post",
+    url: `${apiUrl}/api/uploads/${id}/complete`,
+    headers
+  })).data as APIResponse<never>;
+}
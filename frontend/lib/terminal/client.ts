@@ -21,6 +21,7 @@ export interface TerminalPacket {
     /* client packet */
     | "auth"
     | "command"
+    | "subscribe"
     /* common packet */
     | "autocomplete"
   )
@@ -59,6 +60,10 @@ export class WebSocketClient {
     this.socket?.addEventListener("open", () => cb());
   }
 
+  public isOpen() {
+    return this.socket?.readyState === WebSocket.OPEN;
+  }
+
   public onMessage(cb: (type: "init" | "log" | "autocomplete", data: any) => void) {
     if(!this.socket) throw new Error("WebSocket not initialized.");
 
@@ -1,6 +1,7 @@
 import { getSettings } from "../settings";
 
 export type ConsoleLogLevel = "INFO" | "WARN" | "ERROR";
+export const logLevels: ConsoleLogLevel[] = ["INFO", "WARN", "ERROR"];
 export const defaultLogLevel: ConsoleLogLevel = getSettings("terminal.log-level");
 
 export function getLogLevelId(level: ConsoleLogLevel) {
@@ -10,3 +11,8 @@ export function getLogLevelId(level: ConsoleLogLevel) {
     case "ERROR": return 3;
   }
 }
+
+// The level and the ones above it
+export function getLogLevelsFrom(level: ConsoleLogLevel) {
+  return logLevels.filter((item) => getLogLevelId(item) >= getLogLevelId(level));
+}
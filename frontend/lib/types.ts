@@ -18,9 +18,12 @@ export interface Save {
   displayName: string
   path: string
   size: number
+  sizeUpdatedAt: number
   isRunning: boolean
   isCurrent: boolean
   defaultGameMode: GameMode
+  version?: string
+  lastPlayed: number
 }
 
 export interface Player {
@@ -102,3 +102,23 @@ export function base64ToString(base64: string): string {
   const bytes = Uint8Array.from(binStr, (char) => char.charCodeAt(0));
   return new TextDecoder().decode(bytes);
 }
+
+const crc32Table = (() => {
+  const table = new Uint32Array(256);
+  for(let i = 0; i < 256; i++) {
+    let c = i;
+    for(let j = 0; j < 8; j++) {
+      c = (c & 1) ? (0xedb88320 ^ (c >>> 1)) : (c >>> 1);
+    }
+    table[i] = c >>> 0;
+  }
+  return table;
+})();
+
+export function crc32(bytes: Uint8Array): number {
+  let crc = 0xffffffff;
+  for(let i = 0; i < bytes.length; i++) {
+    crc = crc32Table[(crc ^ bytes[i]) & 0xff] ^ (crc >>> 8);
+  }
+  return (crc ^ 0xffffffff) >>> 0;
+}
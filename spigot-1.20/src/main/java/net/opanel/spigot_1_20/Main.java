@@ -9,6 +9,8 @@ import org.apache.logging.log4j.LogManager;
 import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.ServerLoadEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
@@ -109,6 +111,16 @@ public class Main extends JavaPlugin implements Listener {
         }
     }
 
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        instance.onPlayerJoin(event.getPlayer().getUniqueId().toString(), event.getPlayer().getName());
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        instance.onPlayerLeave(event.getPlayer().getUniqueId().toString(), event.getPlayer().getName());
+    }
+
     public void runTask(Runnable task) {
         Bukkit.getScheduler().runTask(this, task);
     }
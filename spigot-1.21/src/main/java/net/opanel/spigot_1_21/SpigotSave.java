@@ -7,6 +7,7 @@ import net.opanel.common.OPanelGameMode;
 import net.opanel.common.OPanelSave;
 import net.opanel.common.OPanelServer;
 import net.opanel.utils.Utils;
+import net.opanel.world.LevelData;
 import org.bukkit.Server;
 
 import java.io.FileInputStream;
@@ -22,17 +23,18 @@ public class SpigotSave implements OPanelSave {
     public SpigotSave(Server server, Path path) {
         this.server = server;
         savePath = path;
-        try {
-            nbt = NBT.readFile(savePath.resolve("level.dat").toFile()).getCompound("Data");
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    }
+
+    // level.dat is only fully parsed before it is modified, reading goes through LevelData
+    private void loadNbt() throws IOException {
+        nbt = NBT.readFile(savePath.resolve("level.dat").toFile()).getCompound("Data");
     }
 
     private void saveNbt() throws IOException {
         ReadWriteNBT dataNbt = NBT.createNBTObject();
         dataNbt.set("Data", nbt, NBTHandlers.STORE_READWRITE_TAG);
         NBT.writeFile(savePath.resolve("level.dat").toFile(), dataNbt);
+        LevelData.invalidate(savePath);
     }
 
     @Override
@@ -42,11 +44,12 @@ public class SpigotSave implements OPanelSave {
 
     @Override
     public String getDisplayName() {
-        return nbt.getString("LevelName").replaceAll("\u00C2", "");
+        return getLevelData().levelName.replaceAll("\u00C2", "");
     }
 
     @Override
     public void setDisplayName(String displayName) throws IOException {
+        loadNbt();
         nbt.setString("LevelName", displayName);
         saveNbt();
     }
@@ -81,18 +84,12 @@ public class SpigotSave implements OPanelSave {
 
     @Override
     public OPanelGameMode getDefaultGameMode() {
-        int gamemode = nbt.getInteger("GameType");
-        switch(gamemode) {
-            case 2 -> { return OPanelGameMode.ADVENTURE; }
-            case 0 -> { return OPanelGameMode.SURVIVAL; }
-            case 1 -> { return OPanelGameMode.CREATIVE; }
-            case 3 -> { return OPanelGameMode.SPECTATOR; }
-        }
-        return null;
+        return getLevelData().getGameMode();
     }
 
     @Override
     public void setDefaultGameMode(OPanelGameMode gamemode) throws IOException {
+        loadNbt();
         switch(gamemode) {
             case ADVENTURE -> nbt.setInteger("GameType", 2);
             case SURVIVAL -> nbt.setInteger("GameType", 0);
@@ -111,6 +111,16 @@ public class SpigotServer implements OPanelServer {
         });
     }
 
+    @Override
+    public void runTask(Runnable task) {
+        plugin.runTask(task);
+    }
+
+    @Override
+    public boolean isAutoSaveEnabled() {
+        return server.getWorlds().getFirst().isAutoSave();
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public List<OPanelPlayer> getOnlinePlayers() {
@@ -146,12 +156,21 @@ public class SpigotServer implements OPanelServer {
 
     @Override
     public OPanelPlayer getPlayer(String uuid) {
-        for(OPanelPlayer player : getPlayers()) {
-            if(player.getUUID().equals(uuid)) {
-                return player;
-            }
+        final UUID id;
+        try {
+            id = UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        // Look up the player directly instead of enumerating all players
+        Player serverPlayer = server.getPlayer(id);
+        if(serverPlayer != null) return new SpigotPlayer(plugin, serverPlayer);
+        try {
+            return new SpigotOfflinePlayer(plugin, server, server.getOfflinePlayer(id));
+        } catch (NullPointerException | IllegalStateException e) {
+            return null;
         }
-        return null;
     }
 
     @Override